@@ -223,6 +223,7 @@ public class EvoGPJ extends SymbRegMOO implements Algorithm {
                 System.out.format("Best individual for generation %d:%n", generation);
                 System.out.flush();
                 System.out.println(best.getFitnesses() + ", " + best.toString());
+                printGenerationReports();
 
                 // record the best individual in models.txt
                 //this.saveText(MODELS_PATH, best.toScaledString(COERCE_TO_INT) + "\n", true);
@@ -1,5 +1,7 @@
 package edu.uci.lasso;
 
+import java.util.Arrays;
+
 public class LassoFit {
         // Number of lambda values
         public int numberOfLambdas;
@@ -28,6 +30,15 @@ public class LassoFit {
         // Total number of passes over data
         public int numberOfPasses;
 
+        // Index of the first solution computed: the solutions before it were
+        // skipped by a warm start, and have no weight
+        public int firstLambda;
+
+        // Number of features started from the weights of a warm start, and
+        // whether the path was abandoned when another feature entered it
+        public int warmFeatures;
+        public boolean leftWarmStart;
+
         private int numFeatures;
 
         public LassoFit(int numberOfLambdas, int maxAllowedFeaturesAlongPath, int numFeatures) {
@@ -41,6 +52,33 @@ public class LassoFit {
                 this.numFeatures = numFeatures;
         }
 
+        /**
+         * Clear the solutions, to reuse the arrays for a new fit
+         */
+        void reset(int numFeatures) {
+                numberOfLambdas = 0;
+                numberOfPasses = 0;
+                firstLambda = 0;
+                warmFeatures = 0;
+                leftWarmStart = false;
+                Arrays.fill(numberOfWeights, 0);
+                Arrays.fill(nonZeroWeights, 0);
+                Arrays.fill(intercepts, 0);
+                Arrays.fill(lambdas, 0);
+                Arrays.fill(rsquared, 0);
+                this.numFeatures = numFeatures;
+        }
+
+        /**
+         * Write the weights of a solution, one per feature, into the array
+         */
+        public void getWeights(int lambdaIdx, double[] weights) {
+                Arrays.fill(weights, 0, numFeatures, 0.0);
+                for (int i = 0; i < numberOfWeights[lambdaIdx]; i++) {
+                        weights[indices[i]] = compressedWeights[lambdaIdx][i];
+                }
+        }
+
         public double[] getWeights(int lambdaIdx) {
                 double[] weights = new double[numFeatures];
                 for (int i = 0; i < numberOfWeights[lambdaIdx]; i++) {
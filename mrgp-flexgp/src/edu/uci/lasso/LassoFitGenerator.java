@@ -1,5 +1,7 @@
 package edu.uci.lasso;
 
+import java.util.Arrays;
+
 /**
  * This implemenation is based on: Friedman, J., Hastie, T. and Tibshirani, R.
  * (2008) Regularization Paths for Generalized Linear Models via Coordinate
@@ -34,10 +36,178 @@ public class LassoFitGenerator {
         private static final int MIN_NUMBER_OF_LAMBDAS = 5;
         private static final double MAX_RSQUARED = 0.99999;
 
+        // lambdas of the path before the lambda of a warm start
+        private static final int WARM_START_MARGIN = 20;
+
+        // rows per chunk of the pass of the covariance mode: each chunk has
+        // its own partial sums, added in chunk order, so that the fit does not
+        // depend on the threads. The chunks have at least MOMENTS_CHUNK_ROWS
+        // rows, and are at most MAX_MOMENTS_CHUNKS, so that the partial sums
+        // do not grow with the observations
+        private static final int MOMENTS_CHUNK_ROWS = 8192;
+        private static final int MAX_MOMENTS_CHUNKS = 64;
+        // rows per block of a chunk, whose shifted values are kept in cache
+        private static final int MOMENTS_BLOCK_ROWS = 256;
+
         private float[] targets;
         private float[][] observations;
+        // standardized values of the feature entering the model. The other
+        // features are standardized on the fly when they are read (see
+        // getStandardizedDotProduct), so that the fit leaves the raw feature
+        // values untouched for the caller without a copy of them
+        private float[] newFeatureValues = new float[0];
+        // rows of the observations seen by the fit, all of them if null (see
+        // initView)
+        private int[] rows;
         private int numFeatures;
         private int numObservations;
+        // runs the loops over the features, sequentially if null
+        private ParallelLoop parallelLoop;
+        // covariance mode (see setCovarianceMode)
+        private boolean covarianceMode;
+        // covariance mode: the shift of each column (its first value, the
+        // target being the last column), the sums of the shifted values and
+        // the lower triangle of their cross products, of all the rows and of
+        // each chunk of rows, the means of the shifted features, and the
+        // correlations of the standardized features
+        private double[] shifts = new double[0];
+        private double[] moments = new double[0];
+        private double[][] chunkMoments = new double[0][0];
+        private int chunkRows;
+        // shifted values of a block of rows, for each thread running the pass
+        private final ThreadLocal<double[][]> momentBlocks = new ThreadLocal<double[][]>();
+        private double[] shiftedMeans = new double[0];
+        private double[][] featureCorrelations = new double[0][0];
+        private boolean momentFeatures;
+        // warm start of the next fit (see setWarmStart), null for a cold start
+        private double[] warmWeights;
+        private double warmLambda;
+
+        // Work arrays of the fit. They are grown to the largest problem seen
+        // and reused by the following fits of the same generator, so that a
+        // generator reused for many fits does not allocate in steady state.
+        private double[] featureMeans = new double[0];
+        private double[] featureStds = new double[0];
+        private double[] feature2residualCorrelations = new double[0];
+        private double[] activeWeights = new double[0];
+        private int[] correlationCacheIndices = new int[0];
+        private double[] denseActiveSet = new double[0];
+        private double[][] feature2featureCorrelations = new double[0][0];
+        private LassoFit lassoFit;
+        // state of the loop bodies
+        private float factor;
+        private int newFeature;
+        private int newColumn;
+        private final ParallelLoop.Body standardizeBody = new ParallelLoop.Body() {
+                public void run(int from, int to) {
+                        for (int j = from; j < to; j++) {
+                                float[] raw = observations[j];
+                                double sumOfSquares = 0;
+                                if (rows == null) {
+                                        double mean = MathUtil.getAvg(raw);
+                                        featureMeans[j] = mean;
+                                        for (int i = 0; i < numObservations; i++) {
+                                                float centered = (float) (factor * (raw[i] - mean));
+                                                sumOfSquares += centered * centered;
+                                        }
+                                } else {
+                                        double sum = 0;
+                                        for (int i = 0; i < numObservations; i++) {
+                                                sum += raw[rows[i]];
+                                        }
+                                        double mean = sum / numObservations;
+                                        featureMeans[j] = mean;
+                                        for (int i = 0; i < numObservations; i++) {
+                                                float centered = (float) (factor * (raw[rows[i]] - mean));
+                                                sumOfSquares += centered * centered;
+                                        }
+                                }
+                                featureStds[j] = Math.sqrt(sumOfSquares);
+                        }
+                }
+        };
+        private final ParallelLoop.Body residualCorrelationsBody = new ParallelLoop.Body() {
+                public void run(int from, int to) {
+                        for (int j = from; j < to; j++) {
+                                feature2residualCorrelations[j] = getStandardizedDotProduct(targets, j);
+                        }
+                }
+        };
+        private final ParallelLoop.Body newFeatureCorrelationsBody = new ParallelLoop.Body() {
+                public void run(int from, int to) {
+                        for (int j = from; j < to; j++) {
+                                // if we have already computed correlations for
+                                // the jth variable, we will reuse it here.
+                                if (correlationCacheIndices[j] != 0) {
+                                        feature2featureCorrelations[j][newColumn] = feature2featureCorrelations[newFeature][correlationCacheIndices[j] - 1];
+                                } else {
+                                        // Correlation of variable with itself if one
+                                        if (j == newFeature) {
+                                                feature2featureCorrelations[j][newColumn] = 1.0;
+                                        } else {
+                                                feature2featureCorrelations[j][newColumn] = getStandardizedDotProduct(
+                                                                newFeatureValues, j);
+                                        }
+                                }
+                        }
+                }
+        };
+
+        private final ParallelLoop.Body momentsBody = new ParallelLoop.Body() {
+                public void run(int from, int to) {
+                        int numColumns = numFeatures + 1;
+                        double[][] block = momentBlocks.get();
+                        if (block == null || block.length < numColumns) {
+                                block = new double[numColumns][MOMENTS_BLOCK_ROWS];
+                                momentBlocks.set(block);
+                        }
+                        for (int c = from; c < to; c++) {
+                                double[] sums = chunkMoments[c];
+                                Arrays.fill(sums, 0, getMomentsLength(), 0.0);
+                                int end = (int) Math.min(numObservations, (c + 1L) * chunkRows);
+                                for (int start = c * chunkRows; start < end; start += MOMENTS_BLOCK_ROWS) {
+                                        int len = Math.min(MOMENTS_BLOCK_ROWS, end - start);
+                                        for (int j = 0; j < numColumns; j++) {
+                                                double shift = shifts[j];
+                                                double[] values = block[j];
+                                                if (j == numFeatures) {
+                                                        for (int r = 0; r < len; r++) {
+                                                                values[r] = targets[start + r] - shift;
+                                                        }
+                                                } else if (rows == null) {
+                                                        float[] raw = observations[j];
+                                                        for (int r = 0; r < len; r++) {
+                                                                values[r] = raw[start + r] - shift;
+                                                        }
+                                                } else {
+                                                        float[] raw = observations[j];
+                                                        for (int r = 0; r < len; r++) {
+                                                                values[r] = raw[rows[start + r]] - shift;
+                                                        }
+                                                }
+                                        }
+                                        // without the features, only the target row
+                                        for (int j = momentFeatures ? 0 : numFeatures; j < numColumns; j++) {
+                                                double[] a = block[j];
+                                                double sum = 0;
+                                                for (int r = 0; r < len; r++) {
+                                                        sum += a[r];
+                                                }
+                                                sums[j] += sum;
+                                                int offset = numColumns + j * (j + 1) / 2;
+                                                for (int k = 0; k <= j; k++) {
+                                                        double[] b = block[k];
+                                                        double product = 0;
+                                                        for (int r = 0; r < len; r++) {
+                                                                product += a[r] * b[r];
+                                                        }
+                                                        sums[offset + k] += product;
+                                                }
+                                        }
+                                }
+                        }
+                }
+        };
 
         public long getMaxAllowedObservations(int maxNumFeatures) {
             long maxObservations = (MAX_AVAILABLE_MEMORY / maxNumFeatures / (Float.SIZE / 8));
@@ -53,13 +223,110 @@ public class LassoFitGenerator {
                         throw new Exception("Number of observations (" + numObservations + ") exceeds the maximum allowed number: "
                                         + getMaxAllowedObservations(maxNumFeatures));
                 }
+                // the columns of a view belong to the caller of initView
+                if (rows != null) {
+                        observations = null;
+                        rows = null;
+                }
+                // the arrays of a previous init are reused if they have the
+                // right number of observations
+                if (observations == null || this.numObservations != numObservations) {
+                        observations = new float[numFeatures][];
+                        targets = new float[numObservations];
+                } else if (observations.length < numFeatures) {
+                        float[][] grown = new float[numFeatures][];
+                        System.arraycopy(observations, 0, grown, 0, observations.length);
+                        observations = grown;
+                }
                 this.numObservations = numObservations;
                 //observations = new float[this.numObservations][];
-                observations = new float[numFeatures][];
                 for (int t = 0; t < maxNumFeatures; t++) {
-                        observations[t] = new float[this.numObservations];
+                        if (observations[t] == null) {
+                                observations[t] = new float[this.numObservations];
+                        }
+                }
+        }
+
+        /**
+         * Fit over a subset of the rows of feature columns owned by the
+         * caller, for instance the folds of a cross-validation: the columns
+         * are read through the row indices instead of being copied, so that
+         * several generators can share them. The columns must not change
+         * until the fits are done, and the feature values of the generator
+         * must not be written. The targets are those of the subset. The fit
+         * standardizes the features as it reads them, so the generator
+         * only holds statistics per feature and a single column over the
+         * rows of the subset.
+         * 
+         * @param columns raw values of each feature, over all the rows
+         * @param numFeatures number of features of the fit
+         * @param someRows indices of the rows of the subset
+         */
+        public void initView(float[][] columns, int numFeatures, int[] someRows) {
+                this.numFeatures = numFeatures;
+                if (targets == null || targets.length != someRows.length) {
+                        targets = new float[someRows.length];
+                }
+                observations = columns;
+                rows = someRows;
+                numObservations = someRows.length;
+        }
+
+        /**
+         * Run the standardization and the correlations of the features
+         * concurrently. The fit is the same as the sequential one.
+         */
+        public void setParallelLoop(ParallelLoop loop) {
+                this.parallelLoop = loop;
+        }
+
+        /**
+         * Covariance mode (the covariance updates of Friedman et al.): instead
+         * of standardizing the features and computing the correlations of each
+         * feature entering the model over all the observations, the fit makes
+         * a single blocked pass over the observations, concurrent on the
+         * parallel loop, to build the cross products of the features and the
+         * target, and then runs the whole path on the correlation matrix of
+         * the features. A refit only makes a pass for the products of the
+         * features with the new target. The fit is the same up to rounding:
+         * the sums are accumulated in double over the values shifted by the
+         * first observation.
+         */
+        public void setCovarianceMode(boolean covariance) {
+                this.covarianceMode = covariance;
+        }
+
+        /**
+         * Warm start of the next fit, for instance from the model of a set of
+         * features sharing most of its features with this one: the path starts
+         * a few lambdas before the given one, from the given weights, instead
+         * of from lambda = infinity with no weight. The lambdas are those of a
+         * cold fit, and the models are the same up to the convergence of the
+         * coordinate descent, except that the models before the start of the
+         * path are left empty (see {@link LassoFit#firstLambda}). A
+         * coordinate descent converged from other weights may still differ
+         * in the features at the threshold of the model, so the path stops
+         * as soon as a feature without a warm weight enters it (see
+         * {@link LassoFit#leftWarmStart}): the caller should then fit again
+         * from a cold start. The warm start only applies to the next fit, not
+         * to refits.
+         * 
+         * @param weights raw weight of each feature, 0 for the features out
+         *        of the model; the array is read by the next fit
+         * @param lambda lambda of the model of the weights, as in
+         *        {@link LassoFit#lambdas}
+         */
+        public void setWarmStart(double[] weights, double lambda) {
+                this.warmWeights = weights;
+                this.warmLambda = lambda;
+        }
+
+        private void forEach(int n, ParallelLoop.Body body) {
+                if (parallelLoop == null) {
+                        body.run(0, n);
+                } else {
+                        parallelLoop.run(n, body);
                 }
-                targets = new float[this.numObservations];
         }
 
         public void setNumberOfFeatures(int numFeatures) {
@@ -72,6 +339,10 @@ public class LassoFitGenerator {
                 }
         }
         
+        /**
+         * The returned array is the generator's own storage: callers may fill
+         * it in place, and it still holds the raw values after a fit.
+         */
         public float[] getFeatureValues(int idx) {
                 return observations[idx];
         }
@@ -82,8 +353,10 @@ public class LassoFitGenerator {
                 }
         }
 
-        private LassoFit getLassoFit(int maxAllowedFeaturesPerModel) {
+        private LassoFit getLassoFit(int maxAllowedFeaturesPerModel, boolean standardizeFeatures) {
                 long startTime = System.currentTimeMillis();
+                double[] warm = standardizeFeatures ? warmWeights : null;
+                warmWeights = null;
 
                 if (maxAllowedFeaturesPerModel < 0) {
                         maxAllowedFeaturesPerModel = numFeatures;
@@ -99,40 +372,50 @@ public class LassoFitGenerator {
                  * (mean 0) and normalize their vectors to have the same standard
                  * deviation
                  */
-                double[] featureMeans = new double[numFeatures];
-                double[] featureStds = new double[numFeatures];
-                double[] feature2residualCorrelations = new double[numFeatures];
+                ensureCapacity(maxAllowedFeaturesAlongPath);
+
+                float targetMean;
+                float targetStd;
+                if (covarianceMode) {
+                        computeMoments(standardizeFeatures);
+                        int numColumns = numFeatures + 1;
+                        double shiftedTargetMean = moments[numFeatures] / numObservations;
+                        int targetRow = numColumns + numFeatures * (numFeatures + 1) / 2;
+                        double targetVariance = moments[targetRow + numFeatures] / numObservations
+                                        - shiftedTargetMean * shiftedTargetMean;
+                        targetMean = (float) (shifts[numFeatures] + shiftedTargetMean);
+                        targetStd = (float) Math.sqrt(Math.max(0, targetVariance));
+                        for (int j = 0; j < numFeatures; j++) {
+                                double covariance = moments[targetRow + j] / numObservations
+                                                - shiftedMeans[j] * shiftedTargetMean;
+                                feature2residualCorrelations[j] = covariance / (featureStds[j] * targetStd);
+                        }
+                } else {
+                        factor = (float) (1.0 / Math.sqrt(numObservations));
+                        if (standardizeFeatures) {
+                                forEach(numFeatures, standardizeBody);
+                        }
 
-                float factor = (float) (1.0 / Math.sqrt(numObservations));
-                for (int j = 0; j < numFeatures; j++) {
-                        double mean = MathUtil.getAvg(observations[j]);
-                        featureMeans[j] = mean;
+                        targetMean = (float) MathUtil.getAvg(targets);
                         for (int i = 0; i < numObservations; i++) {
-                                observations[j][i] = (float) (factor * (observations[j][i] - mean));
+                                targets[i] = factor * (targets[i] - targetMean);
                         }
-                        featureStds[j] = Math.sqrt(MathUtil.getDotProduct(observations[j], observations[j]));
+                        targetStd = (float) Math.sqrt(MathUtil.getDotProduct(targets, targets));
+                        MathUtil.divideInPlace(targets, targetStd);
 
-                        MathUtil.divideInPlace(observations[j], (float) featureStds[j]);
+                        forEach(numFeatures, residualCorrelationsBody);
                 }
 
-                float targetMean = (float) MathUtil.getAvg(targets);
-                for (int i = 0; i < numObservations; i++) {
-                        targets[i] = factor * (targets[i] - targetMean);
-                }
-                float targetStd = (float) Math.sqrt(MathUtil.getDotProduct(targets, targets));
-                MathUtil.divideInPlace(targets, targetStd);
+                Arrays.fill(activeWeights, 0, numFeatures, 0.0);
+                Arrays.fill(correlationCacheIndices, 0, numFeatures, 0);
 
-                for (int j = 0; j < numFeatures; j++) {
-                        feature2residualCorrelations[j] = MathUtil.getDotProduct(targets, observations[j]);
+                if (lassoFit == null || lassoFit.lambdas.length != numberOfLambdas
+                                || lassoFit.indices.length < maxAllowedFeaturesAlongPath) {
+                        lassoFit = new LassoFit(numberOfLambdas, maxAllowedFeaturesAlongPath, numFeatures);
+                } else {
+                        lassoFit.reset(numFeatures);
                 }
-
-                double[][] feature2featureCorrelations = MathUtil
-                                .allocateDoubleMatrix(numFeatures, maxAllowedFeaturesAlongPath);
-                double[] activeWeights = new double[numFeatures];
-                int[] correlationCacheIndices = new int[numFeatures];
-                double[] denseActiveSet = new double[numFeatures];
-
-                LassoFit fit = new LassoFit(numberOfLambdas, maxAllowedFeaturesAlongPath, numFeatures);
+                LassoFit fit = lassoFit;
                 fit.numberOfLambdas = 0;
 
                 double alf = Math.pow(Math.max(EPSILON, flmin), 1.0 / (numberOfLambdas - 1));
@@ -143,7 +426,75 @@ public class LassoFitGenerator {
 
                 double curLambda = 0;
                 double maxDelta;
-                for (int iteration = 1; iteration <= numberOfLambdas; iteration++) {
+
+                /**********
+                 * Warm start: find the lambda of the path a few lambdas before
+                 * the one of the weights, leave the models of the lambdas
+                 * before it empty and start the path from the weights
+                 */
+                int firstIteration = 1;
+                if (warm != null) {
+                        double maxCorrelation = 0.0;
+                        for (int j = 0; j < numFeatures; j++) {
+                                maxCorrelation = Math.max(maxCorrelation, Math.abs(feature2residualCorrelations[j]));
+                        }
+                        double startLambda = warmLambda / targetStd / Math.pow(alf, WARM_START_MARGIN);
+                        double lambda = alf * maxCorrelation;
+                        int iteration = 2;
+                        while (iteration < numberOfLambdas && lambda * alf >= startLambda) {
+                                lambda = lambda * alf;
+                                iteration++;
+                        }
+                        if (iteration > 2) {
+                                firstIteration = iteration;
+                        }
+                }
+                if (firstIteration > 1) {
+                        curLambda = Double.MAX_VALUE;
+                        for (int iteration = 1; iteration < firstIteration; iteration++) {
+                                if (iteration == 2) {
+                                        curLambda = 0.0;
+                                        for (int j = 0; j < numFeatures; j++) {
+                                                curLambda = Math.max(curLambda, Math.abs(feature2residualCorrelations[j]));
+                                        }
+                                        curLambda = alf * curLambda;
+                                } else if (iteration > 2) {
+                                        curLambda = curLambda * alf;
+                                }
+                                fit.numberOfWeights[iteration - 1] = 0;
+                                fit.rsquared[iteration - 1] = 0;
+                                fit.lambdas[iteration - 1] = curLambda;
+                        }
+                        fit.numberOfLambdas = firstIteration - 1;
+                        fit.firstLambda = firstIteration - 1;
+                        for (int k = 0; k < numFeatures; k++) {
+                                if (warm[k] == 0 || !(featureStds[k] > 0) || numberOfInputs == maxAllowedFeaturesAlongPath) {
+                                        continue;
+                                }
+                                numberOfInputs++;
+                                activate(fit, k, numberOfInputs - 1);
+                                activeWeights[k] = warm[k] * featureStds[k] / targetStd;
+                        }
+                        fit.warmFeatures = numberOfInputs;
+                        // R^2 = w.(c0 + c), c0 and c being the correlations of
+                        // the features with the target and with the residuals
+                        for (int l = 0; l < numberOfInputs; l++) {
+                                int k = fit.indices[l];
+                                rsquared += activeWeights[k] * feature2residualCorrelations[k];
+                        }
+                        for (int l = 0; l < numberOfInputs; l++) {
+                                double weight = activeWeights[fit.indices[l]];
+                                for (int j = 0; j < numFeatures; j++) {
+                                        feature2residualCorrelations[j] -= feature2featureCorrelations[j][l] * weight;
+                                }
+                        }
+                        for (int l = 0; l < numberOfInputs; l++) {
+                                int k = fit.indices[l];
+                                rsquared += activeWeights[k] * feature2residualCorrelations[k];
+                        }
+                }
+
+                for (int iteration = firstIteration; iteration <= numberOfLambdas; iteration++) {
                         //System.out.println("Starting iteration " + iteration + " of Compression.");
 
                         /**********
@@ -183,28 +534,19 @@ public class LassoFitGenerator {
                                         // variable with other variables, we do this now and
                                         // cache the result
                                         if (correlationCacheIndices[k] == 0) {
+                                                if (fit.firstLambda > 0) {
+                                                        // the path leaves the features of the warm
+                                                        // start: it can no longer be trusted to give
+                                                        // the models of a cold fit
+                                                        fit.leftWarmStart = true;
+                                                        break;
+                                                }
                                                 numberOfInputs++;
                                                 if (numberOfInputs > maxAllowedFeaturesAlongPath) {
                                                         // we have reached the maximum
                                                         break;
                                                 }
-                                                for (int j = 0; j < numFeatures; j++) {
-                                                        // if we have already computed correlations for
-                                                        // the jth variable, we will reuse it here.
-                                                        if (correlationCacheIndices[j] != 0) {
-                                                                feature2featureCorrelations[j][numberOfInputs - 1] = feature2featureCorrelations[k][correlationCacheIndices[j] - 1];
-                                                        } else {
-                                                                // Correlation of variable with itself if one
-                                                                if (j == k) {
-                                                                        feature2featureCorrelations[j][numberOfInputs - 1] = 1.0;
-                                                                } else {
-                                                                        feature2featureCorrelations[j][numberOfInputs - 1] = MathUtil.getDotProduct(
-                                                                                        observations[j], observations[k]);
-                                                                }
-                                                        }
-                                                }
-                                                correlationCacheIndices[k] = numberOfInputs;
-                                                fit.indices[numberOfInputs - 1] = k;
+                                                activate(fit, k, numberOfInputs - 1);
                                         }
 
                                         // How much is the weight changed?
@@ -218,7 +560,8 @@ public class LassoFitGenerator {
                                         }
                                 }
 
-                                if (maxDelta < CONVERGENCE_THRESHOLD || numberOfInputs > maxAllowedFeaturesAlongPath) {
+                                if (maxDelta < CONVERGENCE_THRESHOLD || numberOfInputs > maxAllowedFeaturesAlongPath
+                                                || fit.leftWarmStart) {
                                         break;
                                 }
 
@@ -259,7 +602,7 @@ public class LassoFitGenerator {
                                 }
                         }
 
-                        if (numberOfInputs > maxAllowedFeaturesAlongPath) {
+                        if (numberOfInputs > maxAllowedFeaturesAlongPath || fit.leftWarmStart) {
                                 break;
                         }
                         if (numberOfInputs > 0) {
@@ -272,7 +615,8 @@ public class LassoFitGenerator {
                         fit.lambdas[iteration - 1] = curLambda;
                         fit.numberOfLambdas = iteration;
 
-                        if (iteration < minimumNumberOfLambdas) {
+                        // the R^2 before a warm start is not the one of the path
+                        if (iteration < minimumNumberOfLambdas || iteration == firstIteration) {
                                 continue;
                         }
 
@@ -312,6 +656,151 @@ public class LassoFitGenerator {
                 return fit;
         }
 
+        /**
+         * Pass of the covariance mode over the observations: the sums and
+         * cross products of the shifted features, if standardizeFeatures, and
+         * of the shifted target. Then the means, standard deviations and
+         * correlations of the features follow.
+         */
+        private void computeMoments(boolean standardizeFeatures) {
+                int numColumns = numFeatures + 1;
+                chunkRows = Math.max(MOMENTS_CHUNK_ROWS, (numObservations + MAX_MOMENTS_CHUNKS - 1) / MAX_MOMENTS_CHUNKS);
+                int numChunks = (numObservations + chunkRows - 1) / chunkRows;
+                int length = numColumns + numColumns * (numColumns + 1) / 2;
+                if (shifts.length < numColumns) {
+                        shifts = new double[numColumns];
+                        shiftedMeans = new double[numColumns];
+                }
+                if (moments.length < length) {
+                        moments = new double[length];
+                }
+                if (chunkMoments.length < numChunks || chunkMoments[0].length < length) {
+                        chunkMoments = MathUtil.allocateDoubleMatrix(Math.max(numChunks, chunkMoments.length), length);
+                }
+                if (featureCorrelations.length < numFeatures) {
+                        featureCorrelations = MathUtil.allocateDoubleMatrix(numFeatures, numFeatures);
+                }
+                momentFeatures = standardizeFeatures;
+                if (momentFeatures) {
+                        for (int j = 0; j < numFeatures; j++) {
+                                shifts[j] = observations[j][(rows == null) ? 0 : rows[0]];
+                        }
+                }
+                shifts[numFeatures] = targets[0];
+                forEach(numChunks, momentsBody);
+                // chunk order, and only the target row without the features
+                int targetRow = numColumns + numFeatures * (numFeatures + 1) / 2;
+                int from = momentFeatures ? 0 : targetRow;
+                Arrays.fill(moments, from, length, 0.0);
+                if (!momentFeatures) {
+                        moments[numFeatures] = 0;
+                }
+                for (int c = 0; c < numChunks; c++) {
+                        double[] sums = chunkMoments[c];
+                        for (int i = from; i < length; i++) {
+                                moments[i] += sums[i];
+                        }
+                        if (!momentFeatures) {
+                                moments[numFeatures] += sums[numFeatures];
+                        }
+                }
+                if (!momentFeatures) {
+                        return;
+                }
+                for (int j = 0; j < numFeatures; j++) {
+                        shiftedMeans[j] = moments[j] / numObservations;
+                        featureMeans[j] = shifts[j] + shiftedMeans[j];
+                        double variance = moments[numColumns + j * (j + 1) / 2 + j] / numObservations
+                                        - shiftedMeans[j] * shiftedMeans[j];
+                        featureStds[j] = Math.sqrt(Math.max(0, variance));
+                }
+                for (int j = 0; j < numFeatures; j++) {
+                        int offset = numColumns + j * (j + 1) / 2;
+                        for (int k = 0; k < j; k++) {
+                                double covariance = moments[offset + k] / numObservations - shiftedMeans[j] * shiftedMeans[k];
+                                double correlation = covariance / (featureStds[j] * featureStds[k]);
+                                featureCorrelations[j][k] = correlation;
+                                featureCorrelations[k][j] = correlation;
+                        }
+                        featureCorrelations[j][j] = 1.0;
+                }
+        }
+
+        /**
+         * Add a feature to the active set of the fit, with the correlations
+         * of the features with it in the given column
+         */
+        private void activate(LassoFit fit, int k, int column) {
+                newFeature = k;
+                newColumn = column;
+                if (covarianceMode) {
+                        for (int j = 0; j < numFeatures; j++) {
+                                feature2featureCorrelations[j][newColumn] = featureCorrelations[j][k];
+                        }
+                } else {
+                        if (newFeatureValues.length < numObservations) {
+                                newFeatureValues = new float[numObservations];
+                        }
+                        float[] raw = observations[k];
+                        double mean = featureMeans[k];
+                        float std = (float) featureStds[k];
+                        for (int i = 0; i < numObservations; i++) {
+                                newFeatureValues[i] = (float) (factor * (raw[(rows == null) ? i : rows[i]] - mean)) / std;
+                        }
+                        forEach(numFeatures, newFeatureCorrelationsBody);
+                }
+                correlationCacheIndices[k] = column + 1;
+                fit.indices[column] = k;
+        }
+
+        /**
+         * Dot product of values with the standardized values of feature j,
+         * computed from its raw values, mean and standard deviation as the
+         * standardization would store them
+         */
+        private double getStandardizedDotProduct(float[] values, int j) {
+                float[] raw = observations[j];
+                double mean = featureMeans[j];
+                float std = (float) featureStds[j];
+                double product = 0;
+                if (rows == null) {
+                        for (int i = 0; i < numObservations; i++) {
+                                product += values[i] * ((float) (factor * (raw[i] - mean)) / std);
+                        }
+                } else {
+                        for (int i = 0; i < numObservations; i++) {
+                                product += values[i] * ((float) (factor * (raw[rows[i]] - mean)) / std);
+                        }
+                }
+                return product;
+        }
+
+        private int getMomentsLength() {
+                int numColumns = numFeatures + 1;
+                return numColumns + numColumns * (numColumns + 1) / 2;
+        }
+
+        /**
+         * Grow the work arrays of the fit to the current number of features
+         */
+        private void ensureCapacity(int maxAllowedFeaturesAlongPath) {
+                if (featureMeans.length < numFeatures) {
+                        featureMeans = new double[numFeatures];
+                        featureStds = new double[numFeatures];
+                        feature2residualCorrelations = new double[numFeatures];
+                        activeWeights = new double[numFeatures];
+                        correlationCacheIndices = new int[numFeatures];
+                        denseActiveSet = new double[numFeatures];
+                }
+                if (feature2featureCorrelations.length < numFeatures
+                                || feature2featureCorrelations[0].length < maxAllowedFeaturesAlongPath) {
+                        int rows = Math.max(numFeatures, feature2featureCorrelations.length);
+                        int columns = Math.max(maxAllowedFeaturesAlongPath,
+                                        (feature2featureCorrelations.length == 0) ? 0 : feature2featureCorrelations[0].length);
+                        feature2featureCorrelations = MathUtil.allocateDoubleMatrix(rows, columns);
+                }
+        }
+
         public void setTargets(double[] targets) {
                 for (int i = 0; i < numObservations; i++) {
                         this.targets[i] = (float) targets[i];
@@ -322,8 +811,12 @@ public class LassoFitGenerator {
                 this.targets[idx] = (float) target;
         }
 
+        /**
+         * The returned fit is owned by the generator, and is only valid until
+         * the next fit.
+         */
         public LassoFit fit(int maxAllowedFeaturesPerModel) {
-                LassoFit fit = getLassoFit(maxAllowedFeaturesPerModel);
+                LassoFit fit = getLassoFit(maxAllowedFeaturesPerModel, true);
                 /*int numberOfSolutions = fit.numberOfLambdas;
                 System.out.println("Compression R2 values:");
                 for (int i = 0; i < numberOfSolutions; i++) {
@@ -333,4 +826,13 @@ public class LassoFitGenerator {
                 }*/
                 return fit;
         }
-}
\ No newline at end of file
+
+        /**
+         * Fit the features of the previous fit to new targets, set after that
+         * fit: the feature means and deviations are reused. The returned fit replaces
+         * the previous one.
+         */
+        public LassoFit refit(int maxAllowedFeaturesPerModel) {
+                return getLassoFit(maxAllowedFeaturesPerModel, false);
+        }
+}
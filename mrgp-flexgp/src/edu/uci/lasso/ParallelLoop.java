@@ -0,0 +1,22 @@
+package edu.uci.lasso;
+
+/**
+ * Runs the iterations of a loop over the features concurrently. Each feature
+ * is processed by exactly one call of the body, so the results do not depend
+ * on how the range is split.
+ */
+public interface ParallelLoop {
+
+        /**
+         * Iterations [from, to) of a loop
+         */
+        public interface Body {
+                void run(int from, int to);
+        }
+
+        /**
+         * Run the iterations [0, n) of the body and wait for all of them to
+         * finish
+         */
+        void run(int n, Body body);
+}
@@ -111,6 +111,196 @@ public final class Parameters {
          * Should JSON logs be enabled?
          */
         public static final String SAVE_JSON = "save_json";
+        /**
+         * How should the nodes of a tree be evaluated on the training cases?
+         * Row-wise (one training case at a time) or column-wise (one node at a
+         * time, on blocks of training cases)
+         */
+        public static final String EVAL_MODE = "eval_mode";
+        public static final String EVAL_MODE_ROW = "row";
+        public static final String EVAL_MODE_COLUMN = "column";
+        // column-wise, with a class generated at runtime for each tree
+        public static final String EVAL_MODE_BYTECODE = "bytecode";
+        // number of training cases per block in column-wise evaluation
+        public static final String EVAL_BLOCK_SIZE = "eval_block_size";
+        /**
+         * Kernels used by the column-wise evaluation: exact scalar code, or
+         * code the JIT can vectorize (see ColumnKernels for the tolerance)
+         */
+        public static final String EVAL_KERNELS = "eval_kernels";
+        public static final String EVAL_KERNELS_SCALAR = "scalar";
+        public static final String EVAL_KERNELS_VECTOR = "vector";
+        /**
+         * For the bytecode evaluation mode: number of generated classes kept,
+         * and range of tree sizes for which a class is generated
+         */
+        public static final String BYTECODE_CACHE_SIZE = "bytecode_cache_size";
+        public static final String BYTECODE_MIN_SIZE = "bytecode_min_size";
+        public static final String BYTECODE_MAX_SIZE = "bytecode_max_size";
+        /**
+         * Memory budget, in megabytes, of the cache of subtree columns shared
+         * by the evaluation threads (0 disables the cache)
+         */
+        public static final String SUBTREE_CACHE_MB = "subtree_cache_mb";
+        /**
+         * Should the identical subtrees of a tree be evaluated once, and
+         * share a single column of the Lasso fit?
+         */
+        public static final String EVAL_SHARE_SUBTREES = "eval_share_subtrees";
+        /**
+         * Should the evaluation threads share the individuals of the
+         * population, or the rows of each evaluation? In auto mode, rows are
+         * shared for small populations and for datasets with at least
+         * EVAL_ROW_PARALLEL_MIN_ROWS rows
+         */
+        public static final String EVAL_PARALLELISM = "eval_parallelism";
+        public static final String EVAL_PARALLELISM_INDIVIDUALS = "individuals";
+        public static final String EVAL_PARALLELISM_ROWS = "rows";
+        public static final String EVAL_PARALLELISM_AUTO = "auto";
+        public static final String EVAL_ROW_PARALLEL_MIN_ROWS = "eval_row_parallel_min_rows";
+        /**
+         * Number of individuals whose nodes are evaluated together, tile of
+         * rows by tile of rows, so that the input columns of a tile are read
+         * once per batch (0 disables the tiling), and number of rows per tile
+         * (0 sizes the tiles for the L2 cache). Each individual of a batch
+         * is fit by its own Lasso fit generator, holding the values of all
+         * its nodes on all the training cases: the memory of the node values
+         * is multiplied by the batch size, in each evaluation thread
+         */
+        public static final String EVAL_TILE_BATCH = "eval_tile_batch";
+        public static final String EVAL_TILE_ROWS = "eval_tile_rows";
+        /**
+         * Should the trees that interval arithmetic over the range of the
+         * features proves non-finite or constant get the worst fitness
+         * without being evaluated?
+         */
+        public static final String INTERVAL_SCREEN = "interval_screen";
+        /**
+         * Number of evaluated genotypes remembered across generations, so
+         * that they are not evaluated again (0 disables the memo)
+         */
+        public static final String FITNESS_MEMO_SIZE = "fitness_memo_size";
+        /**
+         * Racing evaluation of the children: fit and score them on growing
+         * random subsamples of the training cases, and evaluate on all the
+         * cases only those that could survive the truncation of the
+         * generation. RACING_INITIAL_FRACTION is the fraction of the cases in
+         * the first subsample (at least RACING_MIN_ROWS), RACING_GROWTH the
+         * factor by which the subsample grows (rounds stop once the next
+         * subsample would exceed 1/RACING_GROWTH of the data), and
+         * RACING_MARGIN the relative optimism granted to the estimated fitness
+         * (scaled by the sampling error of the subsample)
+         */
+        public static final String RACING = "racing";
+        public static final String RACING_INITIAL_FRACTION = "racing_initial_fraction";
+        public static final String RACING_MIN_ROWS = "racing_min_rows";
+        public static final String RACING_GROWTH = "racing_growth";
+        public static final String RACING_MARGIN = "racing_margin";
+        /**
+         * Screen the children with the fitness of the linear scaling of the
+         * best node of their tree, and fit the Lasso over all the nodes only for the top
+         * LINEAR_SCALING_SCREEN_FRACTION of them and for those not dominated
+         * by the current front
+         */
+        public static final String LINEAR_SCALING_SCREEN = "linear_scaling_screen";
+        public static final String LINEAR_SCALING_SCREEN_FRACTION = "linear_scaling_screen_fraction";
+        /**
+         * Memory budget, in megabytes, of the node columns computed by the
+         * linear scaling screen and kept for the Lasso fit of the children it
+         * promotes, which then do not evaluate their tree again (0 evaluates
+         * them again)
+         */
+        public static final String LINEAR_SCALING_SCREEN_MB = "linear_scaling_screen_mb";
+        /**
+         * Should the trees be simplified with algebraic identities and
+         * constant folding before they are evaluated? The rewrites only remove
+         * nodes whose columns are constant or duplicate another column of the
+         * tree, so the features of the Lasso fit are kept.
+         */
+        public static final String SIMPLIFY = "simplify";
+        /**
+         * Should the simplification also merge nested powers, (sqrt (quart A))
+         * and (quart (sqrt A)) into (square A) and (square (square A)) into
+         * (quart A)? The value of the tree is kept, but the inner power is no
+         * longer a Lasso feature: this changes the MRGP model space.
+         */
+        public static final String SIMPLIFY_POWERS = "simplify_powers";
+        /**
+         * Number of target columns, the last ones of the data file. With
+         * several targets, the nodes of each tree are evaluated once and one
+         * Lasso model is fit per target; the fitness aggregates the errors of
+         * the targets, each relative to the range of its target, with their
+         * mean or their maximum
+         */
+        public static final String TARGET_NUMBER = "target_number";
+        public static final String TARGET_AGGREGATION = "target_aggregation";
+        public static final String TARGET_AGGREGATION_MEAN = "mean";
+        public static final String TARGET_AGGREGATION_MAX = "max";
+        /**
+         * Number of folds of the cross-validated fitness, 0 to fit the Lasso
+         * on all the training cases. The nodes of a tree are evaluated once
+         * on all the training cases; the fits of the folds read the rows of
+         * their training folds from these columns, and the fitness is the
+         * mean error on the held-out folds. Each fold has its own Lasso fit
+         * generator per evaluation thread: none copies the columns, but each
+         * keeps the correlations of the features entering its models (the
+         * number of nodes times the size of the models, in doubles) and one
+         * column of the length of its training fold. The racing evaluation
+         * and the linear scaling screen estimate the in-sample fit, and
+         * cannot be combined with cross-validation.
+         */
+        public static final String CROSS_VAL_FOLDS = "cross_validation_folds";
+        /**
+         * Semantic deduplication of the children by the hash of their
+         * predictions: off, report the duplicates, drop them, or replace them
+         * with fresh children
+         */
+        public static final String SEMANTIC_DEDUP = "semantic_dedup";
+        public static final String SEMANTIC_DEDUP_OFF = "off";
+        public static final String SEMANTIC_DEDUP_REPORT = "report";
+        public static final String SEMANTIC_DEDUP_DROP = "drop";
+        public static final String SEMANTIC_DEDUP_REPLACE = "replace";
+        /**
+         * With SEMANTIC_DEDUP replace, maximum number of rounds of fresh
+         * children bred to replace the duplicates of a generation
+         */
+        public static final String SEMANTIC_DEDUP_ROUNDS = "semantic_dedup_rounds";
+        /**
+         * Calibrate the evaluation at startup: time a sample of trees drawn
+         * like the initial population with several numbers of evaluation
+         * threads, block sizes and tile sizes, within EVAL_AUTOTUNE_SECONDS,
+         * and run with the fastest settings
+         */
+        public static final String EVAL_AUTOTUNE = "eval_autotune";
+        public static final String EVAL_AUTOTUNE_SECONDS = "eval_autotune_seconds";
+        /**
+         * Precision policy: in double, the data is stored and the trees are
+         * evaluated in double, and the node values are rounded to float for
+         * the Lasso fit; in float32, the data is stored as float columns and
+         * the trees are evaluated in float, straight into the columns of the
+         * Lasso fit, whose sums are still accumulated in double
+         */
+        public static final String PRECISION = "precision";
+        public static final String PRECISION_DOUBLE = "double";
+        public static final String PRECISION_FLOAT32 = "float32";
+        /**
+         * Solver of the Lasso path: naive computes the correlations of each
+         * feature entering the model over all the training cases, covariance
+         * builds the cross products of the features in a single pass over
+         * them and runs the path on the correlation matrix, which pays off
+         * when the training cases far outnumber the nodes of the trees
+         */
+        public static final String LASSO_SOLVER = "lasso_solver";
+        public static final String LASSO_SOLVER_NAIVE = "naive";
+        public static final String LASSO_SOLVER_COVARIANCE = "covariance";
+        /**
+         * Start the Lasso path of a child from the weights of its parent on
+         * the subtrees they share, a few lambdas before the one picked for
+         * the parent, instead of from lambda = infinity. The fits whose path
+         * takes in other subtrees, or whose model could differ from the cold
+         * one, are fit again from a cold start
+         */
+        public static final String LASSO_WARM_START = "lasso_warm_start";
     }
 
     /**
@@ -152,6 +342,8 @@ public final class Parameters {
         
         // Complexity
         public static final String SUBTREE_COMPLEXITY_FITNESS = "fitness.SubtreeComplexity";
+        // estimated cost of running the model on a row, after the SR fitness
+        public static final String EVALUATION_COST_FITNESS = "fitness.EvaluationCost";
 
         // INITIALIZE values
         public static final String TREE_INITIALIZE = "operator.TreeInitialize";
@@ -313,5 +505,41 @@ public final class Parameters {
 
         public static final String FRONT_RANK_METHOD = Names.FIRST_FITNESS;
         public static final String SAVE_JSON = "false";
+
+        public static final String EVAL_MODE = Names.EVAL_MODE_COLUMN;
+        public static final int EVAL_BLOCK_SIZE = 256;
+        public static final String EVAL_KERNELS = Names.EVAL_KERNELS_SCALAR;
+        public static final int BYTECODE_CACHE_SIZE = 2000;
+        public static final int BYTECODE_MIN_SIZE = 8;
+        public static final int BYTECODE_MAX_SIZE = 300;
+        public static final int SUBTREE_CACHE_MB = 0;
+        public static final boolean EVAL_SHARE_SUBTREES = false;
+        public static final String EVAL_PARALLELISM = Names.EVAL_PARALLELISM_AUTO;
+        public static final int EVAL_ROW_PARALLEL_MIN_ROWS = 500000;
+        public static final int EVAL_TILE_BATCH = 0;
+        public static final int EVAL_TILE_ROWS = 0;
+        public static final boolean INTERVAL_SCREEN = false;
+        public static final int FITNESS_MEMO_SIZE = 0;
+        public static final boolean RACING = false;
+        public static final double RACING_INITIAL_FRACTION = 0.05;
+        public static final int RACING_MIN_ROWS = 500;
+        public static final double RACING_GROWTH = 4;
+        public static final double RACING_MARGIN = 0.01;
+        public static final boolean LINEAR_SCALING_SCREEN = false;
+        public static final double LINEAR_SCALING_SCREEN_FRACTION = 0.5;
+        public static final int LINEAR_SCALING_SCREEN_MB = 256;
+        public static final boolean SIMPLIFY = false;
+        public static final boolean SIMPLIFY_POWERS = false;
+        public static final String TARGET_AGGREGATION = Names.TARGET_AGGREGATION_MEAN;
+        public static final int CROSS_VAL_FOLDS = 0;
+        public static final String SEMANTIC_DEDUP = Names.SEMANTIC_DEDUP_OFF;
+        public static final int SEMANTIC_DEDUP_ROUNDS = 3;
+        public static final boolean EVAL_AUTOTUNE = false;
+        public static final int EVAL_AUTOTUNE_SECONDS = 10;
+        // trees timed by the calibration
+        public static final int EVAL_AUTOTUNE_SAMPLE = 32;
+        public static final String PRECISION = Names.PRECISION_DOUBLE;
+        public static final String LASSO_SOLVER = Names.LASSO_SOLVER_NAIVE;
+        public static final boolean LASSO_WARM_START = false;
     }
 }
\ No newline at end of file
@@ -20,9 +20,16 @@ package evogpj.algorithm;
 
 import evogpj.evaluation.java.CSVDataJava;
 import evogpj.evaluation.java.DataJava;
+import evogpj.evaluation.java.EvaluationCostFitness;
 import evogpj.evaluation.FitnessFunction;
+import evogpj.evaluation.FitnessMemo;
 import evogpj.evaluation.java.SubtreeComplexityFitness;
+import evogpj.evaluation.java.EvaluationAutotuner;
 import evogpj.evaluation.java.SRLARSJava;
+import evogpj.evaluation.java.LinearScalingScreen;
+import evogpj.evaluation.java.RacingEvaluation;
+import evogpj.evaluation.java.SemanticDedup;
+import evogpj.evaluation.java.TreeSimplifier;
 import evogpj.genotype.TreeGenerator;
 import evogpj.gp.GPException;
 import evogpj.gp.Individual;
@@ -31,6 +38,7 @@ import evogpj.gp.Population;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
@@ -68,12 +76,44 @@ public class SymbRegMOO {
     /* NUMBER OF THREADS EMPLOYED IN THE EXERNAL EVALUATION */
     protected int EXTERNAL_THREADS = Parameters.Defaults.EXTERNAL_THREADS;
     
+    /* EVALUATIONS REMEMBERED ACROSS GENERATIONS */
+    protected int FITNESS_MEMO_SIZE = Parameters.Defaults.FITNESS_MEMO_SIZE;
+    protected FitnessMemo fitnessMemo;
+    
+    /* RACING EVALUATION OF THE CHILDREN ON SUBSAMPLES OF THE DATA */
+    protected boolean RACING = Parameters.Defaults.RACING;
+    protected RacingEvaluation racing;
+    
+    /* LINEAR SCALING ESTIMATE OF THE CHILDREN BEFORE THE LASSO FIT */
+    protected boolean LINEAR_SCALING_SCREEN = Parameters.Defaults.LINEAR_SCALING_SCREEN;
+    protected LinearScalingScreen linearScalingScreen;
+    
+    /* ALGEBRAIC SIMPLIFICATION OF THE TREES BEFORE THEIR EVALUATION */
+    protected boolean SIMPLIFY = Parameters.Defaults.SIMPLIFY;
+    protected boolean SIMPLIFY_POWERS = Parameters.Defaults.SIMPLIFY_POWERS;
+    protected TreeSimplifier simplifier;
+    
+    /* SEMANTIC DEDUPLICATION OF THE CHILDREN */
+    protected String SEMANTIC_DEDUP = Parameters.Defaults.SEMANTIC_DEDUP;
+    protected int SEMANTIC_DEDUP_ROUNDS = Parameters.Defaults.SEMANTIC_DEDUP_ROUNDS;
+    protected SemanticDedup semanticDedup;
+    
+    /* STARTUP CALIBRATION OF THE EVALUATION SETTINGS */
+    protected boolean EVAL_AUTOTUNE = Parameters.Defaults.EVAL_AUTOTUNE;
+    protected int EVAL_AUTOTUNE_SECONDS = Parameters.Defaults.EVAL_AUTOTUNE_SECONDS;
+    
+    /* PRECISION OF THE DATA AND OF THE EVALUATION */
+    protected String PRECISION = Parameters.Defaults.PRECISION;
+    
     /* DATA */
     // TRAINING SET
     protected String PROBLEM;
     // INTEGER TARGETS
     protected boolean COERCE_TO_INT = Parameters.Defaults.COERCE_TO_INT;
-    protected int TARGET_NUMBER = 1;
+    // NUMBER OF TARGETS, THE LAST COLUMNS OF THE DATA
+    protected int TARGET_NUMBER = Parameters.Defaults.TARGET_NUMBER;
+    // NUMBER OF FOLDS OF THE CROSS-VALIDATED FITNESS
+    protected int CROSS_VAL_FOLDS = Parameters.Defaults.CROSS_VAL_FOLDS;
     // FEATURES
     protected List<String> TERM_SET;    
     
@@ -86,6 +126,11 @@ public class SymbRegMOO {
     protected Long startTime;
     // TIME OUT
     protected Long TIMEOUT;
+    // duration of the last generation (ms), the estimate of the next one
+    protected long lastGenerationMillis;
+    // the last generation reached the time out before its children were
+    // evaluated, and was discarded
+    protected boolean generationCancelled;
     
     // MUTATION RATE
     protected double MUTATION_RATE = Parameters.Defaults.MUTATION_RATE;
@@ -160,6 +205,10 @@ public class SymbRegMOO {
 
     // FITNESS FUNCTIONS
     protected LinkedHashMap<String, FitnessFunction> fitnessFunctions;
+    // MRGP fitness, null unless it is an objective
+    protected SRLARSJava srFitness;
+    // estimated cost of running the models, null unless it is an objective
+    protected EvaluationCostFitness evaluationCost;
     
     
     /* CONTROL FOR END OF EVOLUTIONARY PROCESS*/
@@ -268,6 +317,30 @@ public class SymbRegMOO {
         }
         if (props.containsKey(Parameters.Names.EXTERNAL_THREADS))
             EXTERNAL_THREADS = Integer.valueOf(props.getProperty(Parameters.Names.EXTERNAL_THREADS));
+        if (props.containsKey(Parameters.Names.FITNESS_MEMO_SIZE))
+            FITNESS_MEMO_SIZE = Integer.valueOf(props.getProperty(Parameters.Names.FITNESS_MEMO_SIZE));
+        if (props.containsKey(Parameters.Names.RACING))
+            RACING = Boolean.parseBoolean(props.getProperty(Parameters.Names.RACING).trim());
+        if (props.containsKey(Parameters.Names.LINEAR_SCALING_SCREEN))
+            LINEAR_SCALING_SCREEN = Boolean.parseBoolean(props.getProperty(Parameters.Names.LINEAR_SCALING_SCREEN).trim());
+        if (props.containsKey(Parameters.Names.SIMPLIFY))
+            SIMPLIFY = Boolean.parseBoolean(props.getProperty(Parameters.Names.SIMPLIFY).trim());
+        if (props.containsKey(Parameters.Names.SIMPLIFY_POWERS))
+            SIMPLIFY_POWERS = Boolean.parseBoolean(props.getProperty(Parameters.Names.SIMPLIFY_POWERS).trim());
+        if (props.containsKey(Parameters.Names.SEMANTIC_DEDUP))
+            SEMANTIC_DEDUP = props.getProperty(Parameters.Names.SEMANTIC_DEDUP).trim();
+        if (props.containsKey(Parameters.Names.SEMANTIC_DEDUP_ROUNDS))
+            SEMANTIC_DEDUP_ROUNDS = Integer.valueOf(props.getProperty(Parameters.Names.SEMANTIC_DEDUP_ROUNDS).trim());
+        if (props.containsKey(Parameters.Names.EVAL_AUTOTUNE))
+            EVAL_AUTOTUNE = Boolean.parseBoolean(props.getProperty(Parameters.Names.EVAL_AUTOTUNE).trim());
+        if (props.containsKey(Parameters.Names.PRECISION))
+            PRECISION = props.getProperty(Parameters.Names.PRECISION).trim();
+        if (props.containsKey(Parameters.Names.EVAL_AUTOTUNE_SECONDS))
+            EVAL_AUTOTUNE_SECONDS = Integer.valueOf(props.getProperty(Parameters.Names.EVAL_AUTOTUNE_SECONDS).trim());
+        if (props.containsKey(Parameters.Names.TARGET_NUMBER))
+            TARGET_NUMBER = Integer.valueOf(props.getProperty(Parameters.Names.TARGET_NUMBER).trim());
+        if (props.containsKey(Parameters.Names.CROSS_VAL_FOLDS))
+            CROSS_VAL_FOLDS = Integer.valueOf(props.getProperty(Parameters.Names.CROSS_VAL_FOLDS).trim());
         if (props.containsKey(Parameters.Names.FITNESS))
             FITNESS = props.getProperty(Parameters.Names.FITNESS);            
         if (props.containsKey(Parameters.Names.MUTATION_RATE))
@@ -352,9 +425,12 @@ public class SymbRegMOO {
         System.out.println("Running evogpj with seed: " + seed);
         rand = new MersenneTwisterFast(seed);
         fitnessFunctions = splitFitnessOperators(FITNESS);
+        long dataFingerprint = 0;
         for (String fitnessOperatorName : fitnessFunctions.keySet()) {
             if (fitnessOperatorName.equals(Parameters.Operators.SR_JAVA_FITNESS)) {
-                DataJava data = new CSVDataJava(PROBLEM);
+                DataJava data = new CSVDataJava(PROBLEM, TARGET_NUMBER,
+                        PRECISION.equals(Parameters.Names.PRECISION_FLOAT32));
+                dataFingerprint = data.getFingerprint();
                 minTarget = data.getTargetMin();
                 maxTarget = data.getTargetMax();
                 if (TERM_SET == null) {
@@ -362,14 +438,38 @@ public class SymbRegMOO {
                     for (int i = 0; i < data.getNumberOfFeatures(); i++) TERM_SET.add("X" + (i + 1));
                     System.out.println(TERM_SET);
                 }
-                fitnessFunctions.put(fitnessOperatorName,new SRLARSJava(data, MEAN_POW, COERCE_TO_INT,EXTERNAL_THREADS));
+                Properties evalProps = EVAL_AUTOTUNE ? autotuneEvaluation(props, seed, data) : props;
+                srFitness = new SRLARSJava(data, MEAN_POW, COERCE_TO_INT,EXTERNAL_THREADS,evalProps);
+                fitnessFunctions.put(fitnessOperatorName,srFitness);
+                if (RACING) racing = new RacingEvaluation(srFitness, seed, props);
+                if (LINEAR_SCALING_SCREEN) linearScalingScreen = new LinearScalingScreen(srFitness, props);
                 //modelScalerJava = new SRModelScalerJava(data);
             } else if (fitnessOperatorName.equals(Parameters.Operators.SUBTREE_COMPLEXITY_FITNESS)) {
                 fitnessFunctions.put(fitnessOperatorName,new SubtreeComplexityFitness());
+            } else if (fitnessOperatorName.equals(Parameters.Operators.EVALUATION_COST_FITNESS)) {
+                evaluationCost = new EvaluationCostFitness();
+                fitnessFunctions.put(fitnessOperatorName,evaluationCost);
             } else {
                 System.err.format("Invalid fitness function %s specified for problem type %s%n",fitnessOperatorName);
             }
         }
+        // the evaluation cost is computed from the Lasso weights set by the
+        // SR fitness function, so it must be evaluated after it
+        List<String> fitnessNames = new ArrayList<String>(fitnessFunctions.keySet());
+        if (evaluationCost != null && srFitness != null
+                && fitnessNames.indexOf(Parameters.Operators.EVALUATION_COST_FITNESS)
+                < fitnessNames.indexOf(Parameters.Operators.SR_JAVA_FITNESS)) {
+            System.err.format("The fitness function %s must come after %s%n",
+                    Parameters.Operators.EVALUATION_COST_FITNESS, Parameters.Operators.SR_JAVA_FITNESS);
+            System.exit(-1);
+        }
+        // the race and the screen estimate the in-sample Lasso fit: their
+        // estimates cannot be compared with a held-out error
+        if (CROSS_VAL_FOLDS > 1 && (RACING || LINEAR_SCALING_SCREEN)) {
+            System.err.format("%s cannot be combined with %s or %s%n", Parameters.Names.CROSS_VAL_FOLDS,
+                    Parameters.Names.RACING, Parameters.Names.LINEAR_SCALING_SCREEN);
+            System.exit(-1);
+        }
 
         TreeGenerator treeGen = new TreeGenerator(rand, FUNC_SET, TERM_SET);
         if (INITIALIZE.equals(Parameters.Operators.TREE_INITIALIZE)) {
@@ -405,11 +505,29 @@ public class SymbRegMOO {
         //Individual linearModelInd = new Individual(t);
         // to set up equalization operator, we need to evaluate all the
         // individuals first
+        if (FITNESS_MEMO_SIZE > 0) {
+            fitnessMemo = new FitnessMemo(FITNESS_MEMO_SIZE, dataFingerprint);
+        }
+        if (SIMPLIFY) {
+            simplifier = new TreeSimplifier(SIMPLIFY_POWERS);
+        }
+        if (SEMANTIC_DEDUP.equals(Parameters.Names.SEMANTIC_DEDUP_REPORT)) {
+            semanticDedup = new SemanticDedup(false);
+        } else if (SEMANTIC_DEDUP.equals(Parameters.Names.SEMANTIC_DEDUP_DROP)
+                || SEMANTIC_DEDUP.equals(Parameters.Names.SEMANTIC_DEDUP_REPLACE)) {
+            semanticDedup = new SemanticDedup(true);
+        } else if (!SEMANTIC_DEDUP.equals(Parameters.Names.SEMANTIC_DEDUP_OFF)) {
+            System.err.format("Invalid %s value %s specified%n", Parameters.Names.SEMANTIC_DEDUP, SEMANTIC_DEDUP);
+            System.exit(-1);
+        }
         pop = initialize.initialize(POP_SIZE);
         //pop.set(0,linearModelInd);
         // initialize totalPop to simply the initial population
-        for (FitnessFunction f : fitnessFunctions.values())
-            f.evalPop(pop);
+        evalPop(pop);
+        // the evaluations of the next generations stop at the time out
+        if (srFitness != null && TIMEOUT != null) {
+            srFitness.setDeadline(TIMEOUT);
+        }
         // calculate domination counts of initial population for tournament selection
         try {
             DominatedCount.countDominated(pop, fitnessFunctions);
@@ -429,6 +547,109 @@ public class SymbRegMOO {
         }
     }
 
+    /**
+     * Calibrate the evaluation settings on trees drawn like the initial
+     * population (see {@link EvaluationAutotuner}). The trees come from a
+     * generator of their own, so the evolution does not depend on the
+     * calibration.
+     * @param props
+     * @param seed
+     * @param data
+     * @return the properties with the fastest evaluation settings
+     */
+    protected Properties autotuneEvaluation(Properties props, long seed, DataJava data) {
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        MersenneTwisterFast calibrationRand = new MersenneTwisterFast(seed);
+        TreeGenerator treeGen = new TreeGenerator(calibrationRand, FUNC_SET, TERM_SET);
+        // enough trees to keep the threads busy, as the population does
+        int sampleSize = Math.min(POP_SIZE, Math.max(Parameters.Defaults.EVAL_AUTOTUNE_SAMPLE, 4 * maxThreads));
+        Population sample = new TreeInitialize(calibrationRand, props, treeGen).initialize(sampleSize);
+        EvaluationAutotuner tuner = new EvaluationAutotuner(data, MEAN_POW, COERCE_TO_INT, EVAL_AUTOTUNE_SECONDS * 1000L);
+        Properties tuned = tuner.tune(sample, props, EXTERNAL_THREADS, maxThreads);
+        System.out.println(tuner.getReport());
+        EXTERNAL_THREADS = Integer.valueOf(tuned.getProperty(Parameters.Names.EXTERNAL_THREADS));
+        return tuned;
+    }
+
+    /**
+     * Evaluate a population with all the fitness functions. If simplification
+     * is enabled, the trees are simplified first. Individuals whose genotype
+     * is remembered by the fitness memo, if enabled, are not evaluated again.
+     * @param p
+     */
+    protected void evalPop(Population p) {
+        evalPop(p, null);
+    }
+
+    /**
+     * Evaluate the children of a generation. If the linear scaling screen is
+     * enabled, only the promising children are fit with the Lasso. If the
+     * racing evaluation is enabled, the children that cannot survive the
+     * truncation against the parents are only evaluated on subsamples of the
+     * data. Children whose fitness is only estimated are not remembered by the
+     * fitness memo, nor are the children evaluated past the time out.
+     * @param p
+     * @param parents current population, or null
+     */
+    protected void evalPop(Population p, Population parents) {
+        long stopsBefore = getDeadlineStops();
+        if (simplifier != null) {
+            simplifier.simplify(p);
+        }
+        Population toEvaluate = p;
+        if (fitnessMemo != null) {
+            toEvaluate = fitnessMemo.recall(p);
+        }
+        // the screen evaluates the other fitness functions: the promoted
+        // children only need the Lasso fit, and the cost of its model
+        boolean screened = linearScalingScreen != null && parents != null;
+        if (screened) {
+            toEvaluate = linearScalingScreen.evalPop(toEvaluate, parents, fitnessFunctions);
+        }
+        Population evaluated = toEvaluate;
+        if (racing != null && parents != null) {
+            evaluated = racing.evalPop(toEvaluate, parents, fitnessFunctions, screened);
+            // the survivors of the race were fit again on all the training
+            // cases, after their cost was computed
+            if (evaluationCost != null) {
+                evaluationCost.evalPop(evaluated);
+            }
+        } else if (screened) {
+            srFitness.evalPop(toEvaluate);
+            if (evaluationCost != null) {
+                evaluationCost.evalPop(toEvaluate);
+            }
+        } else {
+            for (FitnessFunction f : fitnessFunctions.values()) {
+                f.evalPop(toEvaluate);
+            }
+        }
+        // past the time out, some individuals may not have been evaluated
+        if (fitnessMemo != null && getDeadlineStops() == stopsBefore) {
+            fitnessMemo.store(evaluated);
+        }
+    }
+
+    /**
+     * @return the number of individuals skipped and of races and screens
+     *         stopped at the time out, which grows when an evaluation is
+     *         incomplete
+     */
+    protected long getDeadlineStops() {
+        long stops = 0;
+        if (srFitness != null) stops += srFitness.getSkippedIndividuals();
+        if (racing != null) stops += racing.getDeadlineStops();
+        if (linearScalingScreen != null) stops += linearScalingScreen.getDeadlineStops();
+        return stops;
+    }
+
+    /**
+     * @return true if the time out has passed
+     */
+    protected boolean isPastTimeout() {
+        return TIMEOUT != null && System.currentTimeMillis() >= TIMEOUT;
+    }
+
     /**
      * Accept potential migrants into the population
      * @param migrants
@@ -462,31 +683,20 @@ public class SymbRegMOO {
     protected void step() throws GPException {
         // generate children from previous population. don't use elitism
         // here since that's done later
-        childPop = new Population();
-        Population children;
-        while (childPop.size() < POP_SIZE) {
-            Individual p1 = select.select(pop);
-            double prob = rand.nextDouble();
-            // Select exactly one operator to use
-            if (prob < XOVER_RATE) {
-                Individual p2 = select.select(pop);
-                children = xover.crossOver(p1, p2);
-                for (Individual ind : children) {    
-                    if(!ind.equals(p1) && !ind.equals(p2) && (childPop.size() < POP_SIZE)){
-                        childPop.add(ind);
-                    }
-                }
-            } else if (prob < MUTATION_RATE + XOVER_RATE) {
-                Individual ind = mutate.mutate(p1);
-                if(!ind.equals(p1) && (childPop.size() < POP_SIZE)){
-                    childPop.add(ind);
-                }
-            }
-        }
+        childPop = breed(POP_SIZE);
         // evaluate all children
-        for (String fname : fitnessFunctions.keySet()) {
-            FitnessFunction f = fitnessFunctions.get(fname);
-            f.evalPop(childPop);
+        long stopsBefore = getDeadlineStops();
+        evalPop(childPop, pop);
+        if (semanticDedup != null && !isPastTimeout()) {
+            childPop = removeDuplicates(childPop);
+        }
+        // the evaluation stopped at the time out: some children were not
+        // evaluated, so the generation is discarded and the population and
+        // its front are those of the previous generation. A generation
+        // evaluated completely is kept, and stopCriteria ends the run.
+        if (getDeadlineStops() > stopsBefore) {
+            generationCancelled = true;
+            return;
         }
         // combine the children and parents for a total of 2*POP_SIZE
         totalPop = new Population(pop, childPop);
@@ -538,6 +748,66 @@ public class SymbRegMOO {
         }
     }
 
+    /**
+     * Generate children from the current population with the genetic
+     * operators
+     * @param n number of children
+     * @return the children, not evaluated
+     * @throws GPException
+     */
+    protected Population breed(int n) throws GPException {
+        Population childPop = new Population();
+        Population children;
+        while (childPop.size() < n) {
+            Individual p1 = select.select(pop);
+            double prob = rand.nextDouble();
+            // Select exactly one operator to use
+            if (prob < XOVER_RATE) {
+                Individual p2 = select.select(pop);
+                children = xover.crossOver(p1, p2);
+                for (Individual ind : children) {    
+                    if(!ind.equals(p1) && !ind.equals(p2) && (childPop.size() < n)){
+                        childPop.add(ind);
+                    }
+                }
+            } else if (prob < MUTATION_RATE + XOVER_RATE) {
+                Individual ind = mutate.mutate(p1);
+                if(!ind.equals(p1) && (childPop.size() < n)){
+                    childPop.add(ind);
+                }
+            }
+        }
+        return childPop;
+    }
+
+    /**
+     * Semantic deduplication of the evaluated children (see
+     * {@link SemanticDedup}). In replace mode, the duplicates are replaced
+     * with fresh children, themselves deduplicated, for a few rounds.
+     * @param children evaluated children
+     * @return the children to combine with the population
+     * @throws GPException
+     */
+    protected Population removeDuplicates(Population children) throws GPException {
+        Population kept = semanticDedup.filter(pop, new Population(), children, fitnessFunctions);
+        if (SEMANTIC_DEDUP.equals(Parameters.Names.SEMANTIC_DEDUP_REPLACE)) {
+            for (int round = 0; round < SEMANTIC_DEDUP_ROUNDS && kept.size() < children.size(); round++) {
+                Population fresh = breed(children.size() - kept.size());
+                long stopsBefore = getDeadlineStops();
+                evalPop(fresh, pop);
+                if (getDeadlineStops() > stopsBefore) {
+                    break;
+                }
+                semanticDedup.countReplaced(fresh.size());
+                kept.addAll(semanticDedup.filter(pop, kept, fresh, fitnessFunctions));
+                if (isPastTimeout()) {
+                    break;
+                }
+            }
+        }
+        return kept;
+    }
+
     /**
      * get the best individual per generation in a Population object
      * 
@@ -547,6 +817,22 @@ public class SymbRegMOO {
         return bestPop;
     }
                 
+    /**
+     * Print the statistics reported by the fitness functions for the last
+     * generation
+     */
+    protected void printGenerationReports() {
+        if (simplifier != null) System.out.println(simplifier.getReport());
+        if (semanticDedup != null) System.out.println(semanticDedup.getReport());
+        if (fitnessMemo != null) System.out.println(fitnessMemo.getReport());
+        if (linearScalingScreen != null) System.out.println(linearScalingScreen.getReport());
+        if (racing != null) System.out.println(racing.getReport());
+        for (FitnessFunction f : fitnessFunctions.values()) {
+            String report = f.getGenerationReport();
+            if (report != null) System.out.println(report);
+        }
+    }
+
     /**
     * Run the current population for the specified number of generations.
     * 
@@ -566,21 +852,30 @@ public class SymbRegMOO {
         while ((generation <= NUM_GENS) && (!finished)) {
             System.out.format("Generation %d\n", generation);
             System.out.flush();
+            long generationStart = System.currentTimeMillis();
             try {
                 step();
             } catch (GPException e) {
                 System.err.format("Exception launched in run_population");
             }
+            if (generationCancelled) {
+                // save the last complete front right away
+                System.out.format("Time out reached during generation %d, its children are discarded%n", generation);
+                printGenerationReports();
+                break;
+            }
             // print information about this generation
             System.out.format("Best individual for generation %d:%n", generation);
             double MSE = best.getFitness();
             MSE = ((1-MSE) / (MSE + 1));
             System.out.println(best.getFitnesses());
             System.out.println(MSE);
+            printGenerationReports();
             System.out.flush();
             bestPop.add(best);
             timeStamp = (System.currentTimeMillis() - startTime) / 1000;
             System.out.println("ELAPSED TIME: " + timeStamp);
+            lastGenerationMillis = System.currentTimeMillis() - generationStart;
             generation++;
             finished = stopCriteria();
             
@@ -588,6 +883,7 @@ public class SymbRegMOO {
 
         String firstFitnessFunction = fitnessFunctions.keySet().iterator().next();
         if (firstFitnessFunction.equals(Parameters.Operators.SR_JAVA_FITNESS) ){
+            paretoFront = getFullyFitFront();
             this.saveText(MODELS_PATH, "", false);
             for(Individual ind:bestPop){
                 for(int j = 0;j<ind.getWeights().size()-1;j++){
@@ -600,13 +896,18 @@ public class SymbRegMOO {
             Individual acc = paretoFront.get(0);
             Individual comp = paretoFront.get(0);
             Individual knee = paretoFront.get(0);
+            // without the subtree complexity objective, the least complex
+            // model is the cheapest one to run
+            String complexityKey = Parameters.Operators.SUBTREE_COMPLEXITY_FITNESS;
+            if (!fitnessFunctions.containsKey(complexityKey) && evaluationCost != null)
+                complexityKey = Parameters.Operators.EVALUATION_COST_FITNESS;
             paretoFront.calculateEuclideanDistances(fitnessFunctions);
             this.saveText(PARETO_PATH, "", false);
             for(Individual ind:paretoFront){
                 if(ind.getFitness(Parameters.Operators.SR_JAVA_FITNESS) > acc.getFitness(Parameters.Operators.SR_JAVA_FITNESS)){
                     acc = ind;
                 }
-                if(ind.getFitness(Parameters.Operators.SUBTREE_COMPLEXITY_FITNESS) < comp.getFitness(Parameters.Operators.SUBTREE_COMPLEXITY_FITNESS)){
+                if(ind.getFitness(complexityKey) < comp.getFitness(complexityKey)){
                     comp = ind;
                 }
                 if(ind.getEuclideanDistance()<knee.getEuclideanDistance()){
@@ -646,21 +947,120 @@ public class SymbRegMOO {
             this.saveText(KNEE_PATH, knee.getWeights().get(knee.getWeights().size()-1) + ",", true);
             this.saveText(KNEE_PATH, knee.getLassoIntercept() + ",", true);
             this.saveText(KNEE_PATH, knee.toString() + "\n", true);
+            
+            // SAVE THE MODELS OF THE OTHER TARGETS
+            saveTargetModels(MODELS_PATH, bestPop);
+            saveTargetModels(PARETO_PATH, paretoFront);
+            saveTargetModels(LEAST_COMPLEX_PATH, Arrays.asList(comp));
+            saveTargetModels(MOST_ACCURATE_PATH, Arrays.asList(acc));
+            saveTargetModels(KNEE_PATH, Arrays.asList(knee));
         } 
         
         return bestOnCrossVal;
     }
     
     /**
-     * Stop criteria - timeout reached?
+     * The children dropped by the racing evaluation keep a model fit on a
+     * subsample only: the models saved are those of the front of the
+     * individuals of the population fit on all the training cases
+     * @return the front of the population without the subsample fits
+     */
+    protected Population getFullyFitFront() {
+        Population fullyFit = new Population();
+        for (Individual ind : pop) {
+            if (!ind.isSubsampleFit()) {
+                fullyFit.add(ind);
+            }
+        }
+        if (fullyFit.size() == pop.size() || fullyFit.isEmpty()) {
+            return paretoFront;
+        }
+        try {
+            DominatedCount.countDominated(fullyFit, fitnessFunctions);
+        } catch (DominationException e) {
+            System.err.print("Domination Counting exception");
+        }
+        Population front = new Population();
+        for (Individual ind : fullyFit) {
+            if (ind.getDominationCount().equals(0)) {
+                front.add(ind);
+            }
+        }
+        return front;
+    }
+
+    /**
+     * Save the models of the targets after the first one in multi-target
+     * regression: the models of the k-th target, counted from 1, go to the
+     * file of the first target with the suffix _target&lt;k&gt;, in the same
+     * format. A model is only meaningful on its own target column: the
+     * readers of these files must be given the number of targets of the data
+     * and the index of the target
+     * (see {@link evogpj.test.TestRGPModels#TestRGPModels(String, String, boolean, int, int)}),
+     * as the single-target readers take the last column as the target. The
+     * files of targets beyond the current number, left by an earlier run, are
+     * removed, so that the files next to filepath give the number of targets.
+     * @param filepath file of the models of the first target
+     * @param inds
+     */
+    protected void saveTargetModels(String filepath, List<Individual> inds) {
+        for (int t = TARGET_NUMBER; new File(getTargetModelsPath(filepath, t)).isFile(); t++) {
+            if (!new File(getTargetModelsPath(filepath, t)).delete()) {
+                System.err.format("Could not remove the stale models %s%n", getTargetModelsPath(filepath, t));
+                break;
+            }
+        }
+        for (int t = 1; t < TARGET_NUMBER; t++) {
+            String targetPath = getTargetModelsPath(filepath, t);
+            this.saveText(targetPath, "", false);
+            for (Individual ind : inds) {
+                double[] weights = ind.getTargetWeights(t);
+                StringBuilder line = new StringBuilder();
+                for (int j = 0; j < weights.length; j++) {
+                    line.append(weights[j]).append((j < weights.length - 1) ? " " : ",");
+                }
+                line.append(ind.getTargetIntercept(t)).append(",").append(ind.toString()).append("\n");
+                this.saveText(targetPath, line.toString(), true);
+            }
+        }
+    }
+    
+    /**
+     * @param filepath file of the models of the first target
+     * @param t index of the target among all the targets, from 0: the second
+     *        target is t = 1 (the first one, t = 0, is saved to filepath)
+     * @return file of the models of target t, with the suffix
+     *         _target&lt;t+1&gt;
+     */
+    public static String getTargetModelsPath(String filepath, int t) {
+        int dot = filepath.lastIndexOf('.');
+        return (dot > filepath.lastIndexOf('/'))
+                ? filepath.substring(0, dot) + "_target" + (t + 1) + filepath.substring(dot)
+                : filepath + "_target" + (t + 1);
+    }
+
+    /**
+     * Stop criteria - timeout reached, or too close to start another
+     * generation given the duration of the last one?
      * @return whether to stop the run
      */
     public boolean stopCriteria(){
         boolean stop = false;
-        if( System.currentTimeMillis() >= TIMEOUT){
+        if (TIMEOUT == null) {
+            return stop;
+        }
+        long now = System.currentTimeMillis();
+        if( now >= TIMEOUT){
             System.out.println("Timout exceeded, exiting.");
             return true;
         }
+        // a generation that cannot finish before the time out would be
+        // discarded: stop now
+        if (now + lastGenerationMillis > TIMEOUT) {
+            System.out.format("The next generation would take about %d ms, %d ms are left: exiting.%n",
+                    lastGenerationMillis, TIMEOUT - now);
+            return true;
+        }
         return stop;
     }
         
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.java.ColumnEvaluator;
+import evogpj.evaluation.java.CompiledTree;
+import evogpj.evaluation.java.TiledEvaluator;
+import evogpj.genotype.TreeGenerator;
+import evogpj.gp.GPException;
+import evogpj.gp.MersenneTwisterFast;
+
+/**
+ * Time the column-wise evaluation of a batch of trees one tree at a time
+ * against the tiled evaluation of {@link TiledEvaluator}, on a dataset larger
+ * than the last-level cache. Run with <code>ant run-tiled-benchmark</code> or:
+ * <pre>
+ * java -Xmx3g -cp bin:lib/* evogpj.benchmark.TiledEvaluationBenchmark [rows] [features] [trees] [tileRows] [reps]
+ * </pre>
+ * A tile size of 0 uses {@link TiledEvaluator#getDefaultTileRows}. Each pass
+ * is timed after a warm-up pass of both variants; the report gives the median
+ * and the fastest of the measured passes.
+ */
+public class TiledEvaluationBenchmark {
+
+    public static void main(String[] args) throws GPException {
+        int numRows = (args.length > 0) ? Integer.parseInt(args[0]) : 2000000;
+        int numFeatures = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        int numTrees = (args.length > 2) ? Integer.parseInt(args[2]) : 8;
+        int tileRows = (args.length > 3) ? Integer.parseInt(args[3]) : 0;
+        int reps = (args.length > 4) ? Integer.parseInt(args[4]) : 5;
+        int blockSize = Parameters.Defaults.EVAL_BLOCK_SIZE;
+        if (tileRows <= 0) tileRows = TiledEvaluator.getDefaultTileRows(numFeatures, blockSize);
+        if (reps < 1) reps = 1;
+
+        MersenneTwisterFast rand = new MersenneTwisterFast(5);
+        double[][] columns = new double[numFeatures][numRows];
+        for (double[] column : columns) {
+            for (int r = 0; r < numRows; r++) column[r] = rand.nextDouble() * 4 - 2;
+        }
+        List<String> terms = new ArrayList<String>();
+        for (int i = 1; i <= numFeatures; i++) terms.add("X" + i);
+        TreeGenerator treeGen = new TreeGenerator(rand, Parameters.Defaults.FUNCTIONS, terms);
+        CompiledTree[] programs = new CompiledTree[numTrees];
+        float[][][] dest = new float[numTrees][][];
+        int numNodes = 0;
+        for (int b = 0; b < numTrees; b++) {
+            programs[b] = CompiledTree.compile(treeGen.generateTree(4, true));
+            dest[b] = new float[programs[b].getSize()][numRows];
+            numNodes += programs[b].getSize();
+        }
+
+        ColumnEvaluator evaluator = new ColumnEvaluator(blockSize);
+        TiledEvaluator tiled = new TiledEvaluator(tileRows);
+        System.out.format("%d rows, %d features, %d trees (%d nodes), %d rows per tile, %d passes%n",
+                numRows, numFeatures, numTrees, numNodes, tileRows, reps);
+
+        evaluateSequential(evaluator, programs, columns, numRows, dest);
+        tiled.evaluate(programs, null, evaluator, columns, 0, numRows, dest);
+
+        long[] sequentialNanos = new long[reps];
+        long[] tiledNanos = new long[reps];
+        for (int rep = 0; rep < reps; rep++) {
+            long t0 = System.nanoTime();
+            evaluateSequential(evaluator, programs, columns, numRows, dest);
+            long t1 = System.nanoTime();
+            tiled.evaluate(programs, null, evaluator, columns, 0, numRows, dest);
+            long t2 = System.nanoTime();
+            sequentialNanos[rep] = t1 - t0;
+            tiledNanos[rep] = t2 - t1;
+            System.out.format("pass %d: one tree at a time %.1f ms, tiled %.1f ms%n",
+                    rep + 1, sequentialNanos[rep] / 1e6, tiledNanos[rep] / 1e6);
+        }
+        Arrays.sort(sequentialNanos);
+        Arrays.sort(tiledNanos);
+        long sequentialMedian = sequentialNanos[reps / 2];
+        long tiledMedian = tiledNanos[reps / 2];
+        System.out.format("one tree at a time: median %.1f ms, best %.1f ms, %.1f M rows/s%n",
+                sequentialMedian / 1e6, sequentialNanos[0] / 1e6, rowsPerSecond(numRows, numTrees, sequentialMedian) / 1e6);
+        System.out.format("tiled: median %.1f ms, best %.1f ms, %.1f M rows/s%n",
+                tiledMedian / 1e6, tiledNanos[0] / 1e6, rowsPerSecond(numRows, numTrees, tiledMedian) / 1e6);
+        System.out.format("speedup of the median: %.2fx%n", (double) sequentialMedian / tiledMedian);
+    }
+
+    private static void evaluateSequential(ColumnEvaluator evaluator, CompiledTree[] programs,
+            double[][] columns, int numRows, float[][][] dest) {
+        for (int b = 0; b < programs.length; b++) {
+            evaluator.evaluate(programs[b], columns, 0, numRows, dest[b]);
+        }
+    }
+
+    /**
+     * Tree-rows evaluated per second: every tree of the batch sees every row.
+     */
+    private static double rowsPerSecond(int numRows, int numTrees, long nanos) {
+        return (double) numRows * numTrees / (nanos / 1e9);
+    }
+}
@@ -58,4 +58,13 @@ public abstract class FitnessFunction {
          */
 	public abstract Boolean isMaximizingFunction();
 
+        /**
+         * Statistics gathered by the evaluations since the previous call, to
+         * be printed in the log of each generation
+         * @return a report, or null if there is nothing to report
+         */
+        public String getGenerationReport() {
+                return null;
+        }
+
 }
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation;
+
+import evogpj.gp.Individual;
+import evogpj.gp.Population;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memo of the evaluations of the previous generations. Reproduction, failed
+ * crossovers and mutations often produce genotypes that have already been
+ * evaluated: their fitness values, Lasso weights and intercept are copied from
+ * the memo instead of being computed again.
+ * <p>
+ * Entries are keyed by the prefix string of the genotype and by a fingerprint
+ * of the training data, so that evaluations on different data are never
+ * mixed. The memo holds a bounded number of entries and forgets the least
+ * recently used first.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class FitnessMemo {
+
+    private final String dataKey;
+    private final LinkedHashMap<String, Memo> entries;
+    // statistics since the last report
+    private long hits;
+    private long lookups;
+
+    /**
+     * @param aCapacity maximum number of genotypes remembered
+     * @param aDataFingerprint fingerprint of the training data
+     */
+    public FitnessMemo(final int aCapacity, long aDataFingerprint) {
+        dataKey = Long.toHexString(aDataFingerprint) + " ";
+        entries = new LinkedHashMap<String, Memo>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Memo> eldest) {
+                return size() > aCapacity;
+            }
+        };
+        hits = 0;
+        lookups = 0;
+    }
+
+    private String getKey(Individual ind) {
+        return dataKey + ind.getGenotype().toString();
+    }
+
+    /**
+     * Copy the remembered evaluations to the individuals of the population
+     * @param pop
+     * @return the individuals that were not found, and need to be evaluated
+     */
+    public synchronized Population recall(Population pop) {
+        Population notFound = new Population();
+        for (Individual ind : pop) {
+            lookups++;
+            Memo e = entries.get(getKey(ind));
+            if (e == null) {
+                notFound.add(ind);
+            } else {
+                hits++;
+                ind.setFitnesses(new LinkedHashMap<String, Double>(e.fitnesses));
+                if (e.weights != null) ind.setWeights(new ArrayList<String>(e.weights));
+                ind.setLassoIntercept(e.lassoIntercept);
+                ind.setScaledCrossValFitness(e.crossValFitness);
+                if (e.targetWeights != null) ind.setTargetModels(e.targetWeights, e.targetIntercepts);
+                ind.setPredictionHash(e.predictionHash);
+            }
+        }
+        return notFound;
+    }
+
+    /**
+     * Remember the evaluations of the individuals of the population
+     * @param pop
+     */
+    public synchronized void store(Population pop) {
+        for (Individual ind : pop) {
+            entries.put(getKey(ind), new Memo(ind));
+        }
+    }
+
+    /**
+     * Summarize the use of the memo since the previous report, and reset the
+     * statistics
+     * @return report for the generation log
+     */
+    public synchronized String getReport() {
+        double hitRate = (lookups == 0) ? 0 : 100.0 * hits / lookups;
+        String report = String.format("Fitness memo: %d of %d individuals recalled (%.1f%% hit rate), %d genotypes",
+                hits, lookups, hitRate, entries.size());
+        hits = 0;
+        lookups = 0;
+        return report;
+    }
+
+    /**
+     * Evaluation of a genotype
+     */
+    private static class Memo {
+        private final LinkedHashMap<String, Double> fitnesses;
+        private final ArrayList<String> weights;
+        private final String lassoIntercept;
+        private final double crossValFitness;
+        private final Long predictionHash;
+        // models of every target in multi-target regression, null otherwise
+        private final double[][] targetWeights;
+        private final String[] targetIntercepts;
+
+        Memo(Individual ind) {
+            fitnesses = new LinkedHashMap<String, Double>(ind.getFitnesses());
+            weights = (ind.getWeights() == null) ? null : new ArrayList<String>(ind.getWeights());
+            lassoIntercept = ind.getLassoIntercept();
+            crossValFitness = ind.getCrossValFitness();
+            predictionHash = ind.getPredictionHash();
+            int numTargets = ind.getNumberOfTargets();
+            if (numTargets > 1) {
+                targetWeights = new double[numTargets][];
+                targetIntercepts = new String[numTargets];
+                for (int t = 0; t < numTargets; t++) {
+                    targetWeights[t] = ind.getTargetWeights(t);
+                    targetIntercepts[t] = ind.getTargetIntercept(t);
+                }
+            } else {
+                targetWeights = null;
+                targetIntercepts = null;
+            }
+        }
+    }
+}
@@ -38,7 +38,32 @@ public class CSVDataJava extends ScaledData {
 	 *        the target value
 	 */
 	public CSVDataJava(String csvfile) {
-		super(DataSizeRetreiver.num_fitness_cases(csvfile), DataSizeRetreiver.num_terminals(csvfile));
+		this(csvfile, 1);
+	}
+
+	/**
+	 * Parse given csvfile into set of input values and several targets.
+	 * 
+	 * @param csvfile file of comma-separated values, the last numberOfTargets
+	 *        values in each line are the target values
+	 * @param numberOfTargets
+	 */
+	public CSVDataJava(String csvfile, int numberOfTargets) {
+		this(csvfile, numberOfTargets, false);
+	}
+
+	/**
+	 * Parse given csvfile into set of input values and several targets,
+	 * optionally storing the input values in single precision.
+	 * 
+	 * @param csvfile file of comma-separated values, the last numberOfTargets
+	 *        values in each line are the target values
+	 * @param numberOfTargets
+	 * @param float32 store the input values as float columns only
+	 */
+	public CSVDataJava(String csvfile, int numberOfTargets, boolean float32) {
+		super(DataSizeRetreiver.num_fitness_cases(csvfile),
+				DataSizeRetreiver.num_terminals(csvfile) - (numberOfTargets - 1), numberOfTargets, float32);
 		BufferedReader f;
 		try {
                     f = new BufferedReader(new FileReader(csvfile));
@@ -51,13 +76,14 @@ public class CSVDataJava extends ScaledData {
                             int fitnessCaseIndex = 0;
                             while (f.ready() && fitnessCaseIndex < numberOfFitnessCases) {
                                     token = f.readLine().split(",");
-                                    for (int i = 0; i < token.length - 1; i++) {
-                                            this.fitnessCases[fitnessCaseIndex][i] = Double.valueOf(token[i]);
-                                            if(fitnessCases[fitnessCaseIndex][i] < minFeatures[i]) minFeatures[i] = fitnessCases[fitnessCaseIndex][i];
-                                            if(fitnessCases[fitnessCaseIndex][i] > maxFeatures[i]) maxFeatures[i] = fitnessCases[fitnessCaseIndex][i];
+                                    for (int i = 0; i < numberOfFeatures; i++) {
+                                            setInputValue(fitnessCaseIndex, i, Double.valueOf(token[i]));
                                     }
-                                    Double val = Double.valueOf(token[token.length - 1]);
+                                    Double val = Double.valueOf(token[numberOfFeatures]);
                                     addTargetValue(val, fitnessCaseIndex);
+                                    for (int t = 1; t < numberOfTargets; t++) {
+                                            addTargetValue(t, Double.valueOf(token[numberOfFeatures + t]), fitnessCaseIndex);
+                                    }
                                     fitnessCaseIndex++;
                             }
                             this.scaleTarget();
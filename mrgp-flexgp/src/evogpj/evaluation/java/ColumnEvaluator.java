@@ -0,0 +1,235 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+/**
+ * Column-at-a-time evaluation of a {@link CompiledTree}. The training cases
+ * are processed in blocks of rows; for each block, every instruction computes
+ * its whole output column from the columns of its operands, and the result is
+ * narrowed to float straight into the destination column of that node (the
+ * column-major feature matrix of the Lasso fit). Terminals read the dataset
+ * columns in place.
+ * <p>
+ * Optionally, the nodes are computed with the vectorizable kernels of
+ * {@link ColumnKernels}, which match the scalar path within a documented
+ * tolerance.
+ * <p>
+ * An evaluator keeps one block buffer per node and is not thread safe: each
+ * evaluation thread should own its instance.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class ColumnEvaluator {
+
+    private final int blockSize;
+    // compute the nodes with ColumnKernels
+    private final boolean useKernels;
+    // one output buffer per instruction, grown to the largest tree seen
+    private double[][] buffers;
+    // where each instruction's values for the current block can be read
+    private double[][] sources;
+    private int[] offsets;
+
+    /**
+     * @param aBlockSize number of rows evaluated per block
+     */
+    public ColumnEvaluator(int aBlockSize) {
+        this(aBlockSize, false);
+    }
+
+    /**
+     * @param aBlockSize number of rows evaluated per block
+     * @param aUseKernels whether to use the vectorizable kernels
+     */
+    public ColumnEvaluator(int aBlockSize, boolean aUseKernels) {
+        blockSize = aBlockSize;
+        useKernels = aUseKernels;
+        buffers = new double[0][];
+        sources = new double[0][];
+        offsets = new int[0];
+    }
+
+    /**
+     * Evaluate every node of the program on the first numRows rows.
+     *
+     * @param program
+     * @param columns input data, one array per feature
+     * @param numRows
+     * @param dest one column per instruction receiving its values
+     */
+    public void evaluate(CompiledTree program, double[][] columns, int numRows, float[][] dest) {
+        evaluate(program, columns, 0, numRows, dest);
+    }
+
+    /**
+     * Evaluate every node of the program on the rows from (inclusive) to to
+     * (exclusive). Evaluators working on disjoint ranges can share the
+     * destination columns.
+     *
+     * @param program
+     * @param columns input data, one array per feature
+     * @param from first row
+     * @param to last row, exclusive
+     * @param dest one column per instruction receiving its values
+     */
+    public void evaluate(CompiledTree program, double[][] columns, int from, int to, float[][] dest) {
+        int size = program.getSize();
+        ensureCapacity(size);
+        for (int start = from; start < to; start += blockSize) {
+            int len = Math.min(blockSize, to - start);
+            for (int i = 0; i < size; i++) {
+                int op = program.getOpcode(i);
+                float[] out = dest[i];
+                if (op == CompiledTree.VAR) {
+                    double[] col = columns[program.getVarIndex(i)];
+                    sources[i] = col;
+                    offsets[i] = start;
+                    for (int r = 0; r < len; r++) {
+                        out[start + r] = (float) col[start + r];
+                    }
+                } else {
+                    double[] values = buffers[i];
+                    compute(op, program.getArg1(i), program.getArg2(i), values, len);
+                    sources[i] = values;
+                    offsets[i] = 0;
+                    for (int r = 0; r < len; r++) {
+                        out[start + r] = (float) values[r];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluate every node of the program on the first numRows rows, reading
+     * the columns of the subtrees already in the cache and adding the columns
+     * computed. The rows are not blocked, since the cache holds whole columns.
+     *
+     * @param program
+     * @param columns input data, one array per feature
+     * @param numRows
+     * @param dest one column per instruction receiving its values
+     * @param cache
+     */
+    public void evaluate(CompiledTree program, double[][] columns, int numRows, float[][] dest, SubtreeCache cache) {
+        int size = program.getSize();
+        ensureCapacity(size);
+        String[] keys = program.getSubtreeKeys();
+        for (int i = 0; i < size; i++) {
+            int op = program.getOpcode(i);
+            double[] values;
+            if (op == CompiledTree.VAR) {
+                values = columns[program.getVarIndex(i)];
+            } else {
+                values = cache.get(keys[i]);
+                if (values == null) {
+                    values = new double[numRows];
+                    compute(op, program.getArg1(i), program.getArg2(i), values, numRows);
+                    cache.put(keys[i], values);
+                }
+            }
+            sources[i] = values;
+            offsets[i] = 0;
+            float[] out = dest[i];
+            for (int r = 0; r < numRows; r++) {
+                out[r] = (float) values[r];
+            }
+        }
+    }
+
+    /**
+     * Compute len values of a non-terminal instruction from the current
+     * sources of its operands
+     */
+    private void compute(int op, int a1, int a2, double[] values, int len) {
+        if (useKernels) {
+            if (a2 < 0) {
+                ColumnKernels.unary(op, sources[a1], offsets[a1], values, len);
+            } else {
+                ColumnKernels.binary(op, sources[a1], offsets[a1], sources[a2], offsets[a2], values, len);
+            }
+        } else if (a2 < 0) {
+            evalUnary(op, sources[a1], offsets[a1], values, len);
+        } else {
+            evalBinary(op, sources[a1], offsets[a1], sources[a2], offsets[a2], values, len);
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (buffers.length >= size) {
+            return;
+        }
+        double[][] newBuffers = new double[size][];
+        for (int i = 0; i < size; i++) {
+            newBuffers[i] = (i < buffers.length) ? buffers[i] : new double[blockSize];
+        }
+        buffers = newBuffers;
+        sources = new double[size][];
+        offsets = new int[size];
+    }
+
+    private static void evalUnary(int op, double[] a, int aOff, double[] out, int len) {
+        switch (op) {
+            case CompiledTree.SIN:
+                for (int r = 0; r < len; r++) out[r] = Math.sin(a[aOff + r]);
+                break;
+            case CompiledTree.COS:
+                for (int r = 0; r < len; r++) out[r] = Math.cos(a[aOff + r]);
+                break;
+            case CompiledTree.LOG:
+                for (int r = 0; r < len; r++) out[r] = CompiledTree.log(a[aOff + r]);
+                break;
+            case CompiledTree.EXP:
+                for (int r = 0; r < len; r++) out[r] = Math.exp(a[aOff + r]);
+                break;
+            case CompiledTree.SQRT:
+                for (int r = 0; r < len; r++) out[r] = Math.sqrt(Math.abs(a[aOff + r]));
+                break;
+            case CompiledTree.SQUARE:
+                for (int r = 0; r < len; r++) out[r] = Math.pow(a[aOff + r], 2);
+                break;
+            case CompiledTree.CUBE:
+                for (int r = 0; r < len; r++) out[r] = Math.pow(a[aOff + r], 3);
+                break;
+            case CompiledTree.QUART:
+                for (int r = 0; r < len; r++) out[r] = Math.pow(a[aOff + r], 4);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown unary opcode " + op);
+        }
+    }
+
+    private static void evalBinary(int op, double[] a, int aOff, double[] b, int bOff, double[] out, int len) {
+        switch (op) {
+            case CompiledTree.PLUS:
+                for (int r = 0; r < len; r++) out[r] = a[aOff + r] + b[bOff + r];
+                break;
+            case CompiledTree.MINUS:
+                for (int r = 0; r < len; r++) out[r] = a[aOff + r] - b[bOff + r];
+                break;
+            case CompiledTree.MULTIPLY:
+                for (int r = 0; r < len; r++) out[r] = a[aOff + r] * b[bOff + r];
+                break;
+            case CompiledTree.DIVIDE:
+                for (int r = 0; r < len; r++) out[r] = CompiledTree.divide(a[aOff + r], b[bOff + r]);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown binary opcode " + op);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+/**
+ * Column kernels for the primitives of evogpj.math, written so that the JIT
+ * can vectorize them: simple counted loops over arrays, without calls and
+ * without branches. The protected operators select their result per element
+ * (the JIT turns the selection into a conditional move or a vector blend)
+ * instead of branching.
+ * <p>
+ * Plus, minus, multiply, the protected division and the protected square root
+ * give exactly the values of {@link CompiledTree#apply}. Square, cube and
+ * quart are computed with multiplications instead of {@link Math#pow}: square
+ * is exact, cube and quart may differ from Math.pow by a relative error of at
+ * most {@link #POW_TOLERANCE}. The transcendental functions (sin, cos, exp
+ * and the protected log) have no vector form on the JVM and are evaluated one
+ * element at a time, with the same values as the scalar path.
+ *
+ * @author Ignacio Arnaldo
+ */
+public final class ColumnKernels {
+
+    /**
+     * Bound on the relative difference between the cube and quart kernels and
+     * Math.pow (a few units in the last place)
+     */
+    public static final double POW_TOLERANCE = 1e-15;
+
+    private ColumnKernels() {
+    }
+
+    public static void plus(double[] a, int aOff, double[] b, int bOff, double[] out, int len) {
+        for (int r = 0; r < len; r++) {
+            out[r] = a[aOff + r] + b[bOff + r];
+        }
+    }
+
+    public static void minus(double[] a, int aOff, double[] b, int bOff, double[] out, int len) {
+        for (int r = 0; r < len; r++) {
+            out[r] = a[aOff + r] - b[bOff + r];
+        }
+    }
+
+    public static void multiply(double[] a, int aOff, double[] b, int bOff, double[] out, int len) {
+        for (int r = 0; r < len; r++) {
+            out[r] = a[aOff + r] * b[bOff + r];
+        }
+    }
+
+    /**
+     * Protected division: 1 where |denominator| &lt; 1e-6
+     */
+    public static void divide(double[] a, int aOff, double[] b, int bOff, double[] out, int len) {
+        for (int r = 0; r < len; r++) {
+            double d = b[bOff + r];
+            double q = a[aOff + r] / d;
+            out[r] = (Math.abs(d) < 1e-6) ? 1.0 : q;
+        }
+    }
+
+    /**
+     * Protected square root: sqrt(|x|)
+     */
+    public static void sqrt(double[] a, int aOff, double[] out, int len) {
+        for (int r = 0; r < len; r++) {
+            out[r] = Math.sqrt(Math.abs(a[aOff + r]));
+        }
+    }
+
+    public static void square(double[] a, int aOff, double[] out, int len) {
+        for (int r = 0; r < len; r++) {
+            double x = a[aOff + r];
+            out[r] = x * x;
+        }
+    }
+
+    public static void cube(double[] a, int aOff, double[] out, int len) {
+        for (int r = 0; r < len; r++) {
+            double x = a[aOff + r];
+            out[r] = x * x * x;
+        }
+    }
+
+    public static void quart(double[] a, int aOff, double[] out, int len) {
+        for (int r = 0; r < len; r++) {
+            double x = a[aOff + r];
+            double x2 = x * x;
+            out[r] = x2 * x2;
+        }
+    }
+
+    public static void sin(double[] a, int aOff, double[] out, int len) {
+        for (int r = 0; r < len; r++) {
+            out[r] = Math.sin(a[aOff + r]);
+        }
+    }
+
+    public static void cos(double[] a, int aOff, double[] out, int len) {
+        for (int r = 0; r < len; r++) {
+            out[r] = Math.cos(a[aOff + r]);
+        }
+    }
+
+    public static void exp(double[] a, int aOff, double[] out, int len) {
+        for (int r = 0; r < len; r++) {
+            out[r] = Math.exp(a[aOff + r]);
+        }
+    }
+
+    /**
+     * Protected logarithm: log(|x|), 0 where |x| &lt; 1e-6
+     */
+    public static void log(double[] a, int aOff, double[] out, int len) {
+        for (int r = 0; r < len; r++) {
+            out[r] = CompiledTree.log(a[aOff + r]);
+        }
+    }
+
+    /**
+     * Apply a unary opcode of {@link CompiledTree} to a column
+     */
+    public static void unary(int op, double[] a, int aOff, double[] out, int len) {
+        switch (op) {
+            case CompiledTree.SIN: sin(a, aOff, out, len); break;
+            case CompiledTree.COS: cos(a, aOff, out, len); break;
+            case CompiledTree.LOG: log(a, aOff, out, len); break;
+            case CompiledTree.EXP: exp(a, aOff, out, len); break;
+            case CompiledTree.SQRT: sqrt(a, aOff, out, len); break;
+            case CompiledTree.SQUARE: square(a, aOff, out, len); break;
+            case CompiledTree.CUBE: cube(a, aOff, out, len); break;
+            case CompiledTree.QUART: quart(a, aOff, out, len); break;
+            default: throw new IllegalArgumentException("unknown unary opcode " + op);
+        }
+    }
+
+    /**
+     * Apply a binary opcode of {@link CompiledTree} to two columns
+     */
+    public static void binary(int op, double[] a, int aOff, double[] b, int bOff, double[] out, int len) {
+        switch (op) {
+            case CompiledTree.PLUS: plus(a, aOff, b, bOff, out, len); break;
+            case CompiledTree.MINUS: minus(a, aOff, b, bOff, out, len); break;
+            case CompiledTree.MULTIPLY: multiply(a, aOff, b, bOff, out, len); break;
+            case CompiledTree.DIVIDE: divide(a, aOff, b, bOff, out, len); break;
+            default: throw new IllegalArgumentException("unknown binary opcode " + op);
+        }
+    }
+}
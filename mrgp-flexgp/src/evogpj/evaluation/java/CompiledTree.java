@@ -0,0 +1,514 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+import evogpj.genotype.Tree;
+import evogpj.genotype.TreeNode;
+import evogpj.gp.GPException;
+import evogpj.math.Cos;
+import evogpj.math.Cube;
+import evogpj.math.Divide;
+import evogpj.math.Exp;
+import evogpj.math.Function;
+import evogpj.math.Log;
+import evogpj.math.Minus;
+import evogpj.math.Multiply;
+import evogpj.math.Plus;
+import evogpj.math.Quart;
+import evogpj.math.Sin;
+import evogpj.math.Sqrt;
+import evogpj.math.Square;
+import evogpj.math.Var;
+import java.util.HashMap;
+
+/**
+ * Flat, postfix representation of a {@link Tree}, used to evaluate the tree
+ * without building a {@link Function} object graph. Every node of the tree
+ * becomes one instruction; instruction <i>i</i> produces the <i>i</i>th
+ * intermediate value, in the same order in which
+ * {@link Function#evalIntermediate} appends values to its list (for
+ * {@link Divide} the denominator subtree comes before the numerator subtree).
+ * Operands are referenced by the index of the instruction producing them, so
+ * evaluating a row only needs a <code>double[]</code> of size
+ * {@link #getSize()}.
+ * <p>
+ * A program can also be compiled with one instruction per distinct subtree
+ * (see {@link #shareSubtrees()}): the nodes of identical subtrees are then
+ * computed once, and {@link #getInstruction(int)} gives the instruction
+ * computing each node of the tree.
+ *
+ * @author Ignacio Arnaldo
+ * @see Function
+ */
+public class CompiledTree {
+
+    /** terminal: read a feature of the training case */
+    public static final int VAR = 0;
+    public static final int PLUS = 1;
+    public static final int MINUS = 2;
+    public static final int MULTIPLY = 3;
+    /** protected division, see {@link Divide} */
+    public static final int DIVIDE = 4;
+    public static final int SIN = 5;
+    public static final int COS = 6;
+    /** protected logarithm, see {@link Log} */
+    public static final int LOG = 7;
+    public static final int EXP = 8;
+    /** protected square root, see {@link Sqrt} */
+    public static final int SQRT = 9;
+    public static final int SQUARE = 10;
+    public static final int CUBE = 11;
+    public static final int QUART = 12;
+
+    // label of each non-terminal opcode in the canonical subtree keys
+    private static final String[] LABELS = {null, "+", "-", "*", "mydivide", "sin", "cos", "mylog", "exp",
+        "sqrt", "square", "cube", "quart"};
+
+    // opcode of each instruction
+    private final int[] opcodes;
+    // feature read by VAR instructions, -1 otherwise
+    private final int[] varIndices;
+    // coefficient of VAR instructions, 1 otherwise
+    private final double[] coeffs;
+    // instructions producing the first and second operands, -1 if unused
+    private final int[] args1;
+    private final int[] args2;
+    // number of instructions emitted so far
+    private int size;
+    // prefix string of the subtree computed by each instruction, built on demand
+    private String[] subtreeKeys;
+    // instruction computing each node of the tree, null if there is one
+    // instruction per node
+    private int[] nodeInstructions;
+
+    private CompiledTree(int aSize) {
+        opcodes = new int[aSize];
+        varIndices = new int[aSize];
+        coeffs = new double[aSize];
+        args1 = new int[aSize];
+        args2 = new int[aSize];
+        size = 0;
+    }
+
+    /**
+     * Compile a tree into its flat postfix program
+     * @param t
+     * @return compiled program with one instruction per node of t
+     * @throws GPException if a node label does not correspond to a known function
+     */
+    public static CompiledTree compile(Tree t) throws GPException {
+        CompiledTree program = new CompiledTree(t.getSize());
+        program.emit(t.getRoot());
+        return program;
+    }
+
+    /**
+     * Append the instructions of the subtree rooted at node, children first
+     * @param node
+     * @return index of the instruction computing node
+     * @throws GPException
+     */
+    private int emit(TreeNode node) throws GPException {
+        Class<? extends Function> f = Function.getClassFromLabel(node.label);
+        if (f == null) {
+            throw new GPException("can't compile node " + node.label);
+        }
+        int arity = Function.getArityFromLabel(node.label);
+        int a1 = -1;
+        int a2 = -1;
+        if (arity == 1) {
+            a1 = emit(node.children.get(0));
+        } else if (arity == 2) {
+            if (f == Divide.class) {
+                // the denominator is evaluated first, see Divide.evalIntermediate
+                a2 = emit(node.children.get(1));
+                a1 = emit(node.children.get(0));
+            } else {
+                a1 = emit(node.children.get(0));
+                a2 = emit(node.children.get(1));
+            }
+        }
+        int i = size;
+        opcodes[i] = getOpcode(f);
+        args1[i] = a1;
+        args2[i] = a2;
+        if (arity == 0) {
+            varIndices[i] = getVarIndex(node.label);
+            coeffs[i] = node.getCoeff();
+        } else {
+            varIndices[i] = -1;
+            coeffs[i] = 1;
+        }
+        size++;
+        return i;
+    }
+
+    /**
+     * @param label label of a node
+     * @return opcode of the function of the node
+     * @throws GPException
+     */
+    static int getOpcode(String label) throws GPException {
+        Class<? extends Function> f = Function.getClassFromLabel(label);
+        if (f == null) {
+            throw new GPException("can't compile node " + label);
+        }
+        return getOpcode(f);
+    }
+
+    private static int getOpcode(Class<? extends Function> f) throws GPException {
+        if (f == Var.class) return VAR;
+        else if (f == Plus.class) return PLUS;
+        else if (f == Minus.class) return MINUS;
+        else if (f == Multiply.class) return MULTIPLY;
+        else if (f == Divide.class) return DIVIDE;
+        else if (f == Sin.class) return SIN;
+        else if (f == Cos.class) return COS;
+        else if (f == Log.class) return LOG;
+        else if (f == Exp.class) return EXP;
+        else if (f == Sqrt.class) return SQRT;
+        else if (f == Square.class) return SQUARE;
+        else if (f == Cube.class) return CUBE;
+        else if (f == Quart.class) return QUART;
+        throw new GPException("no opcode for function " + f.getName());
+    }
+
+    /**
+     * Same index convention as {@link Var}
+     * @param label
+     * @return zero-based index of the feature
+     * @throws GPException
+     */
+    static int getVarIndex(String label) throws GPException {
+        if (label.startsWith("X")) {
+            return Integer.parseInt(label.substring(1)) - 1;
+        } else if (label.equals("x")) {
+            return 0;
+        } else if (label.equals("y")) {
+            return 1;
+        }
+        throw new GPException("Unknonwn variable: " + label);
+    }
+
+    /**
+     * Protected division, cc Silva 2008 thesis
+     * @param num
+     * @param denom
+     * @return num / denom, or 1 if the denominator is too close to 0
+     */
+    public static double divide(double num, double denom) {
+        if (Math.abs(denom) < 1e-6) {
+            return 1;
+        }
+        return num / denom;
+    }
+
+    /**
+     * Protected logarithm, cc Silva 2008 thesis
+     * @param x
+     * @return log(|x|), or 0 if x is too close to 0
+     */
+    public static double log(double x) {
+        double a = Math.abs(x);
+        if (a < 1e-6) {
+            return 0;
+        }
+        return Math.log(a);
+    }
+
+    /**
+     * Apply a non-terminal opcode to its operands
+     * @param opcode
+     * @param a first operand
+     * @param b second operand, ignored by unary opcodes
+     * @return
+     */
+    public static double apply(int opcode, double a, double b) {
+        switch (opcode) {
+            case PLUS: return a + b;
+            case MINUS: return a - b;
+            case MULTIPLY: return a * b;
+            case DIVIDE: return divide(a, b);
+            case SIN: return Math.sin(a);
+            case COS: return Math.cos(a);
+            case LOG: return log(a);
+            case EXP: return Math.exp(a);
+            case SQRT: return Math.sqrt(Math.abs(a));
+            case SQUARE: return Math.pow(a, 2);
+            case CUBE: return Math.pow(a, 3);
+            case QUART: return Math.pow(a, 4);
+            default: throw new IllegalArgumentException("unknown opcode " + opcode);
+        }
+    }
+
+    /**
+     * Evaluate the program on a training case, storing the value of every node.
+     * As in {@link Function#evalIntermediate}, variables are not multiplied by
+     * their coefficients.
+     *
+     * @param row values of the features for this training case
+     * @param interVals array of at least {@link #getSize()} elements receiving
+     *        the intermediate values
+     * @return value of the root of the tree
+     */
+    public double evalIntermediate(double[] row, double[] interVals) {
+        for (int i = 0; i < size; i++) {
+            int op = opcodes[i];
+            if (op == VAR) {
+                interVals[i] = row[varIndices[i]];
+            } else {
+                int a2 = args2[i];
+                interVals[i] = apply(op, interVals[args1[i]], a2 < 0 ? 0 : interVals[a2]);
+            }
+        }
+        return interVals[size - 1];
+    }
+
+    /**
+     * Evaluate the program on a training case, as {@link Function#eval} does:
+     * variables are multiplied by their coefficients.
+     *
+     * @param row values of the features for this training case
+     * @param values scratch array of at least {@link #getSize()} elements
+     * @return value of the root of the tree
+     */
+    public double eval(double[] row, double[] values) {
+        for (int i = 0; i < size; i++) {
+            int op = opcodes[i];
+            if (op == VAR) {
+                values[i] = coeffs[i] * row[varIndices[i]];
+            } else {
+                int a2 = args2[i];
+                values[i] = apply(op, values[args1[i]], a2 < 0 ? 0 : values[a2]);
+            }
+        }
+        return values[size - 1];
+    }
+
+    /**
+     * Canonical prefix string of the subtree computed by each instruction, in
+     * the format of {@link Tree#toPrefixString()} with canonical labels (for
+     * instance "mydivide" whatever the label used in the tree). Subtrees with
+     * equal keys have equal intermediate values.
+     *
+     * @return one key per instruction
+     */
+    public String[] getSubtreeKeys() {
+        if (subtreeKeys == null) {
+            String[] keys = new String[size];
+            for (int i = 0; i < size; i++) {
+                int op = opcodes[i];
+                if (op == VAR) {
+                    keys[i] = "X" + (varIndices[i] + 1);
+                } else if (args2[i] < 0) {
+                    keys[i] = "(" + LABELS[op] + " " + keys[args1[i]] + ")";
+                } else {
+                    keys[i] = "(" + LABELS[op] + " " + keys[args1[i]] + " " + keys[args2[i]] + ")";
+                }
+            }
+            subtreeKeys = keys;
+        }
+        return subtreeKeys;
+    }
+
+    /**
+     * Common subexpression elimination: compile the same tree with one
+     * instruction per distinct subtree. Two nodes share an instruction when
+     * they apply the same opcode to the same operand instructions (in either
+     * order for the commutative + and *, which give bit-identical results),
+     * or read the same feature with the same coefficient. Their intermediate
+     * values are then equal, so the nodes are computed once and contribute a
+     * single column to the Lasso fit.
+     *
+     * @return a program with one instruction per distinct subtree
+     */
+    public CompiledTree shareSubtrees() {
+        CompiledTree shared = new CompiledTree(size);
+        int[] instructions = new int[size];
+        HashMap<String, Integer> emitted = new HashMap<String, Integer>();
+        for (int i = 0; i < size; i++) {
+            int op = opcodes[i];
+            int a1 = (args1[i] < 0) ? -1 : instructions[args1[i]];
+            int a2 = (args2[i] < 0) ? -1 : instructions[args2[i]];
+            if ((op == PLUS || op == MULTIPLY) && a2 < a1) {
+                int tmp = a1;
+                a1 = a2;
+                a2 = tmp;
+            }
+            String key = (op == VAR) ? op + " " + varIndices[i] + " " + coeffs[i] : op + " " + a1 + " " + a2;
+            Integer j = emitted.get(key);
+            if (j == null) {
+                j = shared.size;
+                shared.opcodes[j] = op;
+                shared.varIndices[j] = varIndices[i];
+                shared.coeffs[j] = coeffs[i];
+                shared.args1[j] = a1;
+                shared.args2[j] = a2;
+                shared.size++;
+                emitted.put(key, j);
+            }
+            instructions[i] = j;
+        }
+        shared.nodeInstructions = instructions;
+        return shared;
+    }
+
+    /**
+     * @return the number of nodes of the compiled tree
+     */
+    public int getNumNodes() {
+        return (nodeInstructions == null) ? size : nodeInstructions.length;
+    }
+
+    /**
+     * @param node index of a node of the tree, in the order of
+     *        {@link Function#evalIntermediate}
+     * @return the instruction computing the node
+     */
+    public int getInstruction(int node) {
+        return (nodeInstructions == null) ? node : nodeInstructions[node];
+    }
+
+    /**
+     * Spread weights given per instruction (for instance by a Lasso fit over
+     * the instruction columns) over the nodes of the tree: the weight of an
+     * instruction goes to the first node it computes, and the other nodes it
+     * computes get a weight of zero, so that the weighted sum of the node
+     * values is unchanged.
+     *
+     * @param instructionWeights one weight per instruction
+     * @return one weight per node; instructionWeights itself if there is one
+     *         instruction per node
+     */
+    public double[] getNodeWeights(double[] instructionWeights) {
+        if (nodeInstructions == null) {
+            return instructionWeights;
+        }
+        double[] nodeWeights = new double[nodeInstructions.length];
+        boolean[] assigned = new boolean[size];
+        for (int node = 0; node < nodeInstructions.length; node++) {
+            int i = nodeInstructions[node];
+            if (!assigned[i]) {
+                nodeWeights[node] = instructionWeights[i];
+                assigned[i] = true;
+            }
+        }
+        return nodeWeights;
+    }
+
+    /**
+     * Live instruction analysis for a weighted sum of the intermediate values,
+     * such as the Lasso model of an individual: an instruction is live if it
+     * has a nonzero weight or is an operand of a live instruction. The other
+     * instructions do not contribute to the weighted sum and need not be
+     * computed.
+     *
+     * @param instructionWeights one weight per instruction
+     * @return whether each instruction is live
+     */
+    public boolean[] getLiveInstructions(double[] instructionWeights) {
+        boolean[] live = new boolean[size];
+        // the operands of an instruction come before it
+        for (int i = size - 1; i >= 0; i--) {
+            if (instructionWeights[i] != 0) {
+                live[i] = true;
+            }
+            if (live[i]) {
+                if (args1[i] >= 0) live[args1[i]] = true;
+                if (args2[i] >= 0) live[args2[i]] = true;
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Dead code elimination: the program restricted to the live instructions,
+     * see {@link #getLiveInstructions(double[])}. The instructions kept are in
+     * the same order, so the <i>k</i>th instruction of the result is the
+     * <i>k</i>th live instruction of this program.
+     *
+     * @param live whether each instruction is live; the operands of live
+     *        instructions must be live
+     * @return a program with one instruction per live instruction
+     */
+    public CompiledTree retain(boolean[] live) {
+        CompiledTree pruned = new CompiledTree(size);
+        int[] instructions = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (!live[i]) continue;
+            int j = pruned.size;
+            pruned.opcodes[j] = opcodes[i];
+            pruned.varIndices[j] = varIndices[i];
+            pruned.coeffs[j] = coeffs[i];
+            pruned.args1[j] = (args1[i] < 0) ? -1 : instructions[args1[i]];
+            pruned.args2[j] = (args2[i] < 0) ? -1 : instructions[args2[i]];
+            pruned.size++;
+            instructions[i] = j;
+        }
+        return pruned;
+    }
+
+    /**
+     * @return the number of instructions (nodes of the tree, unless subtrees
+     *         are shared)
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @param i
+     * @return opcode of instruction i
+     */
+    public int getOpcode(int i) {
+        return opcodes[i];
+    }
+
+    /**
+     * @param i
+     * @return feature read by instruction i, -1 if it is not a VAR
+     */
+    public int getVarIndex(int i) {
+        return varIndices[i];
+    }
+
+    /**
+     * @param i
+     * @return coefficient of instruction i
+     */
+    public double getCoeff(int i) {
+        return coeffs[i];
+    }
+
+    /**
+     * @param i
+     * @return instruction producing the first operand of i, -1 for terminals
+     */
+    public int getArg1(int i) {
+        return args1[i];
+    }
+
+    /**
+     * @param i
+     * @return instruction producing the second operand of i, -1 for terminals
+     *         and unary functions
+     */
+    public int getArg2(int i) {
+        return args2[i];
+    }
+}
@@ -36,6 +36,41 @@ public interface DataJava {
 	 */
 	public double[][] getInputValues();
 
+	/**
+	 * Get the input data column by column: the ith array holds the values of
+	 * the ith feature for every training case, in the order of
+	 * {@link #getInputValues()}.
+	 * 
+	 * @return Two Dimensional Array; the transpose of the matrix of input
+	 *         data, where each feature corresponds to a row.
+	 */
+	public double[][] getInputColumns();
+
+	/**
+	 * Get the input data column by column, in single precision.
+	 * 
+	 * @return Two Dimensional Array; the transpose of the matrix of input
+	 *         data, rounded to float, where each feature corresponds to a row.
+	 */
+	public float[][] getInputColumnsFloat();
+
+	/**
+	 * Is the input data stored in single precision? Then the double values
+	 * returned by {@link #getInputValues()} and {@link #getInputColumns()}
+	 * are the float values, widened.
+	 * 
+	 * @return true if the input data is stored as float columns
+	 */
+	public boolean isFloat32();
+
+	/**
+	 * Get a fingerprint of the data: datasets with different input or target
+	 * values have, with very high probability, different fingerprints.
+	 * 
+	 * @return hash of the input and target values
+	 */
+	public long getFingerprint();
+
 	/**
 	 * Get the target values corresponding to the training cases. The ith targt
 	 * value is the output corresponding to the ith row of the input values (the
@@ -76,6 +111,30 @@ public interface DataJava {
 	 * @return
 	 */
 	public double[] getScaledTargetValues();
+
+	/**
+	 * @return the number of targets; the methods without a target index refer
+	 *         to the first one
+	 */
+	public int getNumberOfTargets();
+
+	/**
+	 * @param t index of a target
+	 * @return the values of target t, as {@link #getTargetValues()}
+	 */
+	public double[] getTargetValues(int t);
+
+	/**
+	 * @param t index of a target
+	 * @return the minimum of the values of target t
+	 */
+	public Double getTargetMin(int t);
+
+	/**
+	 * @param t index of a target
+	 * @return the maximum of the values of target t
+	 */
+	public Double getTargetMax(int t);
         
         /**
          * @return the number Of Fitness Cases
@@ -86,4 +145,14 @@ public interface DataJava {
          * @return the number Of Features
          */
         public int getNumberOfFeatures();
+
+        /**
+         * @return the minimum value of each feature over the training cases
+         */
+        public double[] getMinFeatures();
+
+        /**
+         * @return the maximum value of each feature over the training cases
+         */
+        public double[] getMaxFeatures();
 }
@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+import evogpj.algorithm.Parameters;
+import evogpj.gp.Population;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Startup calibration of the evaluation settings that only affect its speed:
+ * the number of evaluation threads, the block size of the column evaluator,
+ * and the batch and tile sizes of the tiled evaluation. The results of the
+ * evaluation do not depend on them.
+ * <p>
+ * A sample of trees is evaluated with each candidate setting, and the
+ * settings are tuned one after the other: the threads first, then the block
+ * size, then the tiles, each starting from the best settings found so far. A
+ * setting is timed on its second evaluation of the sample, once its buffers
+ * are allocated, and the configured settings are timed a few times first,
+ * until the JIT has compiled the evaluation code. The calibration stops when its time
+ * budget is spent; an evaluation still running at that point is cut short
+ * (see {@link SRLARSJava#setDeadline}) and its setting is discarded.
+ * <p>
+ * The settings are timed without the subtree cache, whose hits would make
+ * the second evaluation of the sample nearly free. With the cache, the tiles
+ * are not tuned: the tiled evaluation is not used.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class EvaluationAutotuner {
+
+    // a candidate must be this much faster to replace the best setting, so
+    // that the timing noise does not decide
+    private static final double MIN_GAIN = 0.05;
+    // timings of the configured settings before the candidates, so that the
+    // code is compiled by the JIT when the candidates are timed
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int[] BLOCK_SIZES = {64, 128, 256, 512, 1024};
+    private static final int[] TILE_BATCHES = {0, 8, 32};
+
+    private final DataJava data;
+    private final int pow;
+    private final boolean isInt;
+    private final long budgetMillis;
+    private final StringBuilder report = new StringBuilder();
+    private long deadline;
+
+    /**
+     * @param aData training data
+     * @param aPow power of the mean of the errors
+     * @param is_int
+     * @param aBudgetMillis time budget of the calibration, in milliseconds
+     */
+    public EvaluationAutotuner(DataJava aData, int aPow, boolean is_int, long aBudgetMillis) {
+        data = aData;
+        pow = aPow;
+        isInt = is_int;
+        budgetMillis = aBudgetMillis;
+    }
+
+    /**
+     * Find the fastest settings for the evaluation of the sample
+     * @param sample trees to evaluate; their fitness is overwritten
+     * @param props properties of the run
+     * @param numThreads number of evaluation threads of the run
+     * @param maxThreads largest number of evaluation threads to try
+     * @return a copy of the properties with the fastest settings, including
+     *         the number of threads {@value Parameters.Names#EXTERNAL_THREADS}
+     */
+    public Properties tune(Population sample, Properties props, int numThreads, int maxThreads) {
+        deadline = System.currentTimeMillis() + budgetMillis;
+        report.setLength(0);
+        Properties best = new Properties();
+        best.putAll(props);
+        best.setProperty(Parameters.Names.EXTERNAL_THREADS, Integer.toString(numThreads));
+        long bestNanos = 0;
+        for (int round = 0; round < WARMUP_ROUNDS && bestNanos >= 0; round++) {
+            bestNanos = time(sample, best);
+        }
+        if (bestNanos < 0) {
+            report.append("Autotune: out of time, keeping the configured settings\n");
+            return best;
+        }
+        String mode = props.getProperty(Parameters.Names.EVAL_MODE, Parameters.Defaults.EVAL_MODE).trim();
+        boolean columnMode = !mode.equals(Parameters.Names.EVAL_MODE_ROW);
+        boolean cached = getInt(props, Parameters.Names.SUBTREE_CACHE_MB, Parameters.Defaults.SUBTREE_CACHE_MB) > 0;
+        List<Properties> candidates = new ArrayList<Properties>();
+        for (int stage = 0; stage < 3; stage++) {
+            candidates.clear();
+            if (stage == 0) {
+                for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                    candidates.add(with(best, Parameters.Names.EXTERNAL_THREADS, threads));
+                }
+                if (Integer.bitCount(maxThreads) != 1) {
+                    candidates.add(with(best, Parameters.Names.EXTERNAL_THREADS, maxThreads));
+                }
+            } else if (stage == 1 && columnMode) {
+                for (int blockSize : BLOCK_SIZES) {
+                    candidates.add(with(best, Parameters.Names.EVAL_BLOCK_SIZE, blockSize));
+                }
+            } else if (stage == 2 && columnMode && !cached) {
+                // the tiles of the batches: the default size for the L2
+                // cache, a half and a double of it
+                int blockSize = getInt(best, Parameters.Names.EVAL_BLOCK_SIZE, Parameters.Defaults.EVAL_BLOCK_SIZE);
+                int tileRows = TiledEvaluator.getDefaultTileRows(data.getNumberOfFeatures(), blockSize);
+                for (int tileBatch : TILE_BATCHES) {
+                    if (tileBatch == 0) {
+                        candidates.add(with(best, Parameters.Names.EVAL_TILE_BATCH, 0));
+                        continue;
+                    }
+                    Properties batch = with(best, Parameters.Names.EVAL_TILE_BATCH, tileBatch);
+                    candidates.add(with(batch, Parameters.Names.EVAL_TILE_ROWS, Math.max(blockSize, tileRows / 2)));
+                    candidates.add(with(batch, Parameters.Names.EVAL_TILE_ROWS, tileRows));
+                    candidates.add(with(batch, Parameters.Names.EVAL_TILE_ROWS, 2 * tileRows));
+                }
+            }
+            for (Properties candidate : candidates) {
+                if (sameSettings(candidate, best)) {
+                    continue;
+                }
+                long nanos = time(sample, candidate);
+                if (nanos < 0) {
+                    report.append("Autotune: time budget spent\n");
+                    return finish(best, bestNanos);
+                }
+                if (nanos < (1 - MIN_GAIN) * bestNanos) {
+                    best = candidate;
+                    bestNanos = nanos;
+                }
+            }
+        }
+        return finish(best, bestNanos);
+    }
+
+    private Properties finish(Properties best, long bestNanos) {
+        report.append(String.format("Autotune: selected %s (%.1f ms per sample)",
+                describe(best), bestNanos / 1e6));
+        return best;
+    }
+
+    /**
+     * @param sample
+     * @param settings
+     * @return the time of the second evaluation of the sample with the
+     *         settings and no subtree cache, in nanoseconds, or -1 if the
+     *         budget ran out
+     */
+    private long time(Population sample, Properties settings) {
+        if (System.currentTimeMillis() >= deadline) {
+            return -1;
+        }
+        int threads = getInt(settings, Parameters.Names.EXTERNAL_THREADS, Parameters.Defaults.EXTERNAL_THREADS);
+        SRLARSJava fitness = new SRLARSJava(data, pow, isInt, threads,
+                with(settings, Parameters.Names.SUBTREE_CACHE_MB, 0));
+        try {
+            fitness.setDeadline(deadline);
+            fitness.evalPop(sample);
+            long start = System.nanoTime();
+            fitness.evalPop(sample);
+            long nanos = System.nanoTime() - start;
+            if (fitness.isPastDeadline()) {
+                return -1;
+            }
+            report.append(String.format("Autotune: %s: %.1f ms%n", describe(settings), nanos / 1e6));
+            return nanos;
+        } finally {
+            fitness.shutdown();
+        }
+    }
+
+    private static Properties with(Properties props, String name, int value) {
+        Properties copy = new Properties();
+        copy.putAll(props);
+        copy.setProperty(name, Integer.toString(value));
+        return copy;
+    }
+
+    private static int getInt(Properties props, String name, int defaultValue) {
+        return props.containsKey(name) ? Integer.valueOf(props.getProperty(name).trim()) : defaultValue;
+    }
+
+    private static boolean sameSettings(Properties a, Properties b) {
+        return describe(a).equals(describe(b));
+    }
+
+    private static String describe(Properties settings) {
+        return String.format("%d threads, block size %d, tile batch %d, tile rows %d",
+                getInt(settings, Parameters.Names.EXTERNAL_THREADS, Parameters.Defaults.EXTERNAL_THREADS),
+                getInt(settings, Parameters.Names.EVAL_BLOCK_SIZE, Parameters.Defaults.EVAL_BLOCK_SIZE),
+                getInt(settings, Parameters.Names.EVAL_TILE_BATCH, Parameters.Defaults.EVAL_TILE_BATCH),
+                getInt(settings, Parameters.Names.EVAL_TILE_ROWS, Parameters.Defaults.EVAL_TILE_ROWS));
+    }
+
+    /**
+     * @return the timings of the last calibration and the selected settings
+     */
+    public String getReport() {
+        return report.toString();
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.FitnessFunction;
+import evogpj.genotype.Tree;
+import evogpj.gp.GPException;
+import evogpj.gp.Individual;
+import evogpj.gp.Population;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Estimated cost of running the model of an individual on one row, to be
+ * minimized next to its error. Only the nodes that {@link PrunedModel}
+ * computes count: the live nodes of the tree (see
+ * {@link Individual#getLiveNodes()}), each weighted by the relative cost of
+ * its function, plus one multiply-add per nonzero Lasso weight. Unlike the
+ * subtree complexity, a tree of cheap arithmetic costs less than a smaller
+ * one made of transcendental functions, and the nodes the Lasso model does
+ * not use cost nothing.
+ * <p>
+ * The costs of the functions are rough latencies relative to an addition,
+ * including the protection of the protected functions. The cost depends on
+ * the Lasso weights, so this fitness function must come after the
+ * {@link SRLARSJava} one.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class EvaluationCostFitness extends FitnessFunction {
+
+    /**
+     * Fitness key
+     */
+    public static final String FITNESS_KEY = Parameters.Operators.EVALUATION_COST_FITNESS;
+
+    // cost of a Lasso term, a multiply-add
+    private static final double TERM_COST = 1;
+
+    /**
+     * whether to minimize/maximize function
+     */
+    public Boolean isMaximizingFunction = false;
+
+    /**
+     * @return false, the cost is minimized
+     */
+    @Override
+    public Boolean isMaximizingFunction() {
+        return this.isMaximizingFunction;
+    }
+
+    /**
+     * @param opcode opcode of a {@link CompiledTree} instruction
+     * @return the cost of the instruction, relative to an addition
+     */
+    public static double getCost(int opcode) {
+        switch (opcode) {
+            case CompiledTree.VAR:
+                return 0;
+            case CompiledTree.PLUS:
+            case CompiledTree.MINUS:
+            case CompiledTree.MULTIPLY:
+            case CompiledTree.SQUARE:
+                return 1;
+            case CompiledTree.CUBE:
+            case CompiledTree.QUART:
+                return 2;
+            case CompiledTree.DIVIDE:
+            case CompiledTree.SQRT:
+                return 4;
+            case CompiledTree.LOG:
+            case CompiledTree.EXP:
+                return 20;
+            case CompiledTree.SIN:
+            case CompiledTree.COS:
+                return 25;
+            default:
+                throw new IllegalArgumentException("unknown opcode " + opcode);
+        }
+    }
+
+    /**
+     * Compute the estimated cost of the model of the individual. Without Lasso
+     * weights, the whole tree is computed and the model is its root.
+     * @param ind
+     * @throws GPException if the tree can't be compiled
+     */
+    public void eval(Individual ind) throws GPException {
+        CompiledTree program = CompiledTree.compile((Tree) ind.getGenotype());
+        double[] weights = ind.getLassoWeights();
+        boolean[] live = (weights == null) ? null : ind.getLiveNodes();
+        double cost = (weights == null) ? TERM_COST : 0;
+        for (int i = 0; i < program.getSize(); i++) {
+            if (live == null || live[i]) {
+                cost += getCost(program.getOpcode(i));
+            }
+            if (weights != null && weights[i] != 0) {
+                cost += TERM_COST;
+            }
+        }
+        ind.setFitness(EvaluationCostFitness.FITNESS_KEY, cost);
+    }
+
+    @Override
+    public void evalPop(Population pop) {
+        for (Individual individual : pop) {
+            try {
+                this.eval(individual);
+            } catch (GPException ex) {
+                Logger.getLogger(EvaluationCostFitness.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+import edu.uci.lasso.ParallelLoop;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Long-lived pool of evaluation threads. Instead of splitting the work
+ * statically, the workers take the jobs one at a time from a shared queue, so
+ * a worker that draws expensive jobs does not hold back the others; when the
+ * jobs are sorted from most to least expensive, the last jobs taken are the
+ * cheapest ones and the workers finish at nearly the same time.
+ * <p>
+ * The pool also runs the loops of a single evaluation ({@link ParallelLoop}).
+ * Jobs submitted from a job of the same pool are run inline by the worker
+ * that submits them, so nested parallelism cannot deadlock the pool.
+ * <p>
+ * The pool records, for each worker, the time spent running jobs and the time
+ * spent waiting for the other workers to finish.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class EvaluationPool implements ParallelLoop {
+
+    /**
+     * Unit of work
+     */
+    public interface Job {
+        /**
+         * @param worker index of the worker running the job, in
+         *        [0, getNumThreads()); a worker runs one job at a time
+         * @throws Exception
+         */
+        void run(int worker) throws Exception;
+    }
+
+    private final int numThreads;
+    private final ThreadPoolExecutor executor;
+    // index of the worker running a job on the current thread, if any
+    private final ThreadLocal<Integer> currentWorker = new ThreadLocal<Integer>();
+    // statistics since the last report
+    private final long[] busyNanos;
+    private long wallNanos;
+
+    /**
+     * @param aNumThreads number of worker threads
+     */
+    public EvaluationPool(int aNumThreads) {
+        numThreads = aNumThreads;
+        busyNanos = new long[numThreads];
+        wallNanos = 0;
+        final AtomicInteger threadCounter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "evogpj-eval-" + threadCounter.getAndIncrement());
+                        // the pool of the run is never shut down explicitly
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    /**
+     * @return the number of worker threads
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Stop the worker threads once they are idle, for pools used only for a
+     * while (see {@link EvaluationAutotuner})
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Run the jobs, in order, and wait for all of them to finish. Exceptions
+     * thrown by a job are logged and do not stop the others.
+     * @param jobs
+     */
+    public void runAll(final List<? extends Job> jobs) {
+        Integer enclosingWorker = currentWorker.get();
+        if (enclosingWorker != null) {
+            for (Job job : jobs) {
+                try {
+                    job.run(enclosingWorker);
+                } catch (Exception ex) {
+                    Logger.getLogger(EvaluationPool.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+            return;
+        }
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(numThreads);
+        final long[] busy = new long[numThreads];
+        long start = System.nanoTime();
+        for (int w = 0; w < numThreads; w++) {
+            final int worker = w;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    currentWorker.set(worker);
+                    try {
+                        int i;
+                        while ((i = next.getAndIncrement()) < jobs.size()) {
+                            long t0 = System.nanoTime();
+                            try {
+                                jobs.get(i).run(worker);
+                            } catch (Exception ex) {
+                                Logger.getLogger(EvaluationPool.class.getName()).log(Level.SEVERE, null, ex);
+                            }
+                            busy[worker] += System.nanoTime() - t0;
+                        }
+                    } finally {
+                        currentWorker.remove();
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        try {
+            done.await();
+        } catch (InterruptedException ex) {
+            Logger.getLogger(EvaluationPool.class.getName()).log(Level.SEVERE, null, ex);
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            wallNanos += System.nanoTime() - start;
+            for (int w = 0; w < numThreads; w++) {
+                busyNanos[w] += busy[w];
+            }
+        }
+    }
+
+    /**
+     * Split [0, n) into a few ranges per worker and run them on the pool
+     * @param n
+     * @param body
+     */
+    @Override
+    public void run(int n, final ParallelLoop.Body body) {
+        int numRanges = Math.min(n, 2 * numThreads);
+        if (numRanges <= 1) {
+            body.run(0, n);
+            return;
+        }
+        List<Job> jobs = new ArrayList<Job>(numRanges);
+        for (int r = 0; r < numRanges; r++) {
+            final int from = (int) ((long) n * r / numRanges);
+            final int to = (int) ((long) n * (r + 1) / numRanges);
+            jobs.add(new Job() {
+                @Override
+                public void run(int worker) {
+                    body.run(from, to);
+                }
+            });
+        }
+        runAll(jobs);
+    }
+
+    /**
+     * Summarize the busy and idle time of each worker since the previous
+     * report, and reset the statistics
+     * @return report for the generation log
+     */
+    public synchronized String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Evaluation threads: %.0f ms wall time; busy/idle ms per thread:", wallNanos / 1e6));
+        for (int w = 0; w < numThreads; w++) {
+            sb.append(String.format(" %.0f/%.0f", busyNanos[w] / 1e6, Math.max(0, wallNanos - busyNanos[w]) / 1e6));
+            busyNanos[w] = 0;
+        }
+        wallNanos = 0;
+        return sb.toString();
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+/**
+ * Column-at-a-time evaluation of a {@link CompiledTree} in single precision,
+ * for the float32 precision policy. The input columns are float, and every
+ * instruction computes its values in float straight into its destination
+ * column (the column-major feature matrix of the Lasso fit), reading its
+ * operands from their own destination columns: no intermediate buffer, and
+ * half the memory traffic of {@link ColumnEvaluator}. The rows are processed
+ * in blocks so that the operands of an instruction are still in the cache.
+ * <p>
+ * Plus, minus, multiply and the powers are computed in float arithmetic; the
+ * other functions are computed in double on the float operands and rounded to
+ * float. The protected functions keep the thresholds of {@link CompiledTree}.
+ * The values differ from the double evaluation rounded to float by the
+ * rounding of the operands of each node.
+ * <p>
+ * The evaluator has no state besides its block size: it is thread safe.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class FloatColumnEvaluator {
+
+    private final int blockSize;
+
+    /**
+     * @param aBlockSize number of rows evaluated per block
+     */
+    public FloatColumnEvaluator(int aBlockSize) {
+        blockSize = aBlockSize;
+    }
+
+    /**
+     * Evaluate every node of the program on the rows from (inclusive) to to
+     * (exclusive). Evaluators working on disjoint ranges can share the
+     * destination columns.
+     *
+     * @param program
+     * @param columns input data, one array per feature
+     * @param from first row
+     * @param to last row, exclusive
+     * @param dest one column per instruction receiving its values
+     */
+    public void evaluate(CompiledTree program, float[][] columns, int from, int to, float[][] dest) {
+        int size = program.getSize();
+        for (int start = from; start < to; start += blockSize) {
+            int end = Math.min(to, start + blockSize);
+            for (int i = 0; i < size; i++) {
+                int op = program.getOpcode(i);
+                if (op == CompiledTree.VAR) {
+                    System.arraycopy(columns[program.getVarIndex(i)], start, dest[i], start, end - start);
+                } else if (program.getArg2(i) < 0) {
+                    evalUnary(op, dest[program.getArg1(i)], dest[i], start, end);
+                } else {
+                    evalBinary(op, dest[program.getArg1(i)], dest[program.getArg2(i)], dest[i], start, end);
+                }
+            }
+        }
+    }
+
+    private static void evalUnary(int op, float[] a, float[] out, int start, int end) {
+        switch (op) {
+            case CompiledTree.SIN:
+                for (int r = start; r < end; r++) out[r] = (float) Math.sin(a[r]);
+                break;
+            case CompiledTree.COS:
+                for (int r = start; r < end; r++) out[r] = (float) Math.cos(a[r]);
+                break;
+            case CompiledTree.LOG:
+                for (int r = start; r < end; r++) out[r] = (float) CompiledTree.log(a[r]);
+                break;
+            case CompiledTree.EXP:
+                for (int r = start; r < end; r++) out[r] = (float) Math.exp(a[r]);
+                break;
+            case CompiledTree.SQRT:
+                for (int r = start; r < end; r++) out[r] = (float) Math.sqrt(Math.abs(a[r]));
+                break;
+            case CompiledTree.SQUARE:
+                for (int r = start; r < end; r++) out[r] = a[r] * a[r];
+                break;
+            case CompiledTree.CUBE:
+                for (int r = start; r < end; r++) out[r] = a[r] * a[r] * a[r];
+                break;
+            case CompiledTree.QUART:
+                for (int r = start; r < end; r++) {
+                    float square = a[r] * a[r];
+                    out[r] = square * square;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown unary opcode " + op);
+        }
+    }
+
+    private static void evalBinary(int op, float[] a, float[] b, float[] out, int start, int end) {
+        switch (op) {
+            case CompiledTree.PLUS:
+                for (int r = start; r < end; r++) out[r] = a[r] + b[r];
+                break;
+            case CompiledTree.MINUS:
+                for (int r = start; r < end; r++) out[r] = a[r] - b[r];
+                break;
+            case CompiledTree.MULTIPLY:
+                for (int r = start; r < end; r++) out[r] = a[r] * b[r];
+                break;
+            case CompiledTree.DIVIDE:
+                for (int r = start; r < end; r++) {
+                    float d = b[r];
+                    out[r] = (Math.abs(d) < 1e-6) ? 1f : a[r] / d;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown binary opcode " + op);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+/**
+ * Superclass of the classes generated at runtime by {@link TreeClassGenerator}.
+ * Each subclass evaluates one tree with straight-line code, keeping the value
+ * of every node in a local variable.
+ *
+ * @author Ignacio Arnaldo
+ */
+public abstract class GeneratedTree {
+
+    /**
+     * Compute the intermediate values of the tree for the rows start
+     * (inclusive) to end (exclusive), with the same values and order as
+     * {@link CompiledTree#evalIntermediate}.
+     *
+     * @param columns input data, one array per feature
+     * @param start first row
+     * @param end last row, exclusive
+     * @param dest one column per node receiving its values
+     */
+    public abstract void evalIntermediate(double[][] columns, int start, int end, float[][] dest);
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+/**
+ * Static analysis of a {@link CompiledTree} with interval arithmetic over the
+ * range of each feature in the training data. The interval of every node
+ * contains all the values the node takes on the training cases, so the
+ * analysis can prove, without reading the data, that a tree is degenerate:
+ * <ul>
+ * <li>{@link #NON_FINITE}: some node is infinite, once narrowed to the float
+ * columns of the Lasso fit, or NaN on every training case. The Lasso fit of
+ * such a tree has no nonzero weight and NaN predictions, so its fitness is
+ * the worst one.
+ * <li>{@link #CONSTANT}: every node is constant over the training domain (for
+ * instance, the tree only reads constant features). The tree cannot model the
+ * target.
+ * </ul>
+ * The bounds are computed with the same floating point functions as the
+ * evaluation; they are sound because these functions are monotonic on the
+ * pieces considered. Intervals that could contain NaN are not propagated: the
+ * nodes above them are unknown.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class IntervalScreen {
+
+    /** the tree may be fine */
+    public static final int NONE = 0;
+    /** some node is infinite or NaN on every training case */
+    public static final int NON_FINITE = 1;
+    /** every node is constant over the training cases */
+    public static final int CONSTANT = 2;
+
+    private static final double PROTECTION = 1e-6;
+
+    private final double[] minFeatures;
+    private final double[] maxFeatures;
+
+    /**
+     * @param someMinFeatures minimum value of each feature
+     * @param someMaxFeatures maximum value of each feature
+     */
+    public IntervalScreen(double[] someMinFeatures, double[] someMaxFeatures) {
+        minFeatures = someMinFeatures;
+        maxFeatures = someMaxFeatures;
+    }
+
+    /**
+     * @param program
+     * @return {@link #NONE}, {@link #NON_FINITE} or {@link #CONSTANT}
+     */
+    public int classify(CompiledTree program) {
+        int size = program.getSize();
+        double[] lo = new double[size];
+        double[] hi = new double[size];
+        // definitely NaN, and possibly NaN (the interval is then unknown)
+        boolean[] nan = new boolean[size];
+        boolean[] maybeNaN = new boolean[size];
+        boolean allConstant = true;
+        boolean allFinite = true;
+        for (int i = 0; i < size; i++) {
+            int op = program.getOpcode(i);
+            int a = program.getArg1(i);
+            int b = program.getArg2(i);
+            if (op == CompiledTree.VAR) {
+                lo[i] = minFeatures[program.getVarIndex(i)];
+                hi[i] = maxFeatures[program.getVarIndex(i)];
+            } else if (nan[a] || (b >= 0 && nan[b])) {
+                nan[i] = true;
+            } else if (maybeNaN[a] || (b >= 0 && maybeNaN[b])) {
+                maybeNaN[i] = true;
+            } else if (lo[a] == hi[a] && (b < 0 || lo[b] == hi[b])) {
+                // every training case has the same operands
+                double v = CompiledTree.apply(op, lo[a], (b < 0) ? 0 : lo[b]);
+                if (Double.isNaN(v)) {
+                    nan[i] = true;
+                } else {
+                    lo[i] = v;
+                    hi[i] = v;
+                }
+            } else if (b < 0) {
+                unary(op, lo[a], hi[a], lo, hi, maybeNaN, i);
+            } else if (isInfinite(lo[a], hi[a]) || isInfinite(lo[b], hi[b])) {
+                // inf - inf, inf * 0 or inf / inf may occur inside the intervals
+                maybeNaN[i] = true;
+            } else {
+                binary(op, lo[a], hi[a], lo[b], hi[b], lo, hi, i);
+            }
+            // the rounding to float is monotonic: a bound that rounds to an
+            // infinity means that every value does
+            if (nan[i] || (!maybeNaN[i] && ((float) lo[i] == Float.POSITIVE_INFINITY
+                    || (float) hi[i] == Float.NEGATIVE_INFINITY))) {
+                return NON_FINITE;
+            }
+            if (maybeNaN[i] || isFloatInfinite(lo[i]) || isFloatInfinite(hi[i])) {
+                allFinite = false;
+            }
+            if (maybeNaN[i] || lo[i] != hi[i]) {
+                allConstant = false;
+            }
+        }
+        return (allConstant && allFinite) ? CONSTANT : NONE;
+    }
+
+    private static boolean isInfinite(double lo, double hi) {
+        return Double.isInfinite(lo) || Double.isInfinite(hi);
+    }
+
+    private static boolean isFloatInfinite(double v) {
+        return Float.isInfinite((float) v);
+    }
+
+    /**
+     * Interval of a unary function of [l, h]
+     */
+    private static void unary(int op, double l, double h, double[] lo, double[] hi, boolean[] maybeNaN, int i) {
+        // range of |x|
+        double absLo = (l <= 0 && h >= 0) ? 0 : Math.min(Math.abs(l), Math.abs(h));
+        double absHi = Math.max(Math.abs(l), Math.abs(h));
+        switch (op) {
+            case CompiledTree.SIN:
+            case CompiledTree.COS:
+                if (isInfinite(l, h)) {
+                    maybeNaN[i] = true;
+                } else {
+                    lo[i] = -1;
+                    hi[i] = 1;
+                }
+                break;
+            case CompiledTree.LOG:
+                // log(|x|), or 0 where |x| is below the protection threshold
+                if (absHi < PROTECTION) {
+                    lo[i] = 0;
+                    hi[i] = 0;
+                } else {
+                    lo[i] = CompiledTree.log(Math.max(absLo, PROTECTION));
+                    hi[i] = CompiledTree.log(absHi);
+                    if (absLo < PROTECTION) {
+                        lo[i] = Math.min(lo[i], 0);
+                        hi[i] = Math.max(hi[i], 0);
+                    }
+                }
+                break;
+            case CompiledTree.EXP:
+                lo[i] = Math.exp(l);
+                hi[i] = Math.exp(h);
+                break;
+            case CompiledTree.SQRT:
+                lo[i] = Math.sqrt(absLo);
+                hi[i] = Math.sqrt(absHi);
+                break;
+            case CompiledTree.SQUARE:
+                lo[i] = Math.pow(absLo, 2);
+                hi[i] = Math.pow(absHi, 2);
+                break;
+            case CompiledTree.CUBE:
+                lo[i] = Math.pow(l, 3);
+                hi[i] = Math.pow(h, 3);
+                break;
+            case CompiledTree.QUART:
+                lo[i] = Math.pow(absLo, 4);
+                hi[i] = Math.pow(absHi, 4);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown opcode " + op);
+        }
+    }
+
+    /**
+     * Interval of a binary function of two finite intervals
+     */
+    private static void binary(int op, double al, double ah, double bl, double bh, double[] lo, double[] hi, int i) {
+        switch (op) {
+            case CompiledTree.PLUS:
+                lo[i] = al + bl;
+                hi[i] = ah + bh;
+                break;
+            case CompiledTree.MINUS:
+                lo[i] = al - bh;
+                hi[i] = ah - bl;
+                break;
+            case CompiledTree.MULTIPLY:
+                double p1 = al * bl, p2 = al * bh, p3 = ah * bl, p4 = ah * bh;
+                lo[i] = Math.min(Math.min(p1, p2), Math.min(p3, p4));
+                hi[i] = Math.max(Math.max(p1, p2), Math.max(p3, p4));
+                break;
+            case CompiledTree.DIVIDE:
+                // the quotient on the pieces of the denominator outside of the
+                // protection band, and 1 if the denominator can fall inside it
+                double l = Double.POSITIVE_INFINITY;
+                double h = Double.NEGATIVE_INFINITY;
+                if (bl <= -PROTECTION) {
+                    double d = Math.min(bh, -PROTECTION);
+                    double q1 = al / bl, q2 = al / d, q3 = ah / bl, q4 = ah / d;
+                    l = Math.min(l, Math.min(Math.min(q1, q2), Math.min(q3, q4)));
+                    h = Math.max(h, Math.max(Math.max(q1, q2), Math.max(q3, q4)));
+                }
+                if (bh >= PROTECTION) {
+                    double c = Math.max(bl, PROTECTION);
+                    double q1 = al / c, q2 = al / bh, q3 = ah / c, q4 = ah / bh;
+                    l = Math.min(l, Math.min(Math.min(q1, q2), Math.min(q3, q4)));
+                    h = Math.max(h, Math.max(Math.max(q1, q2), Math.max(q3, q4)));
+                }
+                if (bl < PROTECTION && bh > -PROTECTION) {
+                    l = Math.min(l, 1);
+                    h = Math.max(h, 1);
+                }
+                lo[i] = l;
+                hi[i] = h;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown opcode " + op);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+import java.util.Arrays;
+
+/**
+ * Lasso model of an individual, kept to warm start the Lasso fits of its
+ * children (see {@link edu.uci.lasso.LassoFitGenerator#setWarmStart}). A child
+ * shares most of its subtrees with its parent, so the weights of the parent
+ * on the shared subtrees, and the lambda picked for the parent, are a good
+ * start for the path of the child.
+ * <p>
+ * The subtrees are identified by a structural hash of their instructions.
+ * Two distinct subtrees with the same hash only give a worse start: the path
+ * still converges to the model of the child.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class LassoWarmStart {
+
+    // sorted hashes of the subtrees with a nonzero weight, and their weights
+    private final long[] keys;
+    private final double[] weights;
+    private final double lambda;
+
+    /**
+     * @param program compiled tree of the individual
+     * @param columnWeights Lasso weight of each instruction of the program
+     * @param aLambda lambda of the model on the Lasso path
+     */
+    public LassoWarmStart(CompiledTree program, double[] columnWeights, double aLambda) {
+        long[] hashes = hashSubtrees(program);
+        int n = 0;
+        long[] nonZero = new long[hashes.length];
+        for (int i = 0; i < hashes.length; i++) {
+            if (columnWeights[i] != 0) {
+                nonZero[n++] = hashes[i];
+            }
+        }
+        Arrays.sort(nonZero, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || nonZero[i] != nonZero[distinct - 1]) {
+                nonZero[distinct++] = nonZero[i];
+            }
+        }
+        keys = Arrays.copyOf(nonZero, distinct);
+        // the weights of equal subtrees add up
+        weights = new double[distinct];
+        for (int i = 0; i < hashes.length; i++) {
+            if (columnWeights[i] != 0) {
+                weights[Arrays.binarySearch(keys, hashes[i])] += columnWeights[i];
+            }
+        }
+        lambda = aLambda;
+    }
+
+    /**
+     * Weights of the subtrees of a child shared with the individual. A
+     * subtree occurring several times in the child only gets the weight on
+     * its first instruction.
+     * @param program compiled tree of the child
+     * @return one weight per instruction of the program, 0 for the subtrees
+     *         that are not shared
+     */
+    public double[] getWeights(CompiledTree program) {
+        long[] hashes = hashSubtrees(program);
+        double[] columnWeights = new double[hashes.length];
+        boolean[] used = new boolean[keys.length];
+        for (int i = 0; i < hashes.length; i++) {
+            int k = Arrays.binarySearch(keys, hashes[i]);
+            if (k >= 0 && !used[k]) {
+                columnWeights[i] = weights[k];
+                used[k] = true;
+            }
+        }
+        return columnWeights;
+    }
+
+    /**
+     * @return the lambda of the model, as in {@link edu.uci.lasso.LassoFit#lambdas}
+     */
+    public double getLambda() {
+        return lambda;
+    }
+
+    private static long[] hashSubtrees(CompiledTree program) {
+        int size = program.getSize();
+        long[] hashes = new long[size];
+        for (int i = 0; i < size; i++) {
+            int op = program.getOpcode(i);
+            long h = mix(0xcbf29ce484222325L, op);
+            if (op == CompiledTree.VAR) {
+                h = mix(h, program.getVarIndex(i));
+                h = mix(h, Double.doubleToLongBits(program.getCoeff(i)));
+            } else {
+                h = mix(h, hashes[program.getArg1(i)]);
+                int b = program.getArg2(i);
+                h = mix(h, (b < 0) ? 0 : hashes[b]);
+            }
+            hashes[i] = h;
+        }
+        return hashes;
+    }
+
+    private static long mix(long h, long v) {
+        h = (h ^ v) * 0x9e3779b97f4a7c15L;
+        return h ^ (h >>> 32);
+    }
+}
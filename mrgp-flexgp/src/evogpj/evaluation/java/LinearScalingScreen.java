@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.FitnessFunction;
+import evogpj.gp.Individual;
+import evogpj.gp.Population;
+import evogpj.sort.DominatedCount;
+import evogpj.sort.DominatedCount.DominationException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Two-stage evaluation of the children of a generation. Every child first
+ * gets the fitness of the linear scaling of a single node of its tree, which
+ * costs one pass over the node values (see
+ * {@link SRLARSJava#evalPopLinearScaling(Population)}). Only the children in
+ * the top fraction of this estimate, and those whose estimate is not dominated
+ * by any individual of the current front, go on to the Lasso fit over all
+ * their nodes; the others keep the estimate.
+ * <p>
+ * In MRGP, the root alone is a poor predictor of the Lasso fit: the useful
+ * subtrees are often below a root that does not fit the target. The estimate
+ * uses the node that fits the target best, and is, up to the regularization,
+ * a lower bound of the fitness of the Lasso fit.
+ * <p>
+ * The node columns of the scaled pass are kept, within a memory budget, for
+ * the Lasso fit of the promoted children, and the fitness values of the
+ * other fitness functions are final: the promoted children only need the
+ * Lasso fit, and the fitness functions that depend on its model.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class LinearScalingScreen {
+
+    private final SRLARSJava srFitness;
+    private final double fraction;
+    // statistics since the last report
+    private long children;
+    private long promotedTop;
+    private long promotedFront;
+    // screens stopped at the deadline, since the creation of the screen
+    private long deadlineStops;
+
+    /**
+     * @param anSRFitness fitness function estimated by the screen
+     * @param props see
+     *        {@value algorithm.Parameters.Names#LINEAR_SCALING_SCREEN_FRACTION}
+     *        and {@value algorithm.Parameters.Names#LINEAR_SCALING_SCREEN_MB}
+     */
+    public LinearScalingScreen(SRLARSJava anSRFitness, Properties props) {
+        srFitness = anSRFitness;
+        if (props.containsKey(Parameters.Names.LINEAR_SCALING_SCREEN_FRACTION))
+            fraction = Double.valueOf(props.getProperty(Parameters.Names.LINEAR_SCALING_SCREEN_FRACTION).trim());
+        else
+            fraction = Parameters.Defaults.LINEAR_SCALING_SCREEN_FRACTION;
+        int columnsMB = Parameters.Defaults.LINEAR_SCALING_SCREEN_MB;
+        if (props.containsKey(Parameters.Names.LINEAR_SCALING_SCREEN_MB))
+            columnsMB = Integer.valueOf(props.getProperty(Parameters.Names.LINEAR_SCALING_SCREEN_MB).trim());
+        srFitness.setScreenColumnsBudget(columnsMB * 1024L * 1024L);
+    }
+
+    /**
+     * Estimate the fitness of the children, and evaluate them with the other
+     * fitness functions
+     * @param toEvaluate children to screen
+     * @param parents evaluated individuals; those with a domination count of
+     *        zero form the current front
+     * @param fitnessFunctions all the fitness functions, including the one
+     *        estimated by the screen
+     * @return the children that deserve the Lasso fit, in their original
+     *         order. Past the deadline of the fitness function, none do: some
+     *         children have no estimate, and the caller discards them
+     */
+    public Population evalPop(Population toEvaluate, Population parents, final LinkedHashMap<String, FitnessFunction> fitnessFunctions) {
+        // the fitness values are set in the order of the fitness functions
+        for (FitnessFunction f : fitnessFunctions.values()) {
+            if (f != srFitness) {
+                f.evalPop(toEvaluate);
+            } else {
+                srFitness.evalPopLinearScaling(toEvaluate);
+            }
+        }
+        children += toEvaluate.size();
+        if (srFitness.isPastDeadline()) {
+            deadlineStops++;
+            return new Population();
+        }
+
+        List<Individual> ranked = new ArrayList<Individual>(toEvaluate);
+        final boolean maximizing = srFitness.isMaximizingFunction();
+        Collections.sort(ranked, new Comparator<Individual>() {
+            @Override
+            public int compare(Individual a, Individual b) {
+                int c = Double.compare(a.getFitness(SRLARSJava.FITNESS_KEY), b.getFitness(SRLARSJava.FITNESS_KEY));
+                return maximizing ? -c : c;
+            }
+        });
+        int numTop = (int) Math.ceil(fraction * ranked.size());
+        IdentityHashMap<Individual, Boolean> promoted = new IdentityHashMap<Individual, Boolean>();
+        for (int i = 0; i < numTop; i++) {
+            promoted.put(ranked.get(i), Boolean.TRUE);
+        }
+        promotedTop += numTop;
+
+        Population front = new Population();
+        for (Individual parent : parents) {
+            if (parent.getDominationCount() != null && parent.getDominationCount() == 0) {
+                front.add(parent);
+            }
+        }
+        for (int i = numTop; i < ranked.size(); i++) {
+            Individual child = ranked.get(i);
+            if (!isDominated(child, front, fitnessFunctions)) {
+                promoted.put(child, Boolean.TRUE);
+                promotedFront++;
+            }
+        }
+
+        Population toFit = new Population();
+        for (Individual child : toEvaluate) {
+            if (promoted.containsKey(child)) {
+                toFit.add(child);
+            }
+        }
+        srFitness.retainScreenColumns(toFit);
+        return toFit;
+    }
+
+    /**
+     * @return the number of screens stopped at the deadline of the fitness
+     *         function, with children left without the Lasso fit they deserve
+     */
+    public long getDeadlineStops() {
+        return deadlineStops;
+    }
+
+    private static boolean isDominated(Individual child, Population front, LinkedHashMap<String, FitnessFunction> fitnessFunctions) {
+        for (Individual ind : front) {
+            try {
+                if (DominatedCount.domination(ind, child, fitnessFunctions)) {
+                    return true;
+                }
+            } catch (DominationException ex) {
+                Logger.getLogger(LinearScalingScreen.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Summarize the screening since the previous report, and reset the
+     * statistics
+     * @return report for the generation log
+     */
+    public String getReport() {
+        String report = String.format("Linear scaling screen: %d children, %d fit with the Lasso (%d in the top fraction, %d not dominated by the front)",
+                children, promotedTop + promotedFront, promotedTop, promotedFront);
+        children = 0;
+        promotedTop = 0;
+        promotedFront = 0;
+        return report;
+    }
+}
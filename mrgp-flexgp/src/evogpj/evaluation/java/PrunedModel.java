@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+import evogpj.genotype.Tree;
+import evogpj.gp.GPException;
+import evogpj.gp.Individual;
+
+/**
+ * Prediction with the Lasso model of an MRGP individual, computing only the
+ * live nodes of its tree (see {@link Individual#getLiveNodes()}). The
+ * prediction is the weighted sum of the intermediate values, as floats, plus
+ * the intercept; the nodes with a zero weight that are not inputs of a node
+ * with a nonzero weight are skipped.
+ * <p>
+ * A model keeps a scratch array for the intermediate values, so an instance
+ * must not be shared by several threads.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class PrunedModel {
+
+    private final CompiledTree program;
+    // weight of each live node
+    private final double[] weights;
+    private final double intercept;
+    private final int numNodes;
+    private final double[] interVals;
+
+    /**
+     * @param ind individual with its Lasso weights and intercept
+     * @throws GPException if the tree can't be compiled
+     */
+    public PrunedModel(Individual ind) throws GPException {
+        CompiledTree full = CompiledTree.compile((Tree) ind.getGenotype());
+        boolean[] live = ind.getLiveNodes();
+        double[] nodeWeights = ind.getLassoWeights();
+        program = full.retain(live);
+        weights = new double[program.getSize()];
+        int k = 0;
+        for (int i = 0; i < live.length; i++) {
+            if (live[i]) {
+                weights[k++] = nodeWeights[i];
+            }
+        }
+        intercept = Double.parseDouble(ind.getLassoIntercept());
+        numNodes = full.getSize();
+        interVals = new double[program.getSize()];
+    }
+
+    /**
+     * @param row values of the features
+     * @return the prediction of the model, before any rounding or clamping
+     */
+    public double predict(double[] row) {
+        double prediction = 0;
+        if (program.getSize() > 0) {
+            program.evalIntermediate(row, interVals);
+            for (int k = 0; k < weights.length; k++) {
+                prediction += (float) interVals[k] * weights[k];
+            }
+        }
+        return prediction + intercept;
+    }
+
+    /**
+     * @return the number of nodes of the tree
+     */
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    /**
+     * @return the number of live nodes, computed for each prediction
+     */
+    public int getNumLiveNodes() {
+        return program.getSize();
+    }
+}
@@ -0,0 +1,321 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.FitnessComparisonStandardizer;
+import evogpj.evaluation.FitnessFunction;
+import evogpj.gp.Individual;
+import evogpj.gp.MersenneTwisterFast;
+import evogpj.gp.Population;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Racing evaluation of the children of a generation, in the manner of
+ * successive halving. The children are first fit and scored by
+ * {@link SRLARSJava} on a small random subsample of the training cases. After
+ * each round, the children that could not survive the truncation of the
+ * generation, even with an optimistic estimate of their fitness, are dropped
+ * from the race and keep their weights and intercept, with their estimated
+ * fitness made worse by the optimism of the round, and are flagged as
+ * subsample fits (see {@link Individual#isSubsampleFit()}); the others are
+ * evaluated on a larger subsample and, finally, on all the training cases.
+ * <p>
+ * The truncation keeps the individuals dominated by the fewest others. A child
+ * is dropped when the number of individuals (parents and children, at their
+ * current estimates) that dominate its optimistic estimate is larger than the
+ * domination count at the truncation point. The optimism is a relative margin
+ * on the estimated fitness, scaled by the sampling error of the subsample,
+ * sqrt(N/n - 1) for n of N training cases; it vanishes on the full data.
+ * <p>
+ * The other fitness functions are computed on all the children before the
+ * race.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class RacingEvaluation {
+
+    private final SRLARSJava srFitness;
+    private final double initialFraction;
+    private final int minRows;
+    private final double growth;
+    private final double margin;
+    private final MersenneTwisterFast rand;
+    // statistics since the last report
+    private long children;
+    private long fullEvaluations;
+    private long evaluatedRows;
+    private final List<Integer> roundSizes;
+    // races stopped at the deadline, since the creation of the race
+    private long deadlineStops;
+
+    /**
+     * @param anSRFitness fitness function of the race
+     * @param seed seed of the subsamples
+     * @param props racing parameters, see
+     *        {@value algorithm.Parameters.Names#RACING_INITIAL_FRACTION},
+     *        {@value algorithm.Parameters.Names#RACING_MIN_ROWS},
+     *        {@value algorithm.Parameters.Names#RACING_GROWTH} and
+     *        {@value algorithm.Parameters.Names#RACING_MARGIN}
+     */
+    public RacingEvaluation(SRLARSJava anSRFitness, long seed, Properties props) {
+        srFitness = anSRFitness;
+        rand = new MersenneTwisterFast(seed);
+        if (props.containsKey(Parameters.Names.RACING_INITIAL_FRACTION))
+            initialFraction = Double.valueOf(props.getProperty(Parameters.Names.RACING_INITIAL_FRACTION).trim());
+        else
+            initialFraction = Parameters.Defaults.RACING_INITIAL_FRACTION;
+        if (props.containsKey(Parameters.Names.RACING_MIN_ROWS))
+            minRows = Integer.valueOf(props.getProperty(Parameters.Names.RACING_MIN_ROWS).trim());
+        else
+            minRows = Parameters.Defaults.RACING_MIN_ROWS;
+        if (props.containsKey(Parameters.Names.RACING_GROWTH))
+            growth = Double.valueOf(props.getProperty(Parameters.Names.RACING_GROWTH).trim());
+        else
+            growth = Parameters.Defaults.RACING_GROWTH;
+        if (props.containsKey(Parameters.Names.RACING_MARGIN))
+            margin = Double.valueOf(props.getProperty(Parameters.Names.RACING_MARGIN).trim());
+        else
+            margin = Parameters.Defaults.RACING_MARGIN;
+        if (growth <= 1) {
+            throw new IllegalArgumentException(Parameters.Names.RACING_GROWTH + " must be greater than 1");
+        }
+        roundSizes = new ArrayList<Integer>();
+    }
+
+    /**
+     * Evaluate the children with all the fitness functions, racing them on
+     * subsamples for the fitness function of the race
+     * @param toEvaluate children to evaluate
+     * @param parents evaluated individuals the children compete with; their
+     *        number is the size of the truncated population
+     * @param fitnessFunctions all the fitness functions, including the one of
+     *        the race
+     * @return the children evaluated on all the training cases. Past the
+     *         deadline of the fitness function of the race, the race stops
+     *         and the children are returned as they are, some without a
+     *         fitness: the caller discards them
+     */
+    public Population evalPop(Population toEvaluate, Population parents, LinkedHashMap<String, FitnessFunction> fitnessFunctions) {
+        return evalPop(toEvaluate, parents, fitnessFunctions, false);
+    }
+
+    /**
+     * Race the children, which may already have the fitness values of the
+     * other fitness functions
+     * @param toEvaluate children to evaluate
+     * @param parents evaluated individuals the children compete with
+     * @param fitnessFunctions all the fitness functions, including the one of
+     *        the race
+     * @param screened if the children were evaluated by the
+     *        {@link LinearScalingScreen}, only the fitness function of the
+     *        race is evaluated, and the others keep the values of the screen
+     * @return the children evaluated on all the training cases, see
+     *         {@link #evalPop(Population, Population, LinkedHashMap)}
+     */
+    public Population evalPop(Population toEvaluate, Population parents, LinkedHashMap<String, FitnessFunction> fitnessFunctions, boolean screened) {
+        int numObservations = srFitness.getNumberOfFitnessCases();
+        int sampleSize = Math.max(minRows, (int) (initialFraction * numObservations));
+        children += toEvaluate.size();
+        // a round on more than 1/growth of the data would cost nearly as much
+        // as the full evaluation it could spare
+        int[] permutation = null;
+        if (!parents.isEmpty() && sampleSize * growth <= numObservations) {
+            permutation = new int[numObservations];
+            for (int i = 0; i < numObservations; i++) {
+                permutation[i] = i;
+            }
+            for (int i = numObservations - 1; i > 0; i--) {
+                int j = rand.nextInt(i + 1);
+                int tmp = permutation[i];
+                permutation[i] = permutation[j];
+                permutation[j] = tmp;
+            }
+        }
+        // the fitness values are set in the order of the fitness functions,
+        // with the first round of the race for the fitness function of the race
+        for (FitnessFunction f : fitnessFunctions.values()) {
+            if (f != srFitness) {
+                if (!screened) {
+                    f.evalPop(toEvaluate);
+                }
+            } else if (permutation == null) {
+                srFitness.evalPop(toEvaluate);
+            } else {
+                srFitness.evalPop(toEvaluate, getRows(permutation, sampleSize));
+            }
+        }
+        Population racing = toEvaluate;
+        // the children skipped at the deadline have no fitness to race on
+        if (srFitness.isPastDeadline()) {
+            deadlineStops++;
+            return racing;
+        }
+        if (permutation != null) {
+            String[] names = fitnessFunctions.keySet().toArray(new String[0]);
+            double[][] parentValues = new double[parents.size()][];
+            for (int i = 0; i < parents.size(); i++) {
+                parentValues[i] = getFitnessForMinimization(parents.get(i), names, fitnessFunctions, 1);
+            }
+            while (true) {
+                evaluatedRows += (long) sampleSize * racing.size();
+                roundSizes.add(racing.size());
+                double optimism = 1 + margin * Math.sqrt((double) numObservations / sampleSize - 1);
+                racing = survivors(toEvaluate, racing, parentValues, names, fitnessFunctions, optimism);
+                sampleSize = (int) Math.ceil(sampleSize * growth);
+                if (racing.isEmpty() || sampleSize * growth > numObservations) {
+                    break;
+                }
+                srFitness.evalPop(racing, getRows(permutation, sampleSize));
+                if (srFitness.isPastDeadline()) {
+                    deadlineStops++;
+                    return racing;
+                }
+            }
+            srFitness.evalPop(racing);
+        }
+        evaluatedRows += (long) numObservations * racing.size();
+        fullEvaluations += racing.size();
+        return racing;
+    }
+
+    /**
+     * @return the number of races stopped at the deadline of the fitness
+     *         function, with children left without a fit on all the training
+     *         cases
+     */
+    public long getDeadlineStops() {
+        return deadlineStops;
+    }
+
+    /**
+     * @return the first rows of the permutation, in increasing order: the
+     *         subsamples of the rounds are nested
+     */
+    private static int[] getRows(int[] permutation, int sampleSize) {
+        int[] rows = Arrays.copyOf(permutation, sampleSize);
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    /**
+     * @return the children still in the race that could survive the truncation
+     */
+    private Population survivors(Population allChildren, Population racing, double[][] parentValues,
+            String[] names, LinkedHashMap<String, FitnessFunction> fitnessFunctions, double optimism) {
+        int numParents = parentValues.length;
+        int total = numParents + allChildren.size();
+        double[][] values = new double[total][];
+        System.arraycopy(parentValues, 0, values, 0, numParents);
+        for (int i = 0; i < allChildren.size(); i++) {
+            values[numParents + i] = getFitnessForMinimization(allChildren.get(i), names, fitnessFunctions, 1);
+        }
+        // domination count at the truncation point
+        int[] counts = new int[total];
+        for (int i = 0; i < total; i++) {
+            for (int j = 0; j < total; j++) {
+                if (j != i && dominates(values[j], values[i])) counts[i]++;
+            }
+        }
+        int[] sortedCounts = counts.clone();
+        Arrays.sort(sortedCounts);
+        int cutoff = sortedCounts[numParents - 1];
+        Population stillRacing = new Population();
+        for (Individual child : racing) {
+            double[] optimistic = getFitnessForMinimization(child, names, fitnessFunctions, optimism);
+            int dominatedBy = 0;
+            for (int j = 0; j < total && dominatedBy <= cutoff; j++) {
+                if (dominates(values[j], optimistic)) dominatedBy++;
+            }
+            if (dominatedBy <= cutoff) {
+                stillRacing.add(child);
+            } else {
+                drop(child, optimism);
+            }
+        }
+        return stillRacing;
+    }
+
+    /**
+     * Drop a child from the race. Its Lasso fit on the subsample is
+     * optimistically biased, all the more so with many nodes: it keeps a
+     * fitness made worse by the factor of the race, so that it does not rank
+     * above the children fit on all the training cases that dominated it, and
+     * is flagged as a subsample fit.
+     * @param child
+     * @param optimism factor by which the fitness of the race is improved
+     */
+    private void drop(Individual child, double optimism) {
+        double fitness = child.getFitness(SRLARSJava.FITNESS_KEY);
+        fitness = srFitness.isMaximizingFunction() ? fitness / optimism : fitness * optimism;
+        child.setFitness(SRLARSJava.FITNESS_KEY, fitness);
+        child.setSubsampleFit(true);
+    }
+
+    /**
+     * @param optimism factor by which the fitness of the race is improved
+     * @return the fitness values of the individual, lower is better
+     */
+    private double[] getFitnessForMinimization(Individual ind, String[] names,
+            LinkedHashMap<String, FitnessFunction> fitnessFunctions, double optimism) {
+        double[] values = new double[names.length];
+        for (int k = 0; k < names.length; k++) {
+            FitnessFunction f = fitnessFunctions.get(names[k]);
+            if (f == srFitness) {
+                double fitness = ind.getFitness(names[k]);
+                fitness = f.isMaximizingFunction() ? fitness * optimism : fitness / optimism;
+                values[k] = f.isMaximizingFunction() ? FitnessComparisonStandardizer.invert(fitness) : fitness;
+            } else {
+                values[k] = FitnessComparisonStandardizer.getFitnessForMinimization(ind, names[k], fitnessFunctions);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return whether a dominates b, as in
+     *         {@link evogpj.sort.DominatedCount#domination}
+     */
+    private static boolean dominates(double[] a, double[] b) {
+        boolean strictlyBetter = false;
+        for (int k = 0; k < a.length; k++) {
+            if (!(a[k] <= b[k])) return false;
+            if (a[k] < b[k]) strictlyBetter = true;
+        }
+        return strictlyBetter;
+    }
+
+    /**
+     * Summarize the races since the previous report, and reset the statistics
+     * @return report for the generation log
+     */
+    public String getReport() {
+        String report = String.format("Racing: %d children, %s raced on subsamples, %d evaluated on all rows (%.1f%% of the rows of a full evaluation)",
+                children, roundSizes, fullEvaluations,
+                (children == 0) ? 0 : 100.0 * evaluatedRows / (children * (double) srFitness.getNumberOfFitnessCases()));
+        children = 0;
+        fullEvaluations = 0;
+        evaluatedRows = 0;
+        roundSizes.clear();
+        return report;
+    }
+}
@@ -19,12 +19,22 @@ package evogpj.evaluation.java;
 
 import edu.uci.lasso.LassoFit;
 import edu.uci.lasso.LassoFitGenerator;
+import edu.uci.lasso.ParallelLoop;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 import evogpj.genotype.Tree;
+import evogpj.gp.GPException;
 import evogpj.gp.Individual;
+import evogpj.gp.MersenneTwisterFast;
 import evogpj.gp.Population;
 import evogpj.math.Function;
 import evogpj.math.means.ArithmeticMean;
@@ -53,12 +63,84 @@ public class SRLARSJava extends FitnessFunction {
      * Fitness key
      */
     public static String FITNESS_KEY = Parameters.Operators.SR_JAVA_FITNESS;
+
+    // hash of the predictions of a model, see hashPrediction
+    private static final long PREDICTION_HASH_SEED = 0xcbf29ce484222325L;
+    private static final int PREDICTION_HASH_MASK = ~0xff;
     
     /**
      * Maximizing function
      */
     public Boolean isMaximizingFunction = true;
     private int numThreads;
+    // evaluate the trees column-wise (see ColumnEvaluator) or row-wise
+    private final boolean columnMode;
+    private final int blockSize;
+    private final boolean useKernels;
+    // single precision evaluation of the float32 precision policy, null
+    // otherwise
+    private final FloatColumnEvaluator floatEvaluator;
+    // fit the Lasso in covariance mode
+    private final boolean covarianceSolver;
+    // warm start the Lasso fits from the models of the parents, and the
+    // statistics of the fits since the last report
+    private final boolean warmStart;
+    private final AtomicLong lassoFits = new AtomicLong();
+    private final AtomicLong lassoPasses = new AtomicLong();
+    private final AtomicLong warmStartedFits = new AtomicLong();
+    private final AtomicLong coldRestarts = new AtomicLong();
+    // generated classes, null unless the bytecode mode is selected
+    private final TreeClassCache classCache;
+    // columns of the subtrees already evaluated, null if disabled
+    private final SubtreeCache subtreeCache;
+    // evaluate identical subtrees once, see CompiledTree#shareSubtrees
+    private final boolean shareSubtrees;
+    // proves trees degenerate before their evaluation, null if disabled
+    private final IntervalScreen intervalScreen;
+    // statistics of the interval screen since the last report
+    private final AtomicLong screenedTrees = new AtomicLong();
+    private final AtomicLong screenedNonFinite = new AtomicLong();
+    private final AtomicLong screenedConstant = new AtomicLong();
+    // statistics of the shared subtrees since the last report
+    private final AtomicLong compiledNodes = new AtomicLong();
+    private final AtomicLong compiledInstructions = new AtomicLong();
+    // threads evaluating the population
+    private final EvaluationPool pool;
+    // buffers of the evaluations of each thread, see Workspace
+    private final ThreadLocal<Workspace> workspaces = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+    // all the training cases
+    private final Sample fullSample;
+    // split the individuals or the rows among the threads
+    private final String parallelism;
+    private final int rowParallelMinRows;
+    // individuals per batch of the tiled evaluation, 0 if disabled
+    private final int tileBatch;
+    private final TiledEvaluator tiledEvaluator;
+    // multi-target regression: one Lasso fit per target, and the errors of
+    // the targets, relative to their range, aggregated by their mean or max
+    private final int numTargets;
+    private final double[] targetRanges;
+    private final boolean aggregateMax;
+    // k-fold cross-validation: the training and held-out rows of each fold,
+    // and the targets of the training rows, null if disabled
+    private final int[][] foldTrainRows;
+    private final int[][] foldTestRows;
+    private final double[][][] foldTargets;
+    // time (ms) after which the individuals not yet evaluated are skipped,
+    // see setDeadline, and the number skipped since the last report
+    private volatile long deadline = Long.MAX_VALUE;
+    private final AtomicLong skippedIndividuals = new AtomicLong();
+    // node columns of the individuals estimated by the linear scaling screen,
+    // kept for their Lasso fit within a budget, see setScreenColumnsBudget
+    private final Map<Individual, float[][]> screenColumns =
+            Collections.synchronizedMap(new IdentityHashMap<Individual, float[][]>());
+    private final AtomicLong screenColumnsBytes = new AtomicLong();
+    private long screenColumnsBudget;
     /**
      * Create a new fitness operator, using the provided data, for assessing
      * individual solutions to Symbolic Regression problems. There are two
@@ -95,10 +177,211 @@ public class SRLARSJava extends FitnessFunction {
      * @param anumThreads 
      */
     public SRLARSJava(DataJava aData, int aPow, boolean is_int,int anumThreads) {
+        this(aData, aPow, is_int, anumThreads, new Properties());
+    }
+
+    /**
+     * Constructor that also reads the evaluation strategy from the properties:
+     * {@value algorithm.Parameters.Names#EVAL_MODE} selects row-wise or
+     * column-wise evaluation of the trees, and
+     * {@value algorithm.Parameters.Names#EVAL_BLOCK_SIZE} the number of
+     * training cases per block in column-wise evaluation, and
+     * {@value algorithm.Parameters.Names#EVAL_KERNELS} whether the columns are
+     * computed with the vectorizable {@link ColumnKernels}. In the bytecode mode,
+     * trees are evaluated column-wise by classes generated at runtime (see
+     * {@link TreeClassCache}).
+     * {@value algorithm.Parameters.Names#SUBTREE_CACHE_MB} enables a cache of
+     * the columns of the subtrees already evaluated (see {@link SubtreeCache});
+     * when enabled, it is used instead of the generated classes.
+     * {@value algorithm.Parameters.Names#EVAL_SHARE_SUBTREES} evaluates the
+     * identical subtrees of a tree once (see {@link #compile(Tree)}).
+     * {@value algorithm.Parameters.Names#EVAL_PARALLELISM} selects whether
+     * the threads share the individuals or the rows of each evaluation (see
+     * {@link #evalPop(Population)}).
+     * {@value algorithm.Parameters.Names#EVAL_TILE_BATCH} evaluates the nodes
+     * of batches of individuals tile by tile, with
+     * {@value algorithm.Parameters.Names#EVAL_TILE_ROWS} rows per tile (see
+     * {@link TiledEvaluator}).
+     * {@value algorithm.Parameters.Names#INTERVAL_SCREEN} gives the worst
+     * fitness to the trees that {@link IntervalScreen} proves degenerate.
+     * With several targets (see {@link DataJava#getNumberOfTargets()}), one
+     * Lasso model per target is fit over the same node values, and
+     * {@value algorithm.Parameters.Names#TARGET_AGGREGATION} selects how the
+     * errors of the targets make the fitness (see {@link #aggregate(double[])}).
+     * In {@value algorithm.Parameters.Names#PRECISION} float32, or when the
+     * data is stored in single precision, the trees are evaluated in float
+     * from the float columns of the data (see {@link FloatColumnEvaluator}),
+     * column-wise and without the subtree cache.
+     * {@value algorithm.Parameters.Names#LASSO_SOLVER} covariance fits the
+     * Lasso in covariance mode (see
+     * {@link LassoFitGenerator#setCovarianceMode(boolean)}), and
+     * {@value algorithm.Parameters.Names#LASSO_WARM_START} warm starts the fit
+     * of a child from the model of its parent (see {@link LassoWarmStart}).
+     * With {@value algorithm.Parameters.Names#CROSS_VAL_FOLDS} folds, the
+     * fitness is the cross-validated error (see
+     * {@link #crossValidate(LassoFitGenerator, int, Workspace)}).
+     * @param aData
+     * @param aPow
+     * @param is_int
+     * @param anumThreads
+     * @param props
+     */
+    public SRLARSJava(DataJava aData, int aPow, boolean is_int,int anumThreads, Properties props) {
         this.data = aData;
         pow = aPow;
         USE_INT = is_int;
         numThreads = anumThreads;
+        String mode = Parameters.Defaults.EVAL_MODE;
+        if (props.containsKey(Parameters.Names.EVAL_MODE))
+            mode = props.getProperty(Parameters.Names.EVAL_MODE).trim();
+        String precision = Parameters.Defaults.PRECISION;
+        if (props.containsKey(Parameters.Names.PRECISION))
+            precision = props.getProperty(Parameters.Names.PRECISION).trim();
+        boolean float32 = data.isFloat32() || precision.equals(Parameters.Names.PRECISION_FLOAT32);
+        if (float32 && !mode.equals(Parameters.Names.EVAL_MODE_COLUMN)) {
+            System.err.format("The %s precision evaluates the trees column-wise, not in %s mode%n",
+                    Parameters.Names.PRECISION_FLOAT32, mode);
+            mode = Parameters.Names.EVAL_MODE_COLUMN;
+        }
+        columnMode = mode.equals(Parameters.Names.EVAL_MODE_COLUMN) || mode.equals(Parameters.Names.EVAL_MODE_BYTECODE);
+        if (props.containsKey(Parameters.Names.EVAL_BLOCK_SIZE))
+            blockSize = Integer.valueOf(props.getProperty(Parameters.Names.EVAL_BLOCK_SIZE).trim());
+        else
+            blockSize = Parameters.Defaults.EVAL_BLOCK_SIZE;
+        String kernels = Parameters.Defaults.EVAL_KERNELS;
+        if (props.containsKey(Parameters.Names.EVAL_KERNELS))
+            kernels = props.getProperty(Parameters.Names.EVAL_KERNELS).trim();
+        useKernels = kernels.equals(Parameters.Names.EVAL_KERNELS_VECTOR);
+        if (mode.equals(Parameters.Names.EVAL_MODE_BYTECODE)) {
+            int cacheSize = Parameters.Defaults.BYTECODE_CACHE_SIZE;
+            int minSize = Parameters.Defaults.BYTECODE_MIN_SIZE;
+            int maxSize = Parameters.Defaults.BYTECODE_MAX_SIZE;
+            if (props.containsKey(Parameters.Names.BYTECODE_CACHE_SIZE))
+                cacheSize = Integer.valueOf(props.getProperty(Parameters.Names.BYTECODE_CACHE_SIZE).trim());
+            if (props.containsKey(Parameters.Names.BYTECODE_MIN_SIZE))
+                minSize = Integer.valueOf(props.getProperty(Parameters.Names.BYTECODE_MIN_SIZE).trim());
+            if (props.containsKey(Parameters.Names.BYTECODE_MAX_SIZE))
+                maxSize = Integer.valueOf(props.getProperty(Parameters.Names.BYTECODE_MAX_SIZE).trim());
+            classCache = new TreeClassCache(cacheSize, minSize, maxSize);
+        } else {
+            classCache = null;
+        }
+        int cacheMB = Parameters.Defaults.SUBTREE_CACHE_MB;
+        if (props.containsKey(Parameters.Names.SUBTREE_CACHE_MB))
+            cacheMB = Integer.valueOf(props.getProperty(Parameters.Names.SUBTREE_CACHE_MB).trim());
+        if (float32 && cacheMB > 0) {
+            System.err.format("The subtree cache holds double columns: disabled in %s precision%n",
+                    Parameters.Names.PRECISION_FLOAT32);
+            cacheMB = 0;
+        }
+        subtreeCache = (cacheMB > 0) ? new SubtreeCache(cacheMB * 1024L * 1024L) : null;
+        if (props.containsKey(Parameters.Names.EVAL_SHARE_SUBTREES))
+            shareSubtrees = Boolean.valueOf(props.getProperty(Parameters.Names.EVAL_SHARE_SUBTREES).trim());
+        else
+            shareSubtrees = Parameters.Defaults.EVAL_SHARE_SUBTREES;
+        if (props.containsKey(Parameters.Names.EVAL_PARALLELISM))
+            parallelism = props.getProperty(Parameters.Names.EVAL_PARALLELISM).trim();
+        else
+            parallelism = Parameters.Defaults.EVAL_PARALLELISM;
+        if (props.containsKey(Parameters.Names.EVAL_ROW_PARALLEL_MIN_ROWS))
+            rowParallelMinRows = Integer.valueOf(props.getProperty(Parameters.Names.EVAL_ROW_PARALLEL_MIN_ROWS).trim());
+        else
+            rowParallelMinRows = Parameters.Defaults.EVAL_ROW_PARALLEL_MIN_ROWS;
+        if (props.containsKey(Parameters.Names.EVAL_TILE_BATCH))
+            tileBatch = Integer.valueOf(props.getProperty(Parameters.Names.EVAL_TILE_BATCH).trim());
+        else
+            tileBatch = Parameters.Defaults.EVAL_TILE_BATCH;
+        int tileRows = Parameters.Defaults.EVAL_TILE_ROWS;
+        if (props.containsKey(Parameters.Names.EVAL_TILE_ROWS))
+            tileRows = Integer.valueOf(props.getProperty(Parameters.Names.EVAL_TILE_ROWS).trim());
+        if (tileRows <= 0)
+            tileRows = TiledEvaluator.getDefaultTileRows(data.getNumberOfFeatures(), blockSize);
+        tiledEvaluator = new TiledEvaluator(tileRows);
+        boolean screen = Parameters.Defaults.INTERVAL_SCREEN;
+        if (props.containsKey(Parameters.Names.INTERVAL_SCREEN))
+            screen = Boolean.valueOf(props.getProperty(Parameters.Names.INTERVAL_SCREEN).trim());
+        intervalScreen = screen ? new IntervalScreen(data.getMinFeatures(), data.getMaxFeatures()) : null;
+        floatEvaluator = float32 ? new FloatColumnEvaluator(blockSize) : null;
+        String solver = Parameters.Defaults.LASSO_SOLVER;
+        if (props.containsKey(Parameters.Names.LASSO_SOLVER))
+            solver = props.getProperty(Parameters.Names.LASSO_SOLVER).trim();
+        covarianceSolver = solver.equals(Parameters.Names.LASSO_SOLVER_COVARIANCE);
+        boolean warm = Parameters.Defaults.LASSO_WARM_START;
+        if (props.containsKey(Parameters.Names.LASSO_WARM_START))
+            warm = Boolean.valueOf(props.getProperty(Parameters.Names.LASSO_WARM_START).trim());
+        warmStart = warm;
+        pool = new EvaluationPool(numThreads);
+        numTargets = data.getNumberOfTargets();
+        double[][] targetColumns = new double[numTargets][];
+        targetRanges = new double[numTargets];
+        for (int t = 0; t < numTargets; t++) {
+            targetColumns[t] = data.getTargetValues(t);
+            double range = data.getTargetMax(t) - data.getTargetMin(t);
+            targetRanges[t] = (range > 0) ? range : 1;
+        }
+        String aggregation = Parameters.Defaults.TARGET_AGGREGATION;
+        if (props.containsKey(Parameters.Names.TARGET_AGGREGATION))
+            aggregation = props.getProperty(Parameters.Names.TARGET_AGGREGATION).trim();
+        aggregateMax = aggregation.equals(Parameters.Names.TARGET_AGGREGATION_MAX);
+        int numFolds = Parameters.Defaults.CROSS_VAL_FOLDS;
+        if (props.containsKey(Parameters.Names.CROSS_VAL_FOLDS))
+            numFolds = Integer.valueOf(props.getProperty(Parameters.Names.CROSS_VAL_FOLDS).trim());
+        if (numFolds > 1) {
+            // the rows are dealt to the folds in an order that only depends on
+            // the seed of the run, or else on the data
+            long foldSeed = data.getFingerprint();
+            if (props.containsKey(Parameters.Names.SEED))
+                foldSeed = Long.valueOf(props.getProperty(Parameters.Names.SEED).trim());
+            int n = data.getNumberOfFitnessCases();
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            MersenneTwisterFast rand = new MersenneTwisterFast(foldSeed);
+            for (int i = n - 1; i > 0; i--) {
+                int j = rand.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            int[] fold = new int[n];
+            int[] foldSizes = new int[numFolds];
+            for (int i = 0; i < n; i++) {
+                fold[order[i]] = i % numFolds;
+                foldSizes[i % numFolds]++;
+            }
+            foldTrainRows = new int[numFolds][];
+            foldTestRows = new int[numFolds][];
+            foldTargets = new double[numFolds][numTargets][];
+            for (int k = 0; k < numFolds; k++) {
+                foldTrainRows[k] = new int[n - foldSizes[k]];
+                foldTestRows[k] = new int[foldSizes[k]];
+                int train = 0, test = 0;
+                for (int i = 0; i < n; i++) {
+                    if (fold[i] == k) {
+                        foldTestRows[k][test++] = i;
+                    } else {
+                        foldTrainRows[k][train++] = i;
+                    }
+                }
+                for (int t = 0; t < numTargets; t++) {
+                    foldTargets[k][t] = new double[train];
+                    for (int i = 0; i < train; i++) {
+                        foldTargets[k][t][i] = targetColumns[t][foldTrainRows[k][i]];
+                    }
+                }
+            }
+        } else {
+            foldTrainRows = null;
+            foldTestRows = null;
+            foldTargets = null;
+        }
+        if (float32) {
+            fullSample = new Sample(data.getInputColumnsFloat(), targetColumns, true);
+        } else {
+            fullSample = new Sample(columnMode ? data.getInputColumns() : null,
+                    columnMode ? null : data.getInputValues(), targetColumns, true);
+        }
     }
     /**
      * Should this fitness function be minimized (i.e. mean squared error) or
@@ -134,56 +417,332 @@ public class SRLARSJava extends FitnessFunction {
     }
 
     /**
+     * The tree is compiled to a flat program (see {@link CompiledTree}) whose
+     * intermediate values follow the order of {@link Function#evalIntermediate}.
      * @param ind
      * @throws java.lang.Exception
      * @see Function
      */
     public void eval(Individual ind) throws Exception {
-        
-        Tree genotype = (Tree) ind.getGenotype();
-        Mean MEAN_FUNC = getMeanFromP(pow);
-        Function func = genotype.generate();
-        List<Double> d;
-        ArrayList<Double> interVals;
-        double[][] inputValuesAux = data.getInputValues();
+        eval(ind, workspaces.get(), false, fullSample);
+    }
+
+    /**
+     * @return a Lasso fit generator with the solver of the properties
+     */
+    private LassoFitGenerator newFitGenerator() {
+        LassoFitGenerator generator = new LassoFitGenerator();
+        generator.setCovarianceMode(covarianceSolver);
+        return generator;
+    }
+
+    /**
+     * Compile a tree, with one instruction per distinct subtree if subtrees
+     * are shared. The Lasso fit has one feature per instruction; its weights
+     * are spread back over the nodes of the tree (see
+     * {@link CompiledTree#getNodeWeights(double[])}), so the weights of the
+     * individuals always have one entry per node.
+     * @param t
+     * @return
+     * @throws GPException
+     */
+    private CompiledTree compile(Tree t) throws GPException {
+        CompiledTree program = CompiledTree.compile(t);
+        if (!shareSubtrees) {
+            return program;
+        }
+        CompiledTree shared = program.shareSubtrees();
+        compiledNodes.addAndGet(shared.getNumNodes());
+        compiledInstructions.addAndGet(shared.getSize());
+        return shared;
+    }
+
+    /**
+     * Evaluate an individual on a sample of the training cases, with the
+     * buffers of the workspace of the current thread. In column mode, the
+     * values of each node are written directly into the feature columns of
+     * the Lasso fit.
+     * <p>
+     * The work of this single evaluation can be split among the threads of
+     * the pool: the tree is evaluated on row ranges in parallel (except with
+     * the subtree cache, which holds whole columns, and in row mode), the
+     * standardization and correlations of the Lasso fit are computed in
+     * parallel over the features, and the predictions in parallel over the
+     * rows. The result does not depend on the split.
+     * @param ind
+     * @param ws workspace of the current thread
+     * @param splitRows
+     * @param sample
+     * @throws Exception
+     */
+    private void eval(Individual ind, final Workspace ws, boolean splitRows, Sample sample) throws Exception {
         Tree tAux = (Tree) ind.getGenotype();
-        //double[] targetAux = data.getScaledTargetValues();
-        double[] targetAux = data.getTargetValues();
-        float[][] intermediateValues = new float[data.getNumberOfFitnessCases()][tAux.getSize()];
-        for (int i = 0; i < data.getNumberOfFitnessCases(); i++) {
-            d = new ArrayList<Double>();
-            for (int j = 0; j < data.getNumberOfFeatures(); j++) {
-                d.add(j, inputValuesAux[i][j]);
-            }
-            interVals = new ArrayList<Double>();
-            Double val = func.evalIntermediate(d,interVals);
-            for(int t=0;t<interVals.size();t++){
-                intermediateValues[i][t] = interVals.get(t).floatValue();
-            }
-            d.clear();
-            interVals.clear();
+        CompiledTree program = compile(tAux);
+        if (screenOut(ind, program, sample)) {
+            return;
         }
+        //double[] targetAux = data.getScaledTargetValues();
+        double[] targetAux = sample.targets;
+        final int numObservations = sample.size;
+        int numColumns = program.getSize();
 
         /*
          * LassoFitGenerator is initialized
          */
-        LassoFitGenerator fitGenerator = new LassoFitGenerator();
-        int numObservations = data.getNumberOfFitnessCases();
-        fitGenerator.init(tAux.getSize(), numObservations);
-        for (int i = 0; i < numObservations; i++) {
-            fitGenerator.setObservationValues(i,intermediateValues[i] );
-            fitGenerator.setTarget(i, targetAux[i]);
+        final LassoFitGenerator fitGenerator = ws.fitGenerator;
+        fitGenerator.init(numColumns, numObservations);
+        fitGenerator.setParallelLoop(splitRows ? pool : null);
+        if (restoreScreenColumns(ind, ws.getFeatureColumns(fitGenerator, 0, numColumns), numColumns, sample)) {
+            fitGenerator.setTargets(targetAux);
+        } else if (columnMode) {
+            float[][] featureColumns = ws.getFeatureColumns(fitGenerator, 0, numColumns);
+            evalNodes(tAux, program, ws.evaluator, splitRows, sample, featureColumns);
+            fitGenerator.setTargets(targetAux);
+        } else {
+            double[][] inputValuesAux = sample.inputRows;
+            double[] interVals = ws.getInterVals(numColumns);
+            float[] rowValues = ws.getRowValues(numColumns);
+            for (int i = 0; i < numObservations; i++) {
+                program.evalIntermediate(inputValuesAux[i], interVals);
+                for (int t = 0; t < numColumns; t++) {
+                    rowValues[t] = (float) interVals[t];
+                }
+                fitGenerator.setObservationValues(i, rowValues);
+                fitGenerator.setTarget(i, targetAux[i]);
+            }
+        }
+        fitAndScore(ind, program, fitGenerator, ws, splitRows, sample);
+    }
+
+    /**
+     * Give the worst fitness, without reading the data, to a tree that the
+     * interval screen proves degenerate. The result is the one of the Lasso
+     * fit of a tree with a non-finite node: no nonzero weight, the mean target
+     * as intercept, and NaN predictions.
+     * @param ind
+     * @param program compiled tree of the individual
+     * @param sample
+     * @return whether the individual was screened out
+     */
+    private boolean screenOut(Individual ind, CompiledTree program, Sample sample) {
+        if (intervalScreen == null) {
+            return false;
+        }
+        screenedTrees.incrementAndGet();
+        int verdict = intervalScreen.classify(program);
+        if (verdict == IntervalScreen.NONE) {
+            return false;
         }
+        if (verdict == IntervalScreen.NON_FINITE) {
+            screenedNonFinite.incrementAndGet();
+        } else {
+            screenedConstant.incrementAndGet();
+        }
+        if (numTargets == 1) {
+            ind.setWeights(new double[program.getNumNodes()]);
+            ind.setLassoIntercept(Double.toString(sample.targetMean));
+        } else {
+            double[][] weights = new double[numTargets][program.getNumNodes()];
+            String[] intercepts = new String[numTargets];
+            for (int t = 0; t < numTargets; t++) {
+                intercepts[t] = Double.toString(sample.targetMeans[t]);
+            }
+            ind.setTargetModels(weights, intercepts);
+        }
+        ind.setFitness(SRLARSJava.FITNESS_KEY, errorToFitness(Double.NaN));
+        return true;
+    }
+
+    /**
+     * Evaluate a batch of individuals on all the training cases, with their
+     * nodes evaluated column-wise tile by tile (see {@link TiledEvaluator}),
+     * and then fit the Lasso of each of them
+     * @param individuals
+     * @param ws workspace of the current thread
+     * @throws Exception
+     */
+    private void evalTiled(List<Individual> batch, Workspace ws) throws Exception {
+        Sample sample = fullSample;
+        List<Individual> individuals = new ArrayList<Individual>(batch.size());
+        List<CompiledTree> compiled = new ArrayList<CompiledTree>(batch.size());
+        for (Individual ind : batch) {
+            CompiledTree program = compile((Tree) ind.getGenotype());
+            if (!screenOut(ind, program, sample)) {
+                individuals.add(ind);
+                compiled.add(program);
+            }
+        }
+        int batchSize = individuals.size();
+        CompiledTree[] programs = compiled.toArray(new CompiledTree[batchSize]);
+        // the trees whose node columns were kept by the screen are not
+        // evaluated again
+        int numEvaluated = 0;
+        CompiledTree[] evaluated = new CompiledTree[batchSize];
+        GeneratedTree[] generated = new GeneratedTree[batchSize];
+        float[][][] featureColumns = new float[batchSize][][];
+        for (int b = 0; b < batchSize; b++) {
+            Tree tAux = (Tree) individuals.get(b).getGenotype();
+            int numColumns = programs[b].getSize();
+            LassoFitGenerator fitGenerator = ws.getBatchGenerator(b);
+            fitGenerator.init(numColumns, sample.size);
+            fitGenerator.setParallelLoop(null);
+            float[][] columns = ws.getFeatureColumns(fitGenerator, b, numColumns);
+            if (!restoreScreenColumns(individuals.get(b), columns, numColumns, sample)) {
+                evaluated[numEvaluated] = programs[b];
+                generated[numEvaluated] = (classCache == null) ? null : classCache.get(tAux, programs[b]);
+                featureColumns[numEvaluated] = columns;
+                numEvaluated++;
+            }
+        }
+        if (numEvaluated < batchSize) {
+            evaluated = Arrays.copyOf(evaluated, numEvaluated);
+            generated = Arrays.copyOf(generated, numEvaluated);
+            featureColumns = Arrays.copyOf(featureColumns, numEvaluated);
+        }
+        if (sample.floatColumns != null) {
+            tiledEvaluator.evaluate(evaluated, floatEvaluator, sample.floatColumns, 0, sample.size, featureColumns);
+        } else {
+            tiledEvaluator.evaluate(evaluated, generated, ws.evaluator, sample.inputColumns, 0, sample.size, featureColumns);
+        }
+        for (int b = 0; b < batchSize; b++) {
+            LassoFitGenerator fitGenerator = ws.getBatchGenerator(b);
+            fitGenerator.setTargets(sample.targets);
+            fitAndScore(individuals.get(b), programs[b], fitGenerator, ws, false, sample);
+        }
+    }
+
+    /**
+     * Fit the Lasso over the node values held by the fit generator, and set
+     * the fitness, weights and intercept of the individual. With several
+     * targets, the node values are fit to each target in turn, and the
+     * fitness aggregates the errors of the targets.
+     * @param ind
+     * @param program compiled tree of the individual
+     * @param fitGenerator fit generator holding the node values and targets
+     * @param ws workspace of the current thread
+     * @param splitRows
+     * @param sample
+     * @throws Exception
+     */
+    private void fitAndScore(Individual ind, CompiledTree program, final LassoFitGenerator fitGenerator,
+            Workspace ws, boolean splitRows, Sample sample) throws Exception {
+        int numColumns = program.getSize();
 
         /*
          * Generate the Lasso fit. The -1 arguments means that
          * there would be no limit on the maximum number of 
          * features per model
          */
+        LassoWarmStart parentModel = warmStart ? ind.getLassoWarmStart() : null;
+        if (parentModel != null) {
+            fitGenerator.setWarmStart(parentModel.getWeights(program), parentModel.getLambda());
+        }
         LassoFit fit = fitGenerator.fit(-1);
+        int passes = fit.numberOfPasses;
+        if (fit.firstLambda > 0) {
+            warmStartedFits.incrementAndGet();
+            int picked = pickModel(fit);
+            // the model picked on the cold path could be one of the models
+            // skipped by the warm start, or could differ from the warm one
+            // in the features at the threshold of the model: unless the
+            // picked model has all the features of the warm start and no
+            // other, fit again from scratch
+            if (fit.leftWarmStart || picked <= fit.firstLambda
+                    || fit.nonZeroWeights[picked] != fit.warmFeatures) {
+                coldRestarts.incrementAndGet();
+                fitGenerator.setTargets(sample.targets);
+                fit = fitGenerator.fit(-1);
+                passes += fit.numberOfPasses;
+            }
+        }
+        lassoFits.incrementAndGet();
+        lassoPasses.addAndGet(passes);
 
-        
-        // We pick the first value of lamda that includes all the features in the model
+        double[][] targetWeights = new double[numTargets][];
+        double[] intercepts = new double[numTargets];
+        double[] errors = new double[numTargets];
+        ws.predictionHash = PREDICTION_HASH_SEED;
+        for (int t = 0; t < numTargets; t++) {
+            if (t > 0) {
+                // the other targets are fit over the same node values
+                fitGenerator.setTargets(sample.targetColumns[t]);
+                fit = fitGenerator.refit(-1);
+            }
+            // the weights are kept by the individual
+            double[] lassoWeights = new double[numColumns];
+            errors[t] = score(fit, fitGenerator, lassoWeights, intercepts, t, ws, splitRows, sample);
+            if (warmStart && t == 0) {
+                int picked = pickModel(fit);
+                ind.setLassoWarmStart((picked == 0) ? null
+                        : new LassoWarmStart(program, lassoWeights, fit.lambdas[picked]));
+            }
+            targetWeights[t] = program.getNodeWeights(lassoWeights);
+        }
+        boolean crossValidated = foldTrainRows != null && sample.isFull;
+        if (crossValidated) {
+            errors = crossValidate(fitGenerator, numColumns, ws);
+        }
+        if (numTargets == 1) {
+            ind.setWeights(targetWeights[0]);
+            ind.setLassoIntercept(Double.toString(intercepts[0]));
+        } else {
+            String[] targetIntercepts = new String[numTargets];
+            for (int t = 0; t < numTargets; t++) {
+                targetIntercepts[t] = Double.toString(intercepts[t]);
+            }
+            ind.setTargetModels(targetWeights, targetIntercepts);
+        }
+        if (sample.isFull) {
+            ind.setPredictionHash(ws.predictionHash);
+        }
+        Double fitness = errorToFitness((numTargets == 1) ? errors[0] : aggregate(errors));
+        if (crossValidated) {
+            ind.setScaledCrossValFitness(fitness);
+        }
+        ind.setFitness(SRLARSJava.FITNESS_KEY, fitness);
+    }
+
+    /**
+     * k-fold cross-validation of the Lasso fit of a tree, whose nodes have
+     * been evaluated once on all the training cases: the fit of each fold
+     * reads the rows of its training folds from the node columns held by the
+     * fit generator, without copying them, and is scored on the held-out
+     * rows. The folds are fit in parallel on the pool, unless the current
+     * thread is a worker of the pool.
+     * @param fitGenerator fit generator holding the node values of all the
+     *        training cases
+     * @param numColumns
+     * @param ws workspace of the current thread
+     * @return the mean error of the folds on their held-out rows, for each
+     *         target
+     * @throws Exception
+     */
+    private double[] crossValidate(LassoFitGenerator fitGenerator, int numColumns, Workspace ws) throws Exception {
+        float[][] columns = ws.getFoldColumns(fitGenerator, numColumns);
+        int numFolds = foldTrainRows.length;
+        List<FoldJob> jobs = ws.getFoldJobs(numFolds);
+        for (FoldJob job : jobs) {
+            job.columns = columns;
+            job.numColumns = numColumns;
+        }
+        pool.runAll(jobs);
+        double[] errors = new double[numTargets];
+        for (int t = 0; t < numTargets; t++) {
+            for (FoldJob job : jobs) {
+                errors[t] += job.errors[t];
+            }
+            errors[t] /= numFolds;
+        }
+        return errors;
+    }
+
+    /**
+     * We pick the first value of lambda that includes all the features in the
+     * model, that is, the model with the most nonzero weights
+     * @param fit
+     * @return the index of the model on the regularization path
+     */
+    private static int pickModel(LassoFit fit) {
         int indexWeights = 0;
         int usedVars=0;
         for(int i=0;i<fit.lambdas.length;i++){
@@ -192,29 +751,60 @@ public class SRLARSJava extends FitnessFunction {
                 usedVars = fit.nonZeroWeights[i];
             }
         }
-        ArrayList<String> alWeights = new ArrayList<String>();
-        double lassoIntercept = 0;
-        double fitness = 0;
+        return indexWeights;
+    }
+
+    /**
+     * Pick a model on the regularization path of a Lasso fit, and compute its
+     * error on a target
+     * @param fit
+     * @param fitGenerator fit generator holding the node values
+     * @param lassoWeights receives the weights of the model, one per column
+     * @param intercepts receives the intercept of the model at index t
+     * @param t index of the target
+     * @param ws workspace of the current thread
+     * @param splitRows
+     * @param sample
+     * @return the error of the model on target t
+     */
+    private double score(LassoFit fit, final LassoFitGenerator fitGenerator, final double[] lassoWeights,
+            double[] intercepts, int t, Workspace ws, boolean splitRows, Sample sample) {
+        Mean MEAN_FUNC = ws.mean;
+        MEAN_FUNC.reset();
+        double[] targetAux = sample.targetColumns[t];
+        final int numObservations = sample.size;
+
+        int indexWeights = pickModel(fit);
         //if(fit.nonZeroWeights[indexWeights]==tAux.getSize()){
             //double[] lassoWeights = fit.compressedWeights[indexWeights];
-            double[] lassoWeights = fit.getWeights(indexWeights);
-            for(int j=0;j<lassoWeights.length;j++){
-                alWeights.add(Double.toString(lassoWeights[j]));
+            fit.getWeights(indexWeights, lassoWeights);
+            double lassoIntercept = fit.intercepts[indexWeights];
+            // the fit leaves the raw node values in place: accumulate the
+            // predictions column by column, in the same order as per row
+            final double[] predictions = ws.getPredictions(numObservations);
+            if (splitRows) {
+                pool.run(numObservations, new ParallelLoop.Body() {
+                    @Override
+                    public void run(int from, int to) {
+                        accumulatePredictions(fitGenerator, lassoWeights, predictions, from, to);
+                    }
+                });
+            } else {
+                accumulatePredictions(fitGenerator, lassoWeights, predictions, 0, numObservations);
             }
-            lassoIntercept = fit.intercepts[indexWeights];
             //SRPhenotype phenotype_tmp = new SRPhenotype();
-            for (int i = 0; i < data.getTargetValues().length; i++) {
-                double prediction = 0;
-                for(int j=0;j<lassoWeights.length;j++){
-                    prediction += intermediateValues[i][j]*lassoWeights[j];
-                }
+            long hash = ws.predictionHash;
+            for (int i = 0; i < numObservations; i++) {
+                double prediction = predictions[i];
                 prediction += lassoIntercept;
                 //phenotype_tmp.addNewDataValue(prediction);
                 if (this.USE_INT) {
                     prediction = Math.round(prediction);
                 }
+                hash = hashPrediction(hash, prediction);
                 MEAN_FUNC.addValue(Math.abs(targetAux[i] - prediction));
             }
+            ws.predictionHash = hash;
             /*final ScaledTransform scalePrediction = new ScaledTransform(phenotype_tmp.min, phenotype_tmp.max);
             final ScaledTransform scaleTarget = new ScaledTransform(this.data.getTargetMin(), this.data.getTargetMax());
             for (int i = 0; i < this.getTarget().length; i++) {
@@ -227,19 +817,298 @@ public class SRLARSJava extends FitnessFunction {
             }
             phenotype_tmp = null;
             */
-            Double error = MEAN_FUNC.getMean();
-            fitness=errorToFitness(error);
-            
         /*}else{
             for(int j=0;j<tAux.getSize();j++){
                 alWeights.add("0");
             }
         }*/
-        ind.setWeights(alWeights);
-        ind.setLassoIntercept(Double.toString(lassoIntercept));
-        ind.setFitness(SRLARSJava.FITNESS_KEY, fitness);
-}
+        intercepts[t] = lassoIntercept;
+        return MEAN_FUNC.getMean();
+    }
+
+    /**
+     * Add a prediction to the hash of the predictions of a model (FNV-1a over
+     * the float bits). The low bits of the mantissa are dropped, so that
+     * models computing the same outputs with rounding differences, such as
+     * sums in another order, mostly hash the same.
+     * @param hash hash of the previous predictions
+     * @param prediction
+     * @return
+     */
+    private static long hashPrediction(long hash, double prediction) {
+        int bits = Float.floatToIntBits((float) prediction) & PREDICTION_HASH_MASK;
+        return (hash ^ bits) * 0x100000001b3L;
+    }
+
+    /**
+     * Error of an individual in multi-target regression: the error on each
+     * target is divided by the range of the target, so that targets of
+     * different scales weigh the same, and the relative errors are averaged,
+     * or their maximum is taken
+     * @param errors error on each target
+     * @return
+     */
+    private double aggregate(double[] errors) {
+        double aggregate = 0;
+        for (int t = 0; t < numTargets; t++) {
+            double relative = errors[t] / targetRanges[t];
+            aggregate = aggregateMax ? Math.max(aggregate, relative) : aggregate + relative;
+        }
+        return aggregateMax ? aggregate : aggregate / numTargets;
+    }
+
+    /**
+     * Add the weighted values of the nodes to the predictions of the rows
+     * from (inclusive) to to (exclusive)
+     */
+    private static void accumulatePredictions(LassoFitGenerator fitGenerator, double[] weights,
+            double[] predictions, int from, int to) {
+        for(int j=0;j<weights.length;j++){
+            float[] column = fitGenerator.getFeatureValues(j);
+            double w = weights[j];
+            for (int i = from; i < to; i++) {
+                predictions[i] += column[i]*w;
+            }
+        }
+    }
     
+    /**
+     * Evaluate the nodes of a tree column-wise
+     * @param tAux
+     * @param program compiled tree
+     * @param evaluator evaluator used when the rows are not split
+     * @param splitRows
+     * @param sample
+     * @param featureColumns destination column of each node
+     */
+    private void evalNodes(Tree tAux, CompiledTree program, ColumnEvaluator evaluator, boolean splitRows,
+            Sample sample, float[][] featureColumns) {
+        int numObservations = sample.size;
+        if (sample.floatColumns != null) {
+            if (splitRows) {
+                evalOnRowRanges(program, null, sample, featureColumns);
+            } else {
+                floatEvaluator.evaluate(program, sample.floatColumns, 0, numObservations, featureColumns);
+            }
+            return;
+        }
+        // the cached columns hold all the training cases
+        boolean useSubtreeCache = subtreeCache != null && sample.isFull;
+        GeneratedTree generated = (classCache == null || useSubtreeCache) ? null : classCache.get(tAux, program);
+        if (useSubtreeCache) {
+            evaluator.evaluate(program, sample.inputColumns, numObservations, featureColumns, subtreeCache);
+        } else if (splitRows) {
+            evalOnRowRanges(program, generated, sample, featureColumns);
+        } else if (generated != null) {
+            generated.evalIntermediate(sample.inputColumns, 0, numObservations, featureColumns);
+        } else {
+            evaluator.evaluate(program, sample.inputColumns, numObservations, featureColumns);
+        }
+    }
+
+    /**
+     * Cheap estimate of the fitness of an individual: instead of the Lasso fit
+     * over all the nodes of the tree, the least squares linear scaling
+     * a*f(X) + b of the single node f that fits the target best (often, but
+     * not always, the root). The model is recorded as Lasso weights that are
+     * zero except for that node. With several targets, each target is scaled
+     * on its own node.
+     * @param ind
+     * @param ws workspace of the current thread
+     * @throws Exception
+     */
+    private void evalLinearScaling(Individual ind, Workspace ws) throws Exception {
+        Tree tAux = (Tree) ind.getGenotype();
+        CompiledTree program = compile(tAux);
+        Sample sample = fullSample;
+        if (screenOut(ind, program, sample)) {
+            return;
+        }
+        double[] targetAux = sample.targets;
+        int numObservations = sample.size;
+        int numColumns = program.getSize();
+        // node values, rounded to float as the features of the Lasso fit,
+        // in the feature columns of the workspace
+        ws.fitGenerator.init(numColumns, numObservations);
+        float[][] featureColumns = ws.getFeatureColumns(ws.fitGenerator, 0, numColumns);
+        if (columnMode) {
+            evalNodes(tAux, program, ws.evaluator, false, sample, featureColumns);
+        } else {
+            double[] interVals = ws.getInterVals(numColumns);
+            for (int i = 0; i < numObservations; i++) {
+                program.evalIntermediate(sample.inputRows[i], interVals);
+                for (int t = 0; t < numColumns; t++) {
+                    featureColumns[t][i] = (float) interVals[t];
+                }
+            }
+        }
+        keepScreenColumns(ind, featureColumns, numColumns, numObservations);
+        double[] weights = new double[numColumns];
+        double[] intercepts = new double[numTargets];
+        double error = scale(featureColumns, targetAux, numObservations, weights, intercepts, 0, ws.mean);
+        if (numTargets == 1) {
+            ind.setWeights(program.getNodeWeights(weights));
+            ind.setLassoIntercept(Double.toString(intercepts[0]));
+            ind.setFitness(SRLARSJava.FITNESS_KEY, errorToFitness(error));
+            return;
+        }
+        // each target is scaled on its own best node
+        double[][] targetWeights = new double[numTargets][];
+        String[] targetIntercepts = new String[numTargets];
+        double[] errors = new double[numTargets];
+        targetWeights[0] = program.getNodeWeights(weights);
+        errors[0] = error;
+        for (int t = 1; t < numTargets; t++) {
+            weights = new double[numColumns];
+            errors[t] = scale(featureColumns, sample.targetColumns[t], numObservations, weights, intercepts, t, ws.mean);
+            targetWeights[t] = program.getNodeWeights(weights);
+        }
+        for (int t = 0; t < numTargets; t++) {
+            targetIntercepts[t] = Double.toString(intercepts[t]);
+        }
+        ind.setTargetModels(targetWeights, targetIntercepts);
+        ind.setFitness(SRLARSJava.FITNESS_KEY, errorToFitness(aggregate(errors)));
+    }
+
+    /**
+     * Keep a copy of the node columns of an individual estimated by the
+     * linear scaling screen, if the budget allows, for its Lasso fit
+     * @param ind
+     * @param featureColumns node values
+     * @param numColumns
+     * @param numObservations
+     */
+    private void keepScreenColumns(Individual ind, float[][] featureColumns, int numColumns, int numObservations) {
+        long bytes = (long) numColumns * numObservations * (Float.SIZE / 8);
+        if (screenColumnsBytes.addAndGet(bytes) > screenColumnsBudget) {
+            screenColumnsBytes.addAndGet(-bytes);
+            return;
+        }
+        float[][] columns = new float[numColumns][];
+        for (int t = 0; t < numColumns; t++) {
+            columns[t] = Arrays.copyOf(featureColumns[t], numObservations);
+        }
+        screenColumns.put(ind, columns);
+    }
+
+    /**
+     * Copy the node columns kept by the linear scaling screen for an
+     * individual, and release them
+     * @param ind
+     * @param featureColumns destination column of each node
+     * @param numColumns
+     * @param sample
+     * @return false if the columns were not kept, or if the sample is not
+     *         all the training cases: the tree must be evaluated
+     */
+    private boolean restoreScreenColumns(Individual ind, float[][] featureColumns, int numColumns, Sample sample) {
+        if (!sample.isFull || screenColumns.isEmpty()) {
+            return false;
+        }
+        float[][] columns = screenColumns.remove(ind);
+        if (columns == null) {
+            return false;
+        }
+        for (int t = 0; t < numColumns; t++) {
+            System.arraycopy(columns[t], 0, featureColumns[t], 0, sample.size);
+        }
+        screenColumnsBytes.addAndGet(-(long) numColumns * sample.size * (Float.SIZE / 8));
+        return true;
+    }
+
+    /**
+     * Least squares linear scaling of the node that fits a target best
+     * @param featureColumns node values
+     * @param targetAux target values
+     * @param numObservations
+     * @param weights receives the slope at the index of the best node
+     * @param intercepts receives the intercept at index t
+     * @param t index of the target
+     * @param MEAN_FUNC
+     * @return the error of the scaled node on the target
+     */
+    private double scale(float[][] featureColumns, double[] targetAux, int numObservations,
+            double[] weights, double[] intercepts, int t, Mean MEAN_FUNC) {
+        MEAN_FUNC.reset();
+        int numColumns = weights.length;
+        double meanY = 0;
+        for (int i = 0; i < numObservations; i++) {
+            meanY += targetAux[i];
+        }
+        meanY /= numObservations;
+        // the node whose least squares fit explains the most variance
+        int bestNode = numColumns - 1;
+        double bestExplained = -1;
+        double slope = 0;
+        double intercept = meanY;
+        for (int c = 0; c < numColumns; c++) {
+            float[] column = featureColumns[c];
+            double meanX = 0;
+            for (int i = 0; i < numObservations; i++) {
+                meanX += column[i];
+            }
+            meanX /= numObservations;
+            double sxy = 0, sxx = 0;
+            for (int i = 0; i < numObservations; i++) {
+                double dx = column[i] - meanX;
+                sxy += dx * (targetAux[i] - meanY);
+                sxx += dx * dx;
+            }
+            double explained = (sxx > 0) ? sxy * sxy / sxx : 0;
+            if (explained > bestExplained) {
+                bestNode = c;
+                bestExplained = explained;
+                slope = (sxx > 0) ? sxy / sxx : 0;
+                intercept = meanY - slope * meanX;
+            }
+        }
+        float[] best = featureColumns[bestNode];
+        for (int i = 0; i < numObservations; i++) {
+            double prediction = best[i] * slope + intercept;
+            if (this.USE_INT) {
+                prediction = Math.round(prediction);
+            }
+            MEAN_FUNC.addValue(Math.abs(targetAux[i] - prediction));
+        }
+        weights[bestNode] = slope;
+        intercepts[t] = intercept;
+        return MEAN_FUNC.getMean();
+    }
+
+    /**
+     * Evaluate the nodes of a tree on a few row ranges per thread of the pool
+     * @param program
+     * @param generated generated class of the tree, or null to use the column
+     *        evaluators of the pool threads
+     * @param sample
+     * @param featureColumns
+     */
+    private void evalOnRowRanges(final CompiledTree program, final GeneratedTree generated,
+            Sample sample, final float[][] featureColumns) {
+        final double[][] inputColumns = sample.inputColumns;
+        final float[][] floatColumns = sample.floatColumns;
+        int numObservations = sample.size;
+        int numRanges = Math.max(1, Math.min(2 * numThreads, numObservations / blockSize));
+        ArrayList<EvaluationPool.Job> jobs = new ArrayList<EvaluationPool.Job>(numRanges);
+        for (int r = 0; r < numRanges; r++) {
+            final int from = (int) ((long) numObservations * r / numRanges);
+            final int to = (int) ((long) numObservations * (r + 1) / numRanges);
+            jobs.add(new EvaluationPool.Job() {
+                @Override
+                public void run(int worker) {
+                    if (floatColumns != null) {
+                        floatEvaluator.evaluate(program, floatColumns, from, to, featureColumns);
+                    } else if (generated != null) {
+                        generated.evalIntermediate(inputColumns, from, to, featureColumns);
+                    } else {
+                        workspaces.get().evaluator.evaluate(program, inputColumns, from, to, featureColumns);
+                    }
+                }
+            });
+        }
+        pool.runAll(jobs);
+    }
+
     /**
      * Transform errors to fitness values. For errors, smaller values are
      * better, while for fitness, values closer to 1 are better. This particular
@@ -262,30 +1131,275 @@ public class SRLARSJava extends FitnessFunction {
         }
     }
 
+    /**
+     * Evaluate the population on the evaluation pool. Either the individuals
+     * are evaluated in parallel, from the most to the least expensive (the
+     * cost of an individual is estimated as the size of its tree times the
+     * number of training cases), or one at a time with the work of each
+     * evaluation split among the threads. In auto mode, the second option is
+     * chosen when the population is too small to keep the threads busy, or
+     * when the dataset is so large that a single evaluation is the unit of
+     * work worth balancing.
+     * @param pop
+     */
     @Override
     public void evalPop(Population pop) {
-        
-        ArrayList<SRJavaThread> alThreads = new ArrayList<SRJavaThread>();
-        for(int i=0;i<numThreads;i++){
-            SRJavaThread threadAux = new SRJavaThread(i, pop,numThreads);
-            alThreads.add(threadAux);
+        evalPop(pop, null);
+    }
+
+    /**
+     * Evaluate the population on a subset of the training cases. The fitness,
+     * weights and intercept of the individuals are those of the Lasso fit on
+     * the subset.
+     * @param pop
+     * @param rows indices of the training cases, in increasing order, or null
+     *        for all the training cases
+     * @see RacingEvaluation
+     */
+    public void evalPop(Population pop, int[] rows) {
+        Sample sample = getSample(rows);
+        evalSample(pop, sample);
+        // the node columns kept by the screen serve a single fit on all the
+        // training cases
+        if (sample.isFull) {
+            discardScreenColumns();
         }
-        
-        for(int i=0;i<numThreads;i++){
-            SRJavaThread threadAux = alThreads.get(i);
-            threadAux.start();
+    }
+
+    private void evalSample(Population pop, final Sample sample) {
+        int numObservations = sample.size;
+        boolean splitRows;
+        if (parallelism.equals(Parameters.Names.EVAL_PARALLELISM_ROWS)) {
+            splitRows = true;
+        } else if (parallelism.equals(Parameters.Names.EVAL_PARALLELISM_INDIVIDUALS)) {
+            splitRows = false;
+        } else {
+            splitRows = numThreads > 1
+                    && (pop.size() < 4 * numThreads || numObservations >= rowParallelMinRows);
+        }
+        if (splitRows) {
+            // the workers only run the loops of the current evaluation, which
+            // uses the workspace of the calling thread
+            Workspace ws = workspaces.get();
+            for (Individual individual : pop) {
+                if (isPastDeadline()) {
+                    skippedIndividuals.incrementAndGet();
+                    continue;
+                }
+                try {
+                    eval(individual, ws, true, sample);
+                } catch (Exception ex) {
+                    Logger.getLogger(SRLARSJava.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+            return;
+        }
+        ArrayList<EvalJob> jobs = new ArrayList<EvalJob>(pop.size());
+        for (Individual individual : pop) {
+            long cost = (long) ((Tree) individual.getGenotype()).getSize() * numObservations;
+            jobs.add(new EvalJob(individual, cost, sample, false));
+        }
+        Collections.sort(jobs);
+        // the cached subtree columns are whole columns, not tiles
+        if (tileBatch > 1 && columnMode && subtreeCache == null && sample.isFull) {
+            // batches of individuals of similar cost, most expensive first
+            ArrayList<TiledJob> batches = new ArrayList<TiledJob>();
+            for (int i = 0; i < jobs.size(); i += tileBatch) {
+                TiledJob batch = new TiledJob();
+                for (int j = i; j < Math.min(jobs.size(), i + tileBatch); j++) {
+                    batch.individuals.add(jobs.get(j).individual);
+                }
+                batches.add(batch);
+            }
+            pool.runAll(batches);
+        } else {
+            pool.runAll(jobs);
+        }
+    }
+
+    /**
+     * Estimate the fitness of the individuals of the population with the
+     * linear scaling of the best node of their trees, in parallel on the pool
+     * @param pop
+     * @see LinearScalingScreen
+     */
+    public void evalPopLinearScaling(Population pop) {
+        discardScreenColumns();
+        int numObservations = data.getNumberOfFitnessCases();
+        ArrayList<EvalJob> jobs = new ArrayList<EvalJob>(pop.size());
+        for (Individual individual : pop) {
+            long cost = (long) ((Tree) individual.getGenotype()).getSize() * numObservations;
+            jobs.add(new EvalJob(individual, cost, null, true));
+        }
+        Collections.sort(jobs);
+        pool.runAll(jobs);
+    }
+
+    /**
+     * Keep the node columns computed by
+     * {@link #evalPopLinearScaling(Population)}, up to a memory budget, so
+     * that the next evaluation on all the training cases fits the Lasso of
+     * those individuals without evaluating their tree again
+     * @param bytes memory budget, 0 to keep no column
+     */
+    public void setScreenColumnsBudget(long bytes) {
+        screenColumnsBudget = bytes;
+    }
+
+    /**
+     * Release the node columns kept by the linear scaling screen for the
+     * individuals that are not fit with the Lasso
+     * @param promoted individuals that keep their columns
+     */
+    public void retainScreenColumns(Population promoted) {
+        IdentityHashMap<Individual, Boolean> kept = new IdentityHashMap<Individual, Boolean>();
+        for (Individual ind : promoted) {
+            kept.put(ind, Boolean.TRUE);
         }
-        
-        for(int i=0;i<numThreads;i++){
-            SRJavaThread threadAux = alThreads.get(i);
-            try {
-                threadAux.join();
-            } catch (InterruptedException ex) {
-                Logger.getLogger(SRLARSJava.class.getName()).log(Level.SEVERE, null, ex);
+        synchronized (screenColumns) {
+            Iterator<Map.Entry<Individual, float[][]>> it = screenColumns.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Individual, float[][]> entry = it.next();
+                if (!kept.containsKey(entry.getKey())) {
+                    float[][] columns = entry.getValue();
+                    screenColumnsBytes.addAndGet(-(long) columns.length * columns[0].length * (Float.SIZE / 8));
+                    it.remove();
+                }
             }
         }
-        
+    }
+
+    private void discardScreenColumns() {
+        screenColumns.clear();
+        screenColumnsBytes.set(0);
+    }
+
+    /**
+     * Stop evaluating the populations at a deadline: the evaluations running
+     * at the deadline complete, but the individuals whose evaluation has not
+     * started are skipped. They keep the fitness they had, if any, so the
+     * caller must discard a population evaluated past the deadline.
+     * @param aDeadline time in milliseconds, as given by
+     *        {@link System#currentTimeMillis()}
+     */
+    public void setDeadline(long aDeadline) {
+        deadline = aDeadline;
+    }
+
+    /**
+     * @return true if the deadline has passed, and the individuals are no
+     *         longer evaluated
+     */
+    public boolean isPastDeadline() {
+        return System.currentTimeMillis() >= deadline;
+    }
 
+    /**
+     * @return the number of individuals skipped at the deadline since the
+     *         last generation report
+     */
+    public long getSkippedIndividuals() {
+        return skippedIndividuals.get();
+    }
+
+    /**
+     * Stop the evaluation threads. The fitness function can no longer
+     * evaluate populations.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * @return the busy and idle time of the evaluation threads and, if they
+     *         are enabled, the hits and misses of the subtree cache, the trees
+     *         screened out, the nodes saved by sharing subtrees and the
+     *         individuals skipped at the deadline in the last generation
+     */
+    @Override
+    public String getGenerationReport() {
+        String report = pool.getReport();
+        if (classCache != null) {
+            report += "\n" + classCache.getReport();
+        }
+        if (subtreeCache != null) {
+            report += "\n" + subtreeCache.getReport();
+        }
+        if (intervalScreen != null) {
+            long trees = screenedTrees.getAndSet(0);
+            long nonFinite = screenedNonFinite.getAndSet(0);
+            long constant = screenedConstant.getAndSet(0);
+            report += String.format("\nInterval screen: %d of %d trees given the worst fitness (%d non-finite, %d constant)",
+                    nonFinite + constant, trees, nonFinite, constant);
+        }
+        if (shareSubtrees) {
+            long nodes = compiledNodes.getAndSet(0);
+            long instructions = compiledInstructions.getAndSet(0);
+            report += String.format("\nShared subtrees: %d nodes evaluated as %d instructions (%.1f%% fewer Lasso columns)",
+                    nodes, instructions, (nodes == 0) ? 0 : 100.0 * (nodes - instructions) / nodes);
+        }
+        if (warmStart) {
+            long fits = lassoFits.getAndSet(0);
+            long passes = lassoPasses.getAndSet(0);
+            report += String.format("\nWarm start: %d of %d Lasso fits warm started, %d restarted cold, %.1f passes per fit",
+                    warmStartedFits.getAndSet(0), fits, coldRestarts.getAndSet(0), (fits == 0) ? 0 : (double) passes / fits);
+        }
+        long skipped = skippedIndividuals.getAndSet(0);
+        if (skipped > 0) {
+            report += String.format("\nDeadline: %d individuals not evaluated", skipped);
+        }
+        return report;
+    }
+
+    /**
+     * @return the number of training cases
+     */
+    public int getNumberOfFitnessCases() {
+        return data.getNumberOfFitnessCases();
+    }
+
+    /**
+     * Training cases used in an evaluation: all of them, or a copy of a subset
+     * @param rows indices of the training cases, or null for all of them
+     * @return
+     */
+    private Sample getSample(int[] rows) {
+        if (rows == null) {
+            return fullSample;
+        }
+        double[][] targets = new double[numTargets][rows.length];
+        for (int t = 0; t < numTargets; t++) {
+            double[] allTargets = data.getTargetValues(t);
+            for (int i = 0; i < rows.length; i++) {
+                targets[t][i] = allTargets[rows[i]];
+            }
+        }
+        if (floatEvaluator != null) {
+            float[][] allColumns = fullSample.floatColumns;
+            float[][] columns = new float[allColumns.length][rows.length];
+            for (int f = 0; f < allColumns.length; f++) {
+                for (int i = 0; i < rows.length; i++) {
+                    columns[f][i] = allColumns[f][rows[i]];
+                }
+            }
+            return new Sample(columns, targets, false);
+        }
+        if (columnMode) {
+            double[][] allColumns = data.getInputColumns();
+            double[][] columns = new double[allColumns.length][rows.length];
+            for (int f = 0; f < allColumns.length; f++) {
+                for (int i = 0; i < rows.length; i++) {
+                    columns[f][i] = allColumns[f][rows[i]];
+                }
+            }
+            return new Sample(columns, null, targets, false);
+        }
+        double[][] allRows = data.getInputValues();
+        double[][] inputRows = new double[rows.length][];
+        for (int i = 0; i < rows.length; i++) {
+            inputRows[i] = allRows[rows[i]];
+        }
+        return new Sample(null, inputRows, targets, false);
     }
 
     /**
@@ -337,44 +1451,278 @@ public class SRLARSJava extends FitnessFunction {
     }
     
     /**
-     * Auxiliary thread class to perform parallel evaluation of the population
-     * Each thread evaluates a subset of the populaiton
+     * Buffers of the evaluations run by one thread: the column evaluator, the
+     * Lasso fit generator and its feature columns, and the scratch arrays of
+     * the predictions and of the row-wise evaluation. They grow to the largest
+     * tree and sample seen, and are reused across individuals and
+     * generations, so that steady-state evaluations only allocate their
+     * results.
      */
-    public class SRJavaThread extends Thread{
-        private int indexThread, totalThreads;
-        private Population pop;
-        
+    private class Workspace {
+        private final ColumnEvaluator evaluator = new ColumnEvaluator(blockSize, useKernels);
+        private final LassoFitGenerator fitGenerator = newFitGenerator();
+        // fit generators of the other individuals of a tiled batch
+        private final ArrayList<LassoFitGenerator> batchGenerators = new ArrayList<LassoFitGenerator>();
+        private final Mean mean = getMeanFromP(pow);
+        // feature columns of each individual of a batch
+        private float[][][] featureColumns = new float[0][][];
+        private double[] interVals = new double[0];
+        private float[] rowValues = new float[0];
+        private double[] predictions = new double[0];
+        // hash of the predictions of the current evaluation
+        private long predictionHash;
+        // fits of the folds of the cross-validation, and the node columns
+        // they share
+        private final ArrayList<FoldJob> foldJobs = new ArrayList<FoldJob>();
+        private float[][] foldColumns = new float[0][];
+
         /**
-         * Constructor of the thread class
-         * @param anIndex
-         * @param aPop
-         * @param aTotalThreads 
+         * @param b index of an individual in a tiled batch
+         * @return the fit generator of that individual
          */
-        public SRJavaThread(int anIndex, Population aPop,int aTotalThreads){
-            indexThread = anIndex;
-            pop = aPop;
-            totalThreads = aTotalThreads;
+        LassoFitGenerator getBatchGenerator(int b) {
+            if (b == 0) {
+                return fitGenerator;
+            }
+            while (batchGenerators.size() < b) {
+                batchGenerators.add(newFitGenerator());
+            }
+            return batchGenerators.get(b - 1);
         }
 
-        
         /**
-         * Each thread evaluates a subset of the population.
-         * The subset is selected with the indices of the thread and that of individuals
+         * @param generator fit generator initialized with at least numColumns
+         *        features
+         * @param b index of the individual in a batch, 0 outside of batches
+         * @param numColumns
+         * @return the feature columns of the fit generator
          */
+        float[][] getFeatureColumns(LassoFitGenerator generator, int b, int numColumns) {
+            if (featureColumns.length <= b) {
+                featureColumns = Arrays.copyOf(featureColumns, b + 1);
+            }
+            if (featureColumns[b] == null || featureColumns[b].length < numColumns) {
+                featureColumns[b] = new float[numColumns][];
+            }
+            for (int t = 0; t < numColumns; t++) {
+                featureColumns[b][t] = generator.getFeatureValues(t);
+            }
+            return featureColumns[b];
+        }
+
+        double[] getInterVals(int numColumns) {
+            if (interVals.length < numColumns) {
+                interVals = new double[numColumns];
+            }
+            return interVals;
+        }
+
+        float[] getRowValues(int numColumns) {
+            if (rowValues.length < numColumns) {
+                rowValues = new float[numColumns];
+            }
+            return rowValues;
+        }
+
+        /**
+         * @param generator fit generator initialized with at least numColumns
+         *        features
+         * @param numColumns
+         * @return the feature columns of the fit generator, for the folds
+         */
+        float[][] getFoldColumns(LassoFitGenerator generator, int numColumns) {
+            if (foldColumns.length < numColumns) {
+                foldColumns = new float[numColumns][];
+            }
+            for (int t = 0; t < numColumns; t++) {
+                foldColumns[t] = generator.getFeatureValues(t);
+            }
+            return foldColumns;
+        }
+
+        /**
+         * @param numFolds
+         * @return one job per fold
+         */
+        List<FoldJob> getFoldJobs(int numFolds) {
+            while (foldJobs.size() < numFolds) {
+                foldJobs.add(new FoldJob(foldJobs.size()));
+            }
+            return foldJobs.subList(0, numFolds);
+        }
+
+        /**
+         * @return an array of at least numObservations zeros
+         */
+        double[] getPredictions(int numObservations) {
+            if (predictions.length < numObservations) {
+                predictions = new double[numObservations];
+            } else {
+                Arrays.fill(predictions, 0, numObservations, 0.0);
+            }
+            return predictions;
+        }
+    }
+
+    /**
+     * Input and target values of the training cases of an evaluation. Only the
+     * input layout of the evaluation mode is set: columns in column mode, rows
+     * in row mode, float columns in float32 precision.
+     */
+    private static class Sample {
+        private final double[][] inputColumns;
+        private final double[][] inputRows;
+        private final float[][] floatColumns;
+        // values of every target, and of the first one
+        private final double[][] targetColumns;
+        private final double[] targets;
+        private final int size;
+        // all the training cases, in their original order
+        private final boolean isFull;
+        // mean of each target, as computed by the Lasso fit in float
+        private final double[] targetMeans;
+        private final double targetMean;
+
+        Sample(float[][] someFloatColumns, double[][] someTargetColumns, boolean full) {
+            this(null, null, someFloatColumns, someTargetColumns, full);
+        }
+
+        Sample(double[][] someInputColumns, double[][] someInputRows, double[][] someTargetColumns, boolean full) {
+            this(someInputColumns, someInputRows, null, someTargetColumns, full);
+        }
+
+        private Sample(double[][] someInputColumns, double[][] someInputRows, float[][] someFloatColumns,
+                double[][] someTargetColumns, boolean full) {
+            inputColumns = someInputColumns;
+            inputRows = someInputRows;
+            floatColumns = someFloatColumns;
+            targetColumns = someTargetColumns;
+            targets = someTargetColumns[0];
+            size = targets.length;
+            isFull = full;
+            targetMeans = new double[targetColumns.length];
+            for (int t = 0; t < targetColumns.length; t++) {
+                double sum = 0;
+                for (double target : targetColumns[t]) {
+                    sum += (float) target;
+                }
+                targetMeans[t] = (float) (sum / size);
+            }
+            targetMean = targetMeans[0];
+        }
+    }
+
+    /**
+     * Lasso fit on the training rows of one fold of the cross-validation, and
+     * its error on the held-out rows, for each target. Both are read from the
+     * node columns of all the training cases.
+     */
+    private class FoldJob implements EvaluationPool.Job {
+        private final int fold;
+        private final LassoFitGenerator fitGenerator = newFitGenerator();
+        private final Mean mean = getMeanFromP(pow);
+        private float[][] columns;
+        private int numColumns;
+        private double[] weights = new double[0];
+        private double[] predictions;
+        private final double[] errors = new double[numTargets];
+
+        FoldJob(int aFold) {
+            fold = aFold;
+            predictions = new double[foldTestRows[aFold].length];
+        }
+
         @Override
-        public void run(){
-            int indexIndi = 0;
-            for (Individual individual : pop) {
-                if(indexIndi%totalThreads==indexThread){
-                    try {
-                        eval(individual);
-                    } catch (Exception ex) {
-                        Logger.getLogger(SRLARSJava.class.getName()).log(Level.SEVERE, null, ex);
+        public void run(int worker) throws Exception {
+            int[] testRows = foldTestRows[fold];
+            if (weights.length < numColumns) {
+                weights = new double[numColumns];
+            }
+            fitGenerator.initView(columns, numColumns, foldTrainRows[fold]);
+            for (int t = 0; t < numTargets; t++) {
+                fitGenerator.setTargets(foldTargets[fold][t]);
+                LassoFit fit = (t == 0) ? fitGenerator.fit(-1) : fitGenerator.refit(-1);
+                int indexWeights = pickModel(fit);
+                fit.getWeights(indexWeights, weights);
+                Arrays.fill(predictions, fit.intercepts[indexWeights]);
+                for (int j = 0; j < numColumns; j++) {
+                    float[] column = columns[j];
+                    double w = weights[j];
+                    if (w == 0) {
+                        continue;
+                    }
+                    for (int i = 0; i < testRows.length; i++) {
+                        predictions[i] += column[testRows[i]] * w;
                     }
                 }
-                indexIndi++;
+                double[] targetAux = data.getTargetValues(t);
+                mean.reset();
+                for (int i = 0; i < testRows.length; i++) {
+                    double prediction = predictions[i];
+                    if (USE_INT) {
+                        prediction = Math.round(prediction);
+                    }
+                    mean.addValue(Math.abs(targetAux[testRows[i]] - prediction));
+                }
+                errors[t] = mean.getMean();
             }
         }
-     }
-        
+    }
+
+    /**
+     * Tiled evaluation of a batch of individuals, run by a worker of the pool
+     * with the workspace of that worker
+     */
+    private class TiledJob implements EvaluationPool.Job {
+        private final List<Individual> individuals = new ArrayList<Individual>();
+
+        @Override
+        public void run(int worker) throws Exception {
+            if (isPastDeadline()) {
+                skippedIndividuals.addAndGet(individuals.size());
+                return;
+            }
+            evalTiled(individuals, workspaces.get());
+        }
+    }
+
+    /**
+     * Evaluation of one individual, run by a worker of the pool with the
+     * workspace of that worker: either the Lasso fit on a sample of
+     * the training cases, or the linear scaling estimate
+     */
+    private class EvalJob implements EvaluationPool.Job, Comparable<EvalJob> {
+        private final Individual individual;
+        private final long cost;
+        private final Sample sample;
+        private final boolean linearScaling;
+
+        EvalJob(Individual anIndividual, long aCost, Sample aSample, boolean isLinearScaling) {
+            individual = anIndividual;
+            cost = aCost;
+            sample = aSample;
+            linearScaling = isLinearScaling;
+        }
+
+        @Override
+        public void run(int worker) throws Exception {
+            if (isPastDeadline()) {
+                skippedIndividuals.incrementAndGet();
+                return;
+            }
+            if (linearScaling) {
+                evalLinearScaling(individual, workspaces.get());
+            } else {
+                eval(individual, workspaces.get(), false, sample);
+            }
+        }
+
+        /**
+         * most expensive first
+         */
+        @Override
+        public int compareTo(EvalJob other) {
+            return (cost > other.cost) ? -1 : ((cost < other.cost) ? 1 : 0);
+        }
+    }
 }
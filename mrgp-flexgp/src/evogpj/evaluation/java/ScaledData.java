@@ -43,14 +43,32 @@ public abstract class ScaledData implements DataJava {
 	 */
         protected int numberOfFeatures;
         /**
-	 * the datapoints (input values) to evaluate individual's fitness on.
+	 * the datapoints (input values) to evaluate individual's fitness on, or
+	 * null if they are stored in single precision; then they are built on
+	 * first use from floatColumns
 	 */
-	protected final double[][] fitnessCases;
+	protected double[][] fitnessCases;
+	/**
+	 * column-major copy of fitnessCases, built on first use
+	 */
+	private double[][] featureColumns;
+	/**
+	 * column-major float copy of the input values, built on first use unless
+	 * the input values are stored in single precision
+	 */
+	private float[][] floatColumns;
+	private final boolean float32;
 	/**
 	 * the datapoints (output values) to compare individual's output against to
 	 * determine their fitness
 	 */
 	protected final double[] target;
+	/**
+	 * the values of every target, the first one being target
+	 */
+	protected final double[][] targets;
+	private final double[] targetMins;
+	private final double[] targetMaxs;
 	/**
 	 * In addition, keep a copy of the target which is scaled to be in the range
 	 * [0, 1] This is from Vladislavleva, to "allow the GP to focus on finding
@@ -81,10 +99,44 @@ public abstract class ScaledData implements DataJava {
          * @param aNumberOfFeatures 
          */
 	public ScaledData(int aNumberOfFitnessCases, int aNumberOfFeatures) {
+                this(aNumberOfFitnessCases, aNumberOfFeatures, 1);
+        }
+
+        /**
+         * Constructor for data with several targets
+         * @param aNumberOfFitnessCases
+         * @param aNumberOfFeatures 
+         * @param aNumberOfTargets 
+         */
+	public ScaledData(int aNumberOfFitnessCases, int aNumberOfFeatures, int aNumberOfTargets) {
+                this(aNumberOfFitnessCases, aNumberOfFeatures, aNumberOfTargets, false);
+        }
+
+        /**
+         * Constructor for data with several targets, whose input values may be
+         * stored in single precision, as float columns only
+         * @param aNumberOfFitnessCases
+         * @param aNumberOfFeatures 
+         * @param aNumberOfTargets 
+         * @param isFloat32 
+         */
+	public ScaledData(int aNumberOfFitnessCases, int aNumberOfFeatures, int aNumberOfTargets, boolean isFloat32) {
                 numberOfFitnessCases = aNumberOfFitnessCases;
                 numberOfFeatures = aNumberOfFeatures;
-		fitnessCases = new double[numberOfFitnessCases][numberOfFeatures];
-		this.target = new double[numberOfFitnessCases];
+                float32 = isFloat32;
+                if (float32) {
+                        floatColumns = new float[numberOfFeatures][numberOfFitnessCases];
+                } else {
+                        fitnessCases = new double[numberOfFitnessCases][numberOfFeatures];
+                }
+		this.targets = new double[aNumberOfTargets][numberOfFitnessCases];
+		this.target = targets[0];
+                targetMins = new double[aNumberOfTargets];
+                targetMaxs = new double[aNumberOfTargets];
+                for(int t=0;t<aNumberOfTargets;t++){
+                    targetMins[t] = Double.MAX_VALUE;
+                    targetMaxs[t] = - Double.MAX_VALUE;
+                }
 		this.scaled_target = new double[numberOfFitnessCases];
 		target_min = null;
 		target_max = null;
@@ -99,6 +151,26 @@ public abstract class ScaledData implements DataJava {
                 
 	}
 
+        /**
+         * Set an input value, rounded to float if the input values are stored
+         * in single precision, and check if it is the min/max seen so far for
+         * its feature
+         * @param index training case
+         * @param feature
+         * @param val 
+         */
+	protected void setInputValue(int index, int feature, double val) {
+                double stored = val;
+                if (float32) {
+                        floatColumns[feature][index] = (float) val;
+                        stored = floatColumns[feature][index];
+                } else {
+                        fitnessCases[index][feature] = val;
+                }
+                if (stored < minFeatures[feature]) minFeatures[feature] = stored;
+                if (stored > maxFeatures[feature]) maxFeatures[feature] = stored;
+	}
+
         /**
          * Add a target value, check if is the min/max seen so far
          * @param val
@@ -114,6 +186,20 @@ public abstract class ScaledData implements DataJava {
 		if (target_max == null || val > target_max) {
 			target_max = val;
 		}
+                addTargetValue(0, val, index);
+	}
+
+        /**
+         * Add a value of a target, check if is the min/max seen so far for
+         * that target
+         * @param t index of the target
+         * @param val
+         * @param index 
+         */
+	protected void addTargetValue(int t, double val, int index) {
+                targets[t][index] = val;
+                if (val < targetMins[t]) targetMins[t] = val;
+                if (val > targetMaxs[t]) targetMaxs[t] = val;
 	}
 
         @Override
@@ -144,7 +230,7 @@ public abstract class ScaledData implements DataJava {
             for(int i=0;i<numberOfFitnessCases;i++){
                 for(int j=0;j<numberOfFeatures;j++){
                     double range = maxFeatures[j] - minFeatures[j];
-                    Double val = (fitnessCases[i][j] - minFeatures[j]) / range;
+                    Double val = (getInputValues()[i][j] - minFeatures[j]) / range;
                     printWriter.write(val + ",");
                 }
                 double targetValue = this.scaled_target[i];
@@ -165,10 +251,68 @@ public abstract class ScaledData implements DataJava {
 
     
     @Override
-    public double[][] getInputValues(){
+    public synchronized double[][] getInputValues(){
+        if (fitnessCases == null) {
+            fitnessCases = new double[numberOfFitnessCases][numberOfFeatures];
+            for(int i=0;i<numberOfFitnessCases;i++){
+                for(int j=0;j<numberOfFeatures;j++){
+                    fitnessCases[i][j] = floatColumns[j][i];
+                }
+            }
+        }
         return fitnessCases;
     }
 
+    @Override
+    public synchronized double[][] getInputColumns(){
+        if (featureColumns == null) {
+            double[][] rows = getInputValues();
+            featureColumns = new double[numberOfFeatures][numberOfFitnessCases];
+            for(int i=0;i<numberOfFitnessCases;i++){
+                for(int j=0;j<numberOfFeatures;j++){
+                    featureColumns[j][i] = rows[i][j];
+                }
+            }
+        }
+        return featureColumns;
+    }
+
+    @Override
+    public synchronized float[][] getInputColumnsFloat(){
+        if (floatColumns == null) {
+            floatColumns = new float[numberOfFeatures][numberOfFitnessCases];
+            for(int i=0;i<numberOfFitnessCases;i++){
+                for(int j=0;j<numberOfFeatures;j++){
+                    floatColumns[j][i] = (float) fitnessCases[i][j];
+                }
+            }
+        }
+        return floatColumns;
+    }
+
+    @Override
+    public boolean isFloat32(){
+        return float32;
+    }
+
+    @Override
+    public long getFingerprint(){
+        long h = 1125899906842597L;
+        h = 31 * h + numberOfFitnessCases;
+        h = 31 * h + numberOfFeatures;
+        for(int i=0;i<numberOfFitnessCases;i++){
+            for(int j=0;j<numberOfFeatures;j++){
+                // the float values widen exactly to double
+                double value = float32 ? floatColumns[j][i] : fitnessCases[i][j];
+                h = 31 * h + Double.doubleToLongBits(value);
+            }
+            for(int t=0;t<targets.length;t++){
+                h = 31 * h + Double.doubleToLongBits(targets[t][i]);
+            }
+        }
+        return h;
+    }
+
     @Override
     public double[] getTargetValues(){
         return target;
@@ -181,6 +325,26 @@ public abstract class ScaledData implements DataJava {
         
 
 
+    @Override
+    public int getNumberOfTargets(){
+        return targets.length;
+    }
+
+    @Override
+    public double[] getTargetValues(int t){
+        return targets[t];
+    }
+
+    @Override
+    public Double getTargetMin(int t) {
+        return targetMins[t];
+    }
+
+    @Override
+    public Double getTargetMax(int t) {
+        return targetMaxs[t];
+    }
+
     @Override
     public Double getTargetMax() {
         return target_max;
@@ -206,6 +370,22 @@ public abstract class ScaledData implements DataJava {
     public int getNumberOfFeatures() {
         return numberOfFeatures;
     }
+
+    /**
+     * @return the minFeatures
+     */
+    @Override
+    public double[] getMinFeatures() {
+        return minFeatures;
+    }
+
+    /**
+     * @return the maxFeatures
+     */
+    @Override
+    public double[] getMaxFeatures() {
+        return maxFeatures;
+    }
         
         
 }
\ No newline at end of file
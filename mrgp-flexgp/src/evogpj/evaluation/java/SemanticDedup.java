@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+import evogpj.evaluation.FitnessComparisonStandardizer;
+import evogpj.evaluation.FitnessFunction;
+import evogpj.gp.Individual;
+import evogpj.gp.Population;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Semantic deduplication of the children of a generation. Syntactically
+ * different trees often compute the same model; such children crowd the
+ * population without adding to it. The models are compared by the hash of
+ * their predictions on all the training cases, computed by the evaluation
+ * (see {@link Individual#getPredictionHash()}): a child is a duplicate if an
+ * individual of the population, or a previous child, has the same hash and
+ * is at least as good on every objective. A child that improves on some
+ * objective, for instance a smaller tree computing the same model, is kept.
+ * <p>
+ * Children without a hash, whose fitness was only estimated, are never
+ * duplicates.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class SemanticDedup {
+
+    // remove the duplicates, or only count them
+    private final boolean remove;
+    // statistics since the last report
+    private long children;
+    private long duplicates;
+    private long replaced;
+
+    /**
+     * @param aRemove whether to remove the duplicates, or only report them
+     */
+    public SemanticDedup(boolean aRemove) {
+        remove = aRemove;
+    }
+
+    /**
+     * @param members individuals of the population
+     * @param kept children already kept
+     * @param candidates evaluated children
+     * @param fitnessFunctions
+     * @return the candidates that are not duplicates of a member, a kept
+     *         child or a previous candidate, in their order; all the
+     *         candidates if the duplicates are only reported
+     */
+    public Population filter(Population members, Population kept, Population candidates,
+            LinkedHashMap<String, FitnessFunction> fitnessFunctions) {
+        HashMap<Long, List<Individual>> index = new HashMap<Long, List<Individual>>();
+        add(index, members);
+        add(index, kept);
+        Population unique = new Population();
+        for (Individual child : candidates) {
+            children++;
+            Long hash = child.getPredictionHash();
+            boolean duplicate = false;
+            if (hash != null) {
+                List<Individual> same = index.get(hash);
+                if (same != null) {
+                    for (Individual ind : same) {
+                        if (isAtLeastAsGood(ind, child, fitnessFunctions)) {
+                            duplicate = true;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (duplicate) {
+                duplicates++;
+                if (remove) {
+                    continue;
+                }
+            } else if (hash != null) {
+                add(index, child);
+            }
+            unique.add(child);
+        }
+        return unique;
+    }
+
+    /**
+     * Record the number of fresh children bred to replace duplicates
+     * @param n
+     */
+    public void countReplaced(int n) {
+        replaced += n;
+    }
+
+    private static void add(HashMap<Long, List<Individual>> index, Population pop) {
+        for (Individual ind : pop) {
+            if (ind.getPredictionHash() != null) {
+                add(index, ind);
+            }
+        }
+    }
+
+    private static void add(HashMap<Long, List<Individual>> index, Individual ind) {
+        List<Individual> same = index.get(ind.getPredictionHash());
+        if (same == null) {
+            same = new ArrayList<Individual>(1);
+            index.put(ind.getPredictionHash(), same);
+        }
+        same.add(ind);
+    }
+
+    private static boolean isAtLeastAsGood(Individual a, Individual b, LinkedHashMap<String, FitnessFunction> fitnessFunctions) {
+        for (String name : fitnessFunctions.keySet()) {
+            Double af = FitnessComparisonStandardizer.getFitnessForMinimization(a, name, fitnessFunctions);
+            Double bf = FitnessComparisonStandardizer.getFitnessForMinimization(b, name, fitnessFunctions);
+            if (!(af <= bf)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Summarize the duplicates found since the previous report, and reset the
+     * statistics
+     * @return report for the generation log
+     */
+    public String getReport() {
+        String report = String.format("Semantic dedup: %d of %d children duplicate the predictions of an individual (%.1f%%), %d %s, %d replaced",
+                duplicates, children, (children == 0) ? 0 : 100.0 * duplicates / children,
+                duplicates, remove ? "removed" : "kept", replaced);
+        children = 0;
+        duplicates = 0;
+        replaced = 0;
+        return report;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the output columns of the subtrees evaluated on the training data,
+ * shared by all the evaluation threads. Crossover and mutation mostly
+ * recombine subtrees of the parents, so most of the nodes of a child can be
+ * read from the cache instead of being computed again.
+ * <p>
+ * Columns are keyed by the canonical prefix string of the subtree (see
+ * {@link CompiledTree#getSubtreeKeys()}). The memory used by the columns and
+ * their keys is bounded by a byte budget; the least recently used columns are
+ * evicted first. Cached columns must not be modified.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class SubtreeCache {
+
+    // rough overhead of a map entry, its key and the array headers
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long budget;
+    private long usedBytes;
+    private final LinkedHashMap<String, double[]> columns;
+    // statistics since the last report
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param aBudget maximum number of bytes used by the cached columns
+     */
+    public SubtreeCache(long aBudget) {
+        budget = aBudget;
+        usedBytes = 0;
+        columns = new LinkedHashMap<String, double[]>(1024, 0.75f, true);
+    }
+
+    /**
+     * @param key
+     * @return the cached column of the subtree, or null
+     */
+    public synchronized double[] get(String key) {
+        double[] column = columns.get(key);
+        if (column == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return column;
+    }
+
+    /**
+     * Add the column of a subtree, evicting the least recently used columns if
+     * the budget is exceeded
+     * @param key
+     * @param column
+     */
+    public synchronized void put(String key, double[] column) {
+        long bytes = sizeOf(key, column);
+        if (bytes > budget || columns.containsKey(key)) {
+            return;
+        }
+        columns.put(key, column);
+        usedBytes += bytes;
+        Iterator<Map.Entry<String, double[]>> it = columns.entrySet().iterator();
+        while (usedBytes > budget && it.hasNext()) {
+            Map.Entry<String, double[]> eldest = it.next();
+            usedBytes -= sizeOf(eldest.getKey(), eldest.getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static long sizeOf(String key, double[] column) {
+        return 8L * column.length + 2L * key.length() + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * Summarize the use of the cache since the previous report, and reset the
+     * statistics
+     * @return report for the generation log
+     */
+    public synchronized String getReport() {
+        long lookups = hits + misses;
+        double hitRate = (lookups == 0) ? 0 : 100.0 * hits / lookups;
+        String report = String.format("Subtree cache: %d hits, %d misses (%.1f%% hit rate), %d evictions, %d columns, %.1f MB",
+                hits, misses, hitRate, evictions, columns.size(), usedBytes / (1024.0 * 1024.0));
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        return report;
+    }
+}
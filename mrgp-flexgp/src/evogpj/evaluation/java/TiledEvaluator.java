@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+/**
+ * Column-wise evaluation of a batch of trees, tile by tile. Evaluating the
+ * trees one after the other streams the input columns they read from memory
+ * once per tree. Instead, the rows are split into tiles small enough for the
+ * input columns of a tile to stay in the L2 cache, and every tree of the batch
+ * is evaluated on a tile before moving to the next one: the input columns are
+ * read from memory once per batch.
+ * <p>
+ * The values of the nodes do not depend on the tiles, so the result is the
+ * same as evaluating the trees one at a time.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class TiledEvaluator {
+
+    // cache budget of the input columns of a tile, in bytes
+    private static final int TILE_BYTES = 256 * 1024;
+
+    private final int tileRows;
+
+    /**
+     * @param aTileRows number of rows per tile
+     */
+    public TiledEvaluator(int aTileRows) {
+        tileRows = aTileRows;
+    }
+
+    /**
+     * Number of rows per tile whose input columns fit in the cache budget
+     * @param numFeatures number of input columns
+     * @param blockSize block size of the column evaluator; the tiles are a
+     *        multiple of it
+     * @return
+     */
+    public static int getDefaultTileRows(int numFeatures, int blockSize) {
+        int rows = TILE_BYTES / (8 * Math.max(1, numFeatures));
+        return Math.max(1, rows / blockSize) * blockSize;
+    }
+
+    /**
+     * @return the number of rows per tile
+     */
+    public int getTileRows() {
+        return tileRows;
+    }
+
+    /**
+     * Evaluate every node of the programs on the rows from (inclusive) to to
+     * (exclusive), tile by tile
+     *
+     * @param programs compiled trees of the batch
+     * @param generated generated class of each program, or null to evaluate
+     *        it with the column evaluator
+     * @param evaluator
+     * @param columns input data, one array per feature
+     * @param from first row
+     * @param to last row, exclusive
+     * @param dest for each program, one column per instruction receiving its
+     *        values
+     */
+    public void evaluate(CompiledTree[] programs, GeneratedTree[] generated, ColumnEvaluator evaluator,
+            double[][] columns, int from, int to, float[][][] dest) {
+        for (int start = from; start < to; start += tileRows) {
+            int end = Math.min(to, start + tileRows);
+            for (int b = 0; b < programs.length; b++) {
+                if (generated != null && generated[b] != null) {
+                    generated[b].evalIntermediate(columns, start, end, dest[b]);
+                } else {
+                    evaluator.evaluate(programs[b], columns, start, end, dest[b]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluate every node of the programs in single precision on the rows
+     * from (inclusive) to to (exclusive), tile by tile
+     *
+     * @param programs compiled trees of the batch
+     * @param evaluator
+     * @param columns input data, one float array per feature
+     * @param from first row
+     * @param to last row, exclusive
+     * @param dest for each program, one column per instruction receiving its
+     *        values
+     */
+    public void evaluate(CompiledTree[] programs, FloatColumnEvaluator evaluator,
+            float[][] columns, int from, int to, float[][][] dest) {
+        for (int start = from; start < to; start += tileRows) {
+            int end = Math.min(to, start + tileRows);
+            for (int b = 0; b < programs.length; b++) {
+                evaluator.evaluate(programs[b], columns, start, end, dest[b]);
+            }
+        }
+    }
+}
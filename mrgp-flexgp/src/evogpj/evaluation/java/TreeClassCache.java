@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+import evogpj.genotype.Tree;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the classes generated for the trees of the
+ * population, keyed by the prefix string of the tree. Individuals that survive
+ * several generations, and the copies made by reproduction, are compiled only
+ * once. Trees smaller than a minimum size are not worth the cost of generating
+ * a class, and trees larger than a maximum size would not be compiled by the
+ * JIT: for both the interpreter should be used instead.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class TreeClassCache {
+
+    private final int minSize;
+    private final int maxSize;
+    // generated classes; null if the tree could not be generated
+    private final LinkedHashMap<String, GeneratedTree> classes;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param aCapacity maximum number of classes kept
+     * @param aMinSize trees with fewer nodes are not generated
+     * @param aMaxSize trees with more nodes are not generated
+     */
+    public TreeClassCache(final int aCapacity, int aMinSize, int aMaxSize) {
+        minSize = aMinSize;
+        maxSize = aMaxSize;
+        classes = new LinkedHashMap<String, GeneratedTree>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GeneratedTree> eldest) {
+                return size() > aCapacity;
+            }
+        };
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Get the generated class of a tree, generating it if needed
+     * @param t
+     * @param program compiled program of t
+     * @return the generated class, or null if the interpreter should be used
+     */
+    public GeneratedTree get(Tree t, CompiledTree program) {
+        int size = program.getSize();
+        if (size < minSize || size > maxSize) {
+            return null;
+        }
+        String key = t.toPrefixString();
+        synchronized (this) {
+            if (classes.containsKey(key)) {
+                hits++;
+                return classes.get(key);
+            }
+            misses++;
+        }
+        // generating outside of the lock: two threads may generate the same
+        // tree, in which case the second class simply replaces the first
+        GeneratedTree generated = TreeClassGenerator.generate(program);
+        synchronized (this) {
+            classes.put(key, generated);
+        }
+        return generated;
+    }
+
+    /**
+     * @return number of lookups answered by the cache since the last report
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of classes generated since the last report
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Summarize the use of the cache since the previous report, and reset the
+     * statistics
+     * @return report for the generation log
+     */
+    public synchronized String getReport() {
+        long lookups = hits + misses;
+        double hitRate = (lookups == 0) ? 0 : 100.0 * hits / lookups;
+        String report = String.format("Generated classes: %d hits, %d classes generated (%.1f%% hit rate), %d classes kept",
+                hits, misses, hitRate, classes.size());
+        hits = 0;
+        misses = 0;
+        return report;
+    }
+}
@@ -0,0 +1,418 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+
+/**
+ * Translate a {@link CompiledTree} into the bytecode of a {@link GeneratedTree}
+ * subclass and load it. The generated method loops over the rows and, for each
+ * row, runs one straight-line sequence of instructions per node: the value of
+ * the node is kept in a local variable (so that the JIT can keep it in a
+ * register) and narrowed to float into the column of the node.
+ * <p>
+ * Classes are written in the Java 5 class-file format, which needs no stack
+ * map frames, and each class is defined by its own class loader so that it can
+ * be unloaded once it is no longer referenced.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class TreeClassGenerator {
+
+    /**
+     * Methods whose bytecode is larger than this are not compiled by the
+     * HotSpot JIT (-XX:+DontCompileHugeMethods), so they are not generated.
+     */
+    public static final int MAX_CODE_LENGTH = 8000;
+
+    private static final String SUPER_NAME = "evogpj/evaluation/java/GeneratedTree";
+    private static final String TREE_NAME = "evogpj/evaluation/java/CompiledTree";
+    private static final String MATH_NAME = "java/lang/Math";
+    private static final String CLASS_PREFIX = "evogpj.evaluation.java.generated.Tree";
+
+    // local variables of evalIntermediate
+    private static final int COLUMNS = 1;
+    private static final int START = 2;
+    private static final int END = 3;
+    private static final int DEST = 4;
+    private static final int ROW = 5;
+    private static final int FIRST_NODE = 6;
+
+    private static int classCounter = 0;
+
+    /**
+     * Generate and load the class evaluating a program
+     * @param program
+     * @return an instance of the generated class, or null if the program is
+     *         too large to be compiled by the JIT
+     */
+    public static GeneratedTree generate(CompiledTree program) {
+        String name;
+        synchronized (TreeClassGenerator.class) {
+            name = CLASS_PREFIX + (classCounter++);
+        }
+        byte[] classFile;
+        try {
+            classFile = writeClass(name.replace('.', '/'), program);
+        } catch (IOException e) {
+            // writing to a byte array does not fail
+            throw new IllegalStateException(e);
+        }
+        if (classFile == null) {
+            return null;
+        }
+        TreeClassLoader loader = new TreeClassLoader(GeneratedTree.class.getClassLoader());
+        Class<?> c = loader.define(name, classFile);
+        try {
+            return (GeneratedTree) c.getDeclaredConstructor().newInstance();
+        } catch (InstantiationException e) {
+            throw new IllegalStateException(e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] writeClass(String internalName, CompiledTree program) throws IOException {
+        ConstantPool pool = new ConstantPool();
+        byte[] code = writeEvalCode(program, pool);
+        if (code.length > MAX_CODE_LENGTH) {
+            return null;
+        }
+        int thisClass = pool.classRef(internalName);
+        int superClass = pool.classRef(SUPER_NAME);
+        int superInit = pool.methodRef(SUPER_NAME, "<init>", "()V");
+        int initName = pool.utf8("<init>");
+        int initDesc = pool.utf8("()V");
+        int evalName = pool.utf8("evalIntermediate");
+        int evalDesc = pool.utf8("([[DII[[F)V");
+        int codeName = pool.utf8("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(49);
+        pool.write(out);
+        out.writeShort(0x0031); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0); // interfaces
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+
+        // public <init>() { super(); }
+        out.writeShort(0x0001);
+        out.writeShort(initName);
+        out.writeShort(initDesc);
+        out.writeShort(1);
+        byte[] init = new byte[] {0x2a, (byte) 0xb7, (byte) (superInit >> 8), (byte) superInit, (byte) 0xb1};
+        writeCodeAttribute(out, codeName, 1, 1, init);
+
+        // public void evalIntermediate(double[][], int, int, float[][])
+        out.writeShort(0x0001);
+        out.writeShort(evalName);
+        out.writeShort(evalDesc);
+        out.writeShort(1);
+        writeCodeAttribute(out, codeName, 4, FIRST_NODE + 2 * program.getSize(), code);
+
+        out.writeShort(0); // class attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeCodeAttribute(DataOutputStream out, int codeName, int maxStack, int maxLocals,
+            byte[] code) throws IOException {
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    private static byte[] writeEvalCode(CompiledTree program, ConstantPool pool) {
+        Code c = new Code();
+        // for (int r = start; r < end; r++)
+        c.op(0x15, START); // iload
+        c.op(0x36, ROW); // istore
+        int loop = c.length();
+        c.op(0x15, ROW);
+        c.op(0x15, END);
+        int exitBranch = c.length();
+        c.u1(0xa2); // if_icmpge
+        c.u2(0);
+        for (int i = 0; i < program.getSize(); i++) {
+            int op = program.getOpcode(i);
+            if (op == CompiledTree.VAR) {
+                // columns[var][r]
+                c.op(0x19, COLUMNS); // aload
+                c.pushInt(program.getVarIndex(i));
+                c.u1(0x32); // aaload
+                c.op(0x15, ROW);
+                c.u1(0x31); // daload
+            } else {
+                c.op(0x18, slot(program.getArg1(i))); // dload
+                int a2 = program.getArg2(i);
+                if (a2 >= 0) {
+                    c.op(0x18, slot(a2));
+                }
+                writeOperation(c, op, pool);
+            }
+            c.op(0x39, slot(i)); // dstore
+            // dest[i][r] = (float) value
+            c.op(0x19, DEST);
+            c.pushInt(i);
+            c.u1(0x32);
+            c.op(0x15, ROW);
+            c.op(0x18, slot(i));
+            c.u1(0x90); // d2f
+            c.u1(0x51); // fastore
+        }
+        c.u1(0x84); // iinc
+        c.u1(ROW);
+        c.u1(1);
+        int back = c.length();
+        c.u1(0xa7); // goto
+        c.u2(loop - back);
+        int exit = c.length();
+        c.u1(0xb1); // return
+        c.patch(exitBranch + 1, exit - exitBranch);
+        return c.toByteArray();
+    }
+
+    private static void writeOperation(Code c, int op, ConstantPool pool) {
+        switch (op) {
+            case CompiledTree.PLUS: c.u1(0x63); break; // dadd
+            case CompiledTree.MINUS: c.u1(0x67); break; // dsub
+            case CompiledTree.MULTIPLY: c.u1(0x6b); break; // dmul
+            case CompiledTree.DIVIDE: c.invokeStatic(pool.methodRef(TREE_NAME, "divide", "(DD)D")); break;
+            case CompiledTree.SIN: c.invokeStatic(pool.methodRef(MATH_NAME, "sin", "(D)D")); break;
+            case CompiledTree.COS: c.invokeStatic(pool.methodRef(MATH_NAME, "cos", "(D)D")); break;
+            case CompiledTree.LOG: c.invokeStatic(pool.methodRef(TREE_NAME, "log", "(D)D")); break;
+            case CompiledTree.EXP: c.invokeStatic(pool.methodRef(MATH_NAME, "exp", "(D)D")); break;
+            case CompiledTree.SQRT:
+                c.invokeStatic(pool.methodRef(MATH_NAME, "abs", "(D)D"));
+                c.invokeStatic(pool.methodRef(MATH_NAME, "sqrt", "(D)D"));
+                break;
+            case CompiledTree.SQUARE: writePow(c, pool, 2); break;
+            case CompiledTree.CUBE: writePow(c, pool, 3); break;
+            case CompiledTree.QUART: writePow(c, pool, 4); break;
+            default: throw new IllegalArgumentException("unknown opcode " + op);
+        }
+    }
+
+    private static void writePow(Code c, ConstantPool pool, double exponent) {
+        c.u1(0x14); // ldc2_w
+        c.u2(pool.doubleConstant(exponent));
+        c.invokeStatic(pool.methodRef(MATH_NAME, "pow", "(DD)D"));
+    }
+
+    private static int slot(int node) {
+        return FIRST_NODE + 2 * node;
+    }
+
+    /**
+     * Growable bytecode buffer
+     */
+    private static class Code {
+        private byte[] buf = new byte[256];
+        private int len = 0;
+
+        int length() {
+            return len;
+        }
+
+        void u1(int b) {
+            if (len == buf.length) {
+                byte[] newBuf = new byte[2 * buf.length];
+                System.arraycopy(buf, 0, newBuf, 0, len);
+                buf = newBuf;
+            }
+            buf[len++] = (byte) b;
+        }
+
+        void u2(int v) {
+            u1(v >> 8);
+            u1(v);
+        }
+
+        void patch(int pos, int v) {
+            buf[pos] = (byte) (v >> 8);
+            buf[pos + 1] = (byte) v;
+        }
+
+        /**
+         * Instruction with a local variable index, widened when needed
+         */
+        void op(int opcode, int local) {
+            if (local > 255) {
+                u1(0xc4); // wide
+                u1(opcode);
+                u2(local);
+            } else {
+                u1(opcode);
+                u1(local);
+            }
+        }
+
+        void pushInt(int v) {
+            if (v <= 5) {
+                u1(0x03 + v); // iconst_<v>
+            } else if (v <= Byte.MAX_VALUE) {
+                u1(0x10); // bipush
+                u1(v);
+            } else {
+                u1(0x11); // sipush
+                u2(v);
+            }
+        }
+
+        void invokeStatic(int methodRef) {
+            u1(0xb8);
+            u2(methodRef);
+        }
+
+        byte[] toByteArray() {
+            byte[] code = new byte[len];
+            System.arraycopy(buf, 0, code, 0, len);
+            return code;
+        }
+    }
+
+    /**
+     * Constant pool of the class being written, without duplicate entries
+     */
+    private static class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final HashMap<String, Integer> indices = new HashMap<String, Integer>();
+        // index of the next entry; entry 0 is unused
+        private int next = 1;
+
+        int utf8(String s) {
+            Integer index = indices.get("U" + s);
+            if (index == null) {
+                index = add(1);
+                try {
+                    out.writeUTF(s);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                indices.put("U" + s, index);
+            }
+            return index;
+        }
+
+        int classRef(String internalName) {
+            Integer index = indices.get("C" + internalName);
+            if (index == null) {
+                int nameIndex = utf8(internalName);
+                index = add(7);
+                writeShort(nameIndex);
+                indices.put("C" + internalName, index);
+            }
+            return index;
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            String key = "M" + owner + "." + name + descriptor;
+            Integer index = indices.get(key);
+            if (index == null) {
+                int classIndex = classRef(owner);
+                int nameIndex = utf8(name);
+                int descIndex = utf8(descriptor);
+                int nameAndType = add(12);
+                writeShort(nameIndex);
+                writeShort(descIndex);
+                index = add(10);
+                writeShort(classIndex);
+                writeShort(nameAndType);
+                indices.put(key, index);
+            }
+            return index;
+        }
+
+        int doubleConstant(double v) {
+            String key = "D" + v;
+            Integer index = indices.get(key);
+            if (index == null) {
+                index = add(6);
+                try {
+                    out.writeDouble(v);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                // doubles take two entries
+                next++;
+                indices.put(key, index);
+            }
+            return index;
+        }
+
+        private int add(int tag) {
+            writeByte(tag);
+            return next++;
+        }
+
+        private void writeByte(int v) {
+            try {
+                out.writeByte(v);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeShort(int v) {
+            try {
+                out.writeShort(v);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void write(DataOutputStream dest) throws IOException {
+            out.flush();
+            dest.writeShort(next);
+            bytes.writeTo(dest);
+        }
+    }
+
+    /**
+     * Loader of a single generated class
+     */
+    private static class TreeClassLoader extends ClassLoader {
+
+        TreeClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package evogpj.evaluation.java;
+
+import evogpj.genotype.Tree;
+import evogpj.genotype.TreeNode;
+import evogpj.gp.GPException;
+import evogpj.gp.Individual;
+import evogpj.gp.Population;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Algebraic simplification of the trees before their evaluation. The trees
+ * are rewritten bottom-up with identities that hold for every finite value of
+ * their operands under the protected semantics of the functions (see
+ * {@link CompiledTree#divide}, {@link CompiledTree#log} and the square root of
+ * the absolute value):
+ * <ul>
+ * <li>(- A A) = 0 and (mydivide A A) = 1, the latter also when A is close to 0
+ * <li>(+ A 0), (+ 0 A), (- A 0), (* A 1), (* 1 A) and (mydivide A 1) = A
+ * <li>(* A 0) = (* 0 A) = 0, and (mydivide A c) = 1 for |c| &lt; 1e-6
+ * <li>subtrees whose operands are all constant are constant
+ * </ul>
+ * Every node of a tree is a column of the MRGP Lasso fit. These rewrites only
+ * remove nodes whose column is constant, which the intercept absorbs, or
+ * equal to another column of the tree, so the model space is kept. The
+ * language has no constant terminal, so a constant is only removed when its
+ * parent absorbs it; otherwise the subtree computing it is kept.
+ * <p>
+ * With the power rewrites enabled, (sqrt (quart A)) and (quart (sqrt A)) are
+ * also written (square A), and (square (square A)) is written (quart A). The
+ * value of the tree is the same, but the inner power is no longer one of its
+ * columns: this is not an identity of the MRGP model, and it changes the
+ * features the Lasso can select.
+ * <p>
+ * The genotypes are rewritten in place: the model of an individual, and its
+ * Lasso weights, refer to the simplified tree. A tree is only replaced when
+ * it gets smaller.
+ *
+ * @author Ignacio Arnaldo
+ */
+public class TreeSimplifier {
+
+    // merge nested powers, which drops their inner column from the Lasso fit
+    private final boolean powers;
+
+    // statistics since the last report
+    private long individuals;
+    private long simplified;
+    private long nodesBefore;
+    private long nodesAfter;
+
+    /**
+     * Simplifier that keeps the columns of the Lasso fit, up to constant and
+     * duplicate ones
+     */
+    public TreeSimplifier() {
+        this(false);
+    }
+
+    /**
+     * @param aPowers also merge nested powers, which changes the MRGP feature
+     * set
+     */
+    public TreeSimplifier(boolean aPowers) {
+        powers = aPowers;
+    }
+
+    /**
+     * Simplify the trees of the individuals of the population
+     * @param pop
+     */
+    public void simplify(Population pop) {
+        for (Individual ind : pop) {
+            Tree t = (Tree) ind.getGenotype();
+            int before = t.getSize();
+            int after = before;
+            try {
+                Simplified s = simplify(t.getRoot());
+                if (s.node.getSubtreeSize() < before) {
+                    t.setRoot(s.node);
+                    after = t.getSize();
+                    simplified++;
+                }
+            } catch (GPException ex) {
+                Logger.getLogger(TreeSimplifier.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            individuals++;
+            nodesBefore += before;
+            nodesAfter += after;
+        }
+    }
+
+    /**
+     * @param node
+     * @return the simplified copy of the subtree rooted at node
+     * @throws GPException
+     */
+    private Simplified simplify(TreeNode node) throws GPException {
+        int op = CompiledTree.getOpcode(node.label);
+        if (op == CompiledTree.VAR) {
+            TreeNode copy = (node.getCoeff() == 1) ? new TreeNode(null, node.label)
+                    : new TreeNode(null, node.getCoeff() + "_" + node.label);
+            return new Simplified(copy, "X" + CompiledTree.getVarIndex(node.label) + "_" + node.getCoeff());
+        }
+        Simplified a = simplify(node.children.get(0));
+        Simplified b = (node.children.size() > 1) ? simplify(node.children.get(1)) : null;
+        if (a.constant && (b == null || b.constant)) {
+            return constant(node, a, b, CompiledTree.apply(op, a.value, (b == null) ? 0 : b.value));
+        }
+        switch (op) {
+            case CompiledTree.PLUS:
+                if (a.isConstant(0)) return b;
+                if (b.isConstant(0)) return a;
+                break;
+            case CompiledTree.MINUS:
+                if (b.isConstant(0)) return a;
+                if (a.key.equals(b.key)) return constant(node, a, b, 0);
+                break;
+            case CompiledTree.MULTIPLY:
+                if (a.isConstant(0) || b.isConstant(0)) return constant(node, a, b, 0);
+                if (a.isConstant(1)) return b;
+                if (b.isConstant(1)) return a;
+                break;
+            case CompiledTree.DIVIDE:
+                if (a.key.equals(b.key)) return constant(node, a, b, 1);
+                if (b.constant && Math.abs(b.value) < 1e-6) return constant(node, a, b, 1);
+                if (b.isConstant(1)) return a;
+                break;
+            case CompiledTree.SQRT:
+                if (powers && a.op == CompiledTree.QUART) return unary("square", CompiledTree.SQUARE, a.node.children.get(0), a.argKey);
+                break;
+            case CompiledTree.QUART:
+                if (powers && a.op == CompiledTree.SQRT) return unary("square", CompiledTree.SQUARE, a.node.children.get(0), a.argKey);
+                break;
+            case CompiledTree.SQUARE:
+                if (powers && a.op == CompiledTree.SQUARE) return unary("quart", CompiledTree.QUART, a.node.children.get(0), a.argKey);
+                break;
+            default:
+                break;
+        }
+        return new Simplified(node.label, op, a, b);
+    }
+
+    private static Simplified constant(TreeNode node, Simplified a, Simplified b, double value) throws GPException {
+        Simplified s = new Simplified(node.label, CompiledTree.getOpcode(node.label), a, b);
+        s.constant = true;
+        s.value = value;
+        return s;
+    }
+
+    private static Simplified unary(String label, int op, TreeNode arg, String argKey) {
+        TreeNode n = new TreeNode(null, label);
+        arg.parent = n;
+        n.addChild(arg);
+        Simplified s = new Simplified(n, "(" + op + " " + argKey + ")");
+        s.op = op;
+        s.argKey = argKey;
+        return s;
+    }
+
+    /**
+     * Summarize the simplifications since the previous report, and reset the
+     * statistics
+     * @return report for the generation log
+     */
+    public String getReport() {
+        String report = String.format("Simplification: %d of %d trees simplified, %d nodes to %d (%.1f%% fewer)",
+                simplified, individuals, nodesBefore, nodesAfter,
+                (nodesBefore == 0) ? 0 : 100.0 * (nodesBefore - nodesAfter) / nodesBefore);
+        individuals = 0;
+        simplified = 0;
+        nodesBefore = 0;
+        nodesAfter = 0;
+        return report;
+    }
+
+    /**
+     * Simplified subtree: its nodes, a canonical key (equal keys mean equal
+     * values) and, if the subtree is constant, its value
+     */
+    private static class Simplified {
+        private final TreeNode node;
+        private final String key;
+        private int op = CompiledTree.VAR;
+        // key of the only operand of unary functions
+        private String argKey;
+        private boolean constant;
+        private double value;
+
+        Simplified(TreeNode aNode, String aKey) {
+            node = aNode;
+            key = aKey;
+        }
+
+        Simplified(String label, int anOp, Simplified a, Simplified b) {
+            node = new TreeNode(null, label);
+            a.node.parent = node;
+            node.addChild(a.node);
+            if (b == null) {
+                key = "(" + anOp + " " + a.key + ")";
+                argKey = a.key;
+            } else {
+                b.node.parent = node;
+                node.addChild(b.node);
+                key = "(" + anOp + " " + a.key + " " + b.key + ")";
+            }
+            op = anOp;
+        }
+
+        boolean isConstant(double c) {
+            return constant && value == c;
+        }
+    }
+}
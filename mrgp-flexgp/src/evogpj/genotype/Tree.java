@@ -73,6 +73,16 @@ public class Tree extends Genotype {
         return holder.children.get(0);
     }
 
+    /**
+     * Replace the whole tree
+     * @param root new root, whose nodes must not belong to another tree
+     */
+    public void setRoot(TreeNode root) {
+        root.parent = holder;
+        holder.children.set(0, root);
+        subtreeComplexity = null;
+    }
+
     /**
      * Default: return unscaled MATLAB infix string
      * @return 
@@ -443,6 +443,14 @@ public class TreeNode implements Serializable {
 		}
 	}
         
+    /**
+     * get coefficient of the node.
+     * @return coefficient applied to the terminal represented by this node
+     */
+    public double getCoeff(){
+       return coeff;
+    }
+
     /**
      * increase coefficient of the node.
      */
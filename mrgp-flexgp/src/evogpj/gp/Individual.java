@@ -19,6 +19,8 @@ package evogpj.gp;
 
 import evogpj.evaluation.FitnessComparisonStandardizer;
 import evogpj.evaluation.FitnessFunction;
+import evogpj.evaluation.java.CompiledTree;
+import evogpj.evaluation.java.LassoWarmStart;
 import evogpj.genotype.Genotype;
 import evogpj.genotype.Tree;
 
@@ -60,7 +62,23 @@ public class Individual implements Serializable {
     private double minTrainOutput, maxTrainOutput;
     private ArrayList<Double> estimatedDensPos, estimatedDensNeg;
     ArrayList<String> weights;
+    // weights set by the evaluation, converted to strings when requested
+    private double[] lassoWeights;
+    // nodes needed to compute the weighted sum of the Lasso model
+    private boolean[] liveNodes;
+    // hash of the predictions of the model on all the training cases, null
+    // if they are unknown
+    private Long predictionHash;
+    // was the model fit on a subsample only, by a race that dropped the
+    // individual?
+    private boolean subsampleFit;
     String lassoIntercept;
+    // Lasso models of every target in multi-target regression, null with a
+    // single target
+    private double[][] targetWeights;
+    private String[] targetIntercepts;
+    // Lasso model kept to warm start the fits of the children, null if none
+    private transient LassoWarmStart lassoWarmStart;
     /**
      * Create an individual with the given genotype. The new individuals
      * phenotype and fitness are left unspecified.
@@ -87,8 +105,16 @@ public class Individual implements Serializable {
         this.euclideanDistance = i.euclideanDistance;
         this.threshold = i.threshold;
         this .crossValAreaROC = i.crossValAreaROC;     
+        this.crossValFitness = i.crossValFitness;
         RT_Cost = 0;
         this.weights = i.weights;
+        this.lassoWeights = i.lassoWeights;
+        this.liveNodes = i.liveNodes;
+        this.predictionHash = i.predictionHash;
+        this.subsampleFit = i.subsampleFit;
+        this.targetWeights = i.targetWeights;
+        this.targetIntercepts = i.targetIntercepts;
+        this.lassoWarmStart = i.lassoWarmStart;
     }
 
     /**
@@ -427,6 +453,28 @@ public class Individual implements Serializable {
      */
     public void setWeights(ArrayList<String> aWeights){
         weights = aWeights;
+        lassoWeights = null;
+        liveNodes = null;
+        predictionHash = null;
+        subsampleFit = false;
+        targetWeights = null;
+        targetIntercepts = null;
+    }
+
+    /**
+     * Set LASSO weights without converting them to strings, which is only
+     * done if they are requested with {@link #getWeights()}. The array is
+     * kept by the individual.
+     * @param someWeights
+     */
+    public void setWeights(double[] someWeights){
+        weights = null;
+        lassoWeights = someWeights;
+        liveNodes = null;
+        predictionHash = null;
+        subsampleFit = false;
+        targetWeights = null;
+        targetIntercepts = null;
     }
 
     /**
@@ -434,9 +482,48 @@ public class Individual implements Serializable {
      * @return 
      */
     public ArrayList<String> getWeights(){
+        if (weights == null && lassoWeights != null) {
+            ArrayList<String> alWeights = new ArrayList<String>(lassoWeights.length);
+            for (double w : lassoWeights) {
+                alWeights.add(Double.toString(w));
+            }
+            weights = alWeights;
+        }
         return weights;
     }
     
+    /**
+     * get LASSO weights as numbers, parsing them if they were set as strings
+     * @return one weight per node of the tree, null if no weights were set
+     */
+    public double[] getLassoWeights(){
+        if (lassoWeights == null && weights != null) {
+            double[] someWeights = new double[weights.size()];
+            for (int i = 0; i < someWeights.length; i++) {
+                someWeights[i] = Double.parseDouble(weights.get(i));
+            }
+            lassoWeights = someWeights;
+        }
+        return lassoWeights;
+    }
+
+    /**
+     * Live node analysis of the Lasso model: a node is live if it has a
+     * nonzero weight or is an input of a live node. The other nodes do not
+     * contribute to the predictions of the model, and need not be computed.
+     * The analysis is done once and kept with the individual until its
+     * weights change.
+     * @return whether each node of the tree is live, in the order of the
+     *         weights
+     * @throws GPException if the tree can't be compiled
+     */
+    public boolean[] getLiveNodes() throws GPException{
+        if (liveNodes == null) {
+            liveNodes = CompiledTree.compile((Tree) genotype).getLiveInstructions(getLassoWeights());
+        }
+        return liveNodes;
+    }
+
     /**
      * get intercept
      * @return 
@@ -452,4 +539,95 @@ public class Individual implements Serializable {
     public void setLassoIntercept(String aLassoIntercept){
         lassoIntercept = aLassoIntercept;
     }
-}
\ No newline at end of file
+
+    /**
+     * Set the Lasso models of every target, in multi-target regression. The
+     * model of the first target is also the one of {@link #getWeights()} and
+     * {@link #getLassoIntercept()}. The arrays are kept by the individual.
+     * @param someWeights weights of each target, one per node
+     * @param someIntercepts intercept of each target
+     */
+    public void setTargetModels(double[][] someWeights, String[] someIntercepts){
+        setWeights(someWeights[0]);
+        setLassoIntercept(someIntercepts[0]);
+        targetWeights = someWeights;
+        targetIntercepts = someIntercepts;
+    }
+
+    /**
+     * @return the number of targets modelled by the individual
+     */
+    public int getNumberOfTargets(){
+        return (targetWeights == null) ? 1 : targetWeights.length;
+    }
+
+    /**
+     * @param t index of a target
+     * @return the Lasso weights of target t, one per node
+     */
+    public double[] getTargetWeights(int t){
+        return (targetWeights == null) ? getLassoWeights() : targetWeights[t];
+    }
+
+    /**
+     * @param t index of a target
+     * @return the Lasso intercept of target t
+     */
+    public String getTargetIntercept(int t){
+        return (targetIntercepts == null) ? lassoIntercept : targetIntercepts[t];
+    }
+
+    /**
+     * Set the hash of the predictions of the model on all the training cases,
+     * after the weights of the model: setting the weights clears it.
+     * @param aHash hash of the predictions, or null if they are unknown
+     */
+    public void setPredictionHash(Long aHash){
+        predictionHash = aHash;
+    }
+
+    /**
+     * @return the hash of the predictions of the model on all the training
+     *         cases, null if the model was not fit on all of them
+     */
+    public Long getPredictionHash(){
+        return predictionHash;
+    }
+
+    /**
+     * Flag the model as fit on a subsample of the training cases only, after
+     * the weights of the model: setting the weights clears the flag.
+     * @param isSubsampleFit
+     * @see evogpj.evaluation.java.RacingEvaluation
+     */
+    public void setSubsampleFit(boolean isSubsampleFit){
+        subsampleFit = isSubsampleFit;
+    }
+
+    /**
+     * @return true if the model was only fit on a subsample of the training
+     *         cases: its fitness is an estimate, and the model must not be
+     *         reported
+     */
+    public boolean isSubsampleFit(){
+        return subsampleFit;
+    }
+
+    /**
+     * Set the Lasso model that warm starts the fits of the children of the
+     * individual. The variation operators pass the one of the parent to the
+     * children until they are evaluated.
+     * @param aWarmStart the warm start, or null for cold fits
+     */
+    public void setLassoWarmStart(LassoWarmStart aWarmStart){
+        lassoWarmStart = aWarmStart;
+    }
+
+    /**
+     * @return the Lasso model that warm starts the fits of the children, null
+     *         if there is none
+     */
+    public LassoWarmStart getLassoWarmStart(){
+        return lassoWarmStart;
+    }
+}
@@ -33,7 +33,7 @@ public class ArithmeticMean extends Mean {
 	}
 
 	@Override
-	public void addValue(Double val) {
+	public void addValue(double val) {
 		incrementN();
 		sum += val;
 	}
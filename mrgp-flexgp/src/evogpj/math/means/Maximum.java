@@ -28,22 +28,18 @@ package evogpj.math.means;
  */
 public class Maximum extends Mean {
 
-	@Override
-	public void reset() {
-		sum = null;
-	}
-
 	@Override
 	public Double getMean() {
-		return sum;
+		return (n == 0) ? null : sum;
 	}
 
 	@Override
-	public void addValue(Double val) {
-		if (sum == null)
+	public void addValue(double val) {
+		if (n == 0)
 			sum = val;
 		else
 			sum = Math.max(sum, val);
+		incrementN();
 	}
 
 }
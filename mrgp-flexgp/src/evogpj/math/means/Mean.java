@@ -31,7 +31,7 @@ public abstract class Mean {
         /**
          * sum of the elements to average
          */
-	protected Double sum;
+	protected double sum;
         
         /**
          * number of elements to average
@@ -63,7 +63,7 @@ public abstract class Mean {
 	 * 
 	 * @param val value to add to the mean.
 	 */
-	public abstract void addValue(Double val);
+	public abstract void addValue(double val);
         
         /**
          * increment number of elements to average
@@ -42,7 +42,7 @@ public class PowerMean extends Mean {
 	}
 
 	@Override
-	public void addValue(Double val) {
+	public void addValue(double val) {
 		incrementN();
 		sum += Math.pow(val, p);
 	}
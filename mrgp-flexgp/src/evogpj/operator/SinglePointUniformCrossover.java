@@ -120,15 +120,15 @@ public class SinglePointUniformCrossover extends RandomOperator implements Cross
 			if (c1.getDepth() > TREE_XOVER_MAX_DEPTH)
 				twoPop.add(ind1.copy());
 			else
-				twoPop.add(new Individual(c1));
+				twoPop.add(child(c1, ind1));
 
 			if (c1.getDepth() > TREE_XOVER_MAX_DEPTH)
 				twoPop.add(ind2.copy());
 			else
-				twoPop.add(new Individual(c2));
+				twoPop.add(child(c2, ind2));
 		} else {
-			Individual i1 = new Individual(c1);
-			Individual i2 = new Individual(c2);
+			Individual i1 = child(c1, ind1);
+			Individual i2 = child(c2, ind2);
 			// clear any nonessential memoized values
 			i1.reset();
 			i2.reset();
@@ -138,6 +138,17 @@ public class SinglePointUniformCrossover extends RandomOperator implements Cross
 		return twoPop;
 	}
 
+	/**
+	 * @param t tree of the child
+	 * @param parent parent whose tree t mostly is
+	 * @return the child, warm started from the Lasso model of the parent
+	 */
+	private static Individual child(Tree t, Individual parent) {
+		Individual i = new Individual(t);
+		i.setLassoWarmStart(parent.getLassoWarmStart());
+		return i;
+	}
+
 	/**
 	 * Select point (node) uniformly in the given tree.
 	 * 
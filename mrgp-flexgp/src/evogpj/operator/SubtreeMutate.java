@@ -77,7 +77,9 @@ public class SubtreeMutate extends RandomOperator implements Mutate {
         treeGen.generate(n, TREE_MUTATE_MAX_DEPTH - curDepth, false);
         // System.out.println("New subtree there is: " + n.toStringAsTree());
 
-        return new Individual(copy);
+        Individual child = new Individual(copy);
+        child.setLassoWarmStart(i.getLassoWarmStart());
+        return child;
     }
 
 }
@@ -18,13 +18,12 @@
 package evogpj.postprocessing;
 
 import evogpj.evaluation.java.DataJava;
-import evogpj.genotype.Tree;
+import evogpj.evaluation.java.PrunedModel;
+import evogpj.gp.GPException;
 import evogpj.gp.Individual;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import evogpj.math.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Implements fitness evaluation for MRGP models
@@ -49,40 +48,24 @@ public class EvalRGPModels {
     }
 
     /**
+     * Predictions of a model on the data, computing only the live nodes of its
+     * tree (see {@link PrunedModel})
      * @param ind
      * @param indIndex
      * @param predictions
      * @param round
-     * @see Function
      */
     public void eval(Individual ind,int indIndex,double[][] predictions,boolean round) {
-        ArrayList<String> alWeights = ind.getWeights();
-        double[] lassoWeights = new double[alWeights.size()];
-        for(int i=0;i<alWeights.size();i++){
-            lassoWeights[i] = Double.parseDouble(alWeights.get(i));
+        PrunedModel model;
+        try {
+            model = new PrunedModel(ind);
+        } catch (GPException ex) {
+            Logger.getLogger(EvalRGPModels.class.getName()).log(Level.SEVERE, null, ex);
+            return;
         }
-        double lassoIntercept = Double.parseDouble(ind.getLassoIntercept());
-        Tree genotype = (Tree) ind.getGenotype();
-        Function func = genotype.generate();
-        List<Double> d;
-        ArrayList<Double> interVals;
         double[][] inputValuesAux = data.getInputValues();
-        float[][] intermediateValues = new float[data.getNumberOfFitnessCases()][genotype.getSize()];
         for (int i = 0; i < data.getNumberOfFitnessCases(); i++) {
-            d = new ArrayList<Double>();
-            for (int j = 0; j < data.getNumberOfFeatures(); j++) {
-                d.add(j, inputValuesAux[i][j]);
-            }
-            interVals = new ArrayList<Double>();
-            func.evalIntermediate(d,interVals);
-            for(int t=0;t<interVals.size();t++){
-                intermediateValues[i][t] = interVals.get(t).floatValue();
-            }
-            double prediction = 0;
-            for(int j=0;j<lassoWeights.length;j++){
-                prediction += intermediateValues[i][j]*lassoWeights[j];
-            }
-            prediction += lassoIntercept;
+            double prediction = model.predict(inputValuesAux[i]);
             if(prediction<ind.getMinTrainOutput()) prediction = ind.getMinTrainOutput();
             if(prediction>ind.getMaxTrainOutput()) prediction = ind.getMaxTrainOutput();
             
@@ -90,9 +73,6 @@ public class EvalRGPModels {
             if (round) prediction = Math.round(prediction);
 
             predictions[i][indIndex] = prediction;
-	                
-            d.clear();
-            interVals.clear();
         }
     }
 
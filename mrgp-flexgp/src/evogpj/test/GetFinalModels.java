@@ -19,10 +19,11 @@
 package evogpj.test;
 import evogpj.evaluation.java.CSVDataJava;
 import evogpj.evaluation.java.DataJava;
+import evogpj.evaluation.java.PrunedModel;
 import evogpj.genotype.Tree;
 import evogpj.genotype.TreeGenerator;
+import evogpj.gp.GPException;
 import evogpj.gp.Individual;
-import evogpj.math.Function;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -40,6 +41,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 /**
@@ -160,42 +163,23 @@ public class GetFinalModels {
     
     
     private double evalModel(Individual ind){
-        ArrayList<String> alWeights = ind.getWeights();
-        double[] lassoWeights = new double[alWeights.size()];
-        for(int i=0;i<alWeights.size();i++){
-            lassoWeights[i] = Double.parseDouble(alWeights.get(i));
+        PrunedModel model;
+        try {
+            model = new PrunedModel(ind);
+        } catch (GPException ex) {
+            Logger.getLogger(GetFinalModels.class.getName()).log(Level.SEVERE, null, ex);
+            ind.setScaledMSE(Double.NaN);
+            return Double.NaN;
         }
-        double lassoIntercept = Double.parseDouble(ind.getLassoIntercept());
         double sqDiff = 0;
-        Tree genotype = (Tree) ind.getGenotype();
-        Function func = genotype.generate();
-        List<Double> d;
-        ArrayList<Double> interVals;
         double[][] inputValuesAux = data.getInputValues();
         double[] targets = data.getTargetValues();
-        float[][] intermediateValues = new float[data.getNumberOfFitnessCases()][genotype.getSize()];
         for (int i = 0; i < data.getNumberOfFitnessCases(); i++) {
-            d = new ArrayList<Double>();
-            for (int j = 0; j < data.getNumberOfFeatures(); j++) {
-                d.add(j, inputValuesAux[i][j]);
-            }
-            interVals = new ArrayList<Double>();
-            func.evalIntermediate(d,interVals);
-            for(int t=0;t<interVals.size();t++){
-                intermediateValues[i][t] = interVals.get(t).floatValue();
-            }
-            double prediction = 0;
-            for(int j=0;j<lassoWeights.length;j++){
-                prediction += intermediateValues[i][j]*lassoWeights[j];
-            }
-            prediction += lassoIntercept;
+            double prediction = model.predict(inputValuesAux[i]);
             if(prediction<minTarget) prediction = minTarget;
             if(prediction>maxTarget) prediction = maxTarget;
-            d.clear();
-            interVals.clear();
 
             sqDiff += Math.pow(targets[i] - prediction, 2);
-            d.clear();
         }
         sqDiff = sqDiff / data.getNumberOfFitnessCases();
         ind.setScaledMSE(sqDiff);
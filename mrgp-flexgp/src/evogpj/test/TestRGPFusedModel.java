@@ -19,18 +19,20 @@ package evogpj.test;
 
 import evogpj.evaluation.java.CSVDataJava;
 import evogpj.evaluation.java.DataJava;
+import evogpj.evaluation.java.PrunedModel;
 import evogpj.genotype.Tree;
 import evogpj.genotype.TreeGenerator;
+import evogpj.gp.GPException;
 import evogpj.gp.Individual;
 import evogpj.gp.Population;
 
 import java.util.ArrayList;
-import java.util.List;
 
-import evogpj.math.Function;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.Scanner;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Implements fitness evaluation for symbolic regression.
@@ -106,57 +108,42 @@ public class TestRGPFusedModel{
     
     /**
      * @return 
-     * @see Function
+     * @see PrunedModel
      */
     public ArrayList<Double> eval() {
-        List<Double> d;
         double[][] inputValuesAux = data.getInputValues();
         double MSE = 0;
         double MAE = 0;
         double[] target = data.getTargetValues();
 
-        for (int i = 0; i < data.getNumberOfFitnessCases(); i++) {
-            d = new ArrayList<Double>();
-            for (int j = 0; j < data.getNumberOfFeatures(); j++) {
-                d.add(j, inputValuesAux[i][j]);
+        // the live nodes of the models of the fusion, compiled once
+        PrunedModel[] prunedModels = new PrunedModel[models.size()];
+        for(int j=0;j<models.size();j++){
+            if(weightsARM[j] >= 0.00001){
+                try {
+                    prunedModels[j] = new PrunedModel(models.get(j));
+                } catch (GPException ex) {
+                    Logger.getLogger(TestRGPFusedModel.class.getName()).log(Level.SEVERE, null, ex);
+                }
             }
+        }
+        for (int i = 0; i < data.getNumberOfFitnessCases(); i++) {
             double predictedValue = 0;
             for(int j=0;j<models.size();j++){
-                if(weightsARM[j] >= 0.00001){
+                if(prunedModels[j] != null){
                     Individual ind = models.get(j);
-                    ArrayList<String> alWeights = ind.getWeights();
-                    double[] lassoWeights = new double[alWeights.size()];
-                    for(int w=0;w<alWeights.size();w++){
-                        lassoWeights[w] = Double.parseDouble(alWeights.get(w));
-                    }
-                    double lassoIntercept = Double.parseDouble(ind.getLassoIntercept());
-                    Tree genotype = (Tree) ind.getGenotype();
-                    Function func = genotype.generate();
-                    float[] intermediateValues = new float[genotype.getSize()];
-                    ArrayList<Double> interVals = new ArrayList<Double>();
-                    func.evalIntermediate(d,interVals);
-                    for(int t=0;t<interVals.size();t++){
-                        intermediateValues[t] = interVals.get(t).floatValue();
-                    }
-                    double prediction = 0;
-                    for(int w=0;w<lassoWeights.length;w++){
-                        prediction += intermediateValues[w]*lassoWeights[w];
-                    }
-                    prediction += lassoIntercept;
+                    double prediction = prunedModels[j].predict(inputValuesAux[i]);
                     if (round) prediction = Math.round(prediction); 
                     if(prediction<ind.getMinTrainOutput()) prediction = ind.getMinTrainOutput();
                     if(prediction>ind.getMaxTrainOutput()) prediction = ind.getMaxTrainOutput();
-                    interVals.clear();
                     
                     predictedValue += weightsARM[j] * prediction;
-                    func = null;
                 }
             }
             if(round) predictedValue = Math.round(predictedValue);
             double difference = target[i] - predictedValue;
             MSE += Math.pow(difference, 2);
             MAE += Math.abs(target[i] - predictedValue);
-            d.clear();
         }
         int numFitnessCases = data.getNumberOfFitnessCases();
         MSE = MSE / numFitnessCases;
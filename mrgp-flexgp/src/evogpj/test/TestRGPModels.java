@@ -19,21 +19,22 @@ package evogpj.test;
 
 import evogpj.evaluation.java.CSVDataJava;
 import evogpj.evaluation.java.DataJava;
+import evogpj.evaluation.java.PrunedModel;
 import evogpj.genotype.Tree;
 import evogpj.genotype.TreeGenerator;
+import evogpj.gp.GPException;
 import evogpj.gp.Individual;
 import evogpj.gp.Population;
 
 import java.util.ArrayList;
-import java.util.List;
-
-import evogpj.math.Function;
 import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Scanner;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Implements fitness evaluation for symbolic regression.
@@ -44,6 +45,8 @@ public class TestRGPModels {
     
     private String pathToData;
     private final DataJava data;
+    // index of the target of the models, among the targets of the data
+    private final int target;
         
     private String pathToPop;
     private Population models;
@@ -63,10 +66,26 @@ public class TestRGPModels {
      * @throws java.lang.ClassNotFoundException
      */
     public TestRGPModels(String aPathToData, String aPathToPop,boolean aRound) throws IOException, ClassNotFoundException {
+        this(aPathToData, aPathToPop, aRound, 1, 0);
+    }
+
+    /**
+     * Test the models of one of the targets of multi-target data, such as
+     * the models saved with the suffix _target&lt;k&gt; for target k-1
+     * @param aPathToData
+     * @param aPathToPop
+     * @param aRound
+     * @param numberOfTargets number of targets, the last columns of the data
+     * @param aTarget index of the target of the models, from 0
+     * @throws java.io.IOException
+     * @throws java.lang.ClassNotFoundException
+     */
+    public TestRGPModels(String aPathToData, String aPathToPop, boolean aRound, int numberOfTargets, int aTarget) throws IOException, ClassNotFoundException {
         pathToData = aPathToData;
         pathToPop = aPathToPop;
         round = aRound;
-        this.data = new CSVDataJava(pathToData);
+        target = aTarget;
+        this.data = new CSVDataJava(pathToData, numberOfTargets);
         readScaledModels(pathToPop);
     }
 
@@ -107,110 +126,66 @@ public class TestRGPModels {
     /**
      * @param filePath
      * @throws java.io.IOException
-     * @see Function
+     * @see PrunedModel
      */
     public void predictionsPop(String filePath) throws IOException {
         
         int indexIndi = 0;
         
         for(Individual ind:models){
+            PrunedModel model;
+            try {
+                model = new PrunedModel(ind);
+            } catch (GPException ex) {
+                Logger.getLogger(TestRGPModels.class.getName()).log(Level.SEVERE, null, ex);
+                indexIndi++;
+                continue;
+            }
             BufferedWriter bw = new BufferedWriter(new FileWriter(filePath + "_" + indexIndi + ".csv"));
             PrintWriter printWriter = new PrintWriter(bw);
-            ArrayList<String> alWeights = ind.getWeights();
-            double[] lassoWeights = new double[alWeights.size()];
-            for(int i=0;i<alWeights.size();i++){
-                lassoWeights[i] = Double.parseDouble(alWeights.get(i));
-            }
-            double lassoIntercept = Double.parseDouble(ind.getLassoIntercept());
-            double sqDiff = 0;
-            double absDiff = 0;
-            Tree genotype = (Tree) ind.getGenotype();
-            Function func = genotype.generate();
-            List<Double> d;
-            ArrayList<Double> interVals;
             double[][] inputValuesAux = data.getInputValues();
-            float[][] intermediateValues = new float[data.getNumberOfFitnessCases()][genotype.getSize()];
             for (int i = 0; i < data.getNumberOfFitnessCases(); i++) {
-                d = new ArrayList<Double>();
-                for (int j = 0; j < data.getNumberOfFeatures(); j++) {
-                    d.add(j, inputValuesAux[i][j]);
-                }
-                interVals = new ArrayList<Double>();
-                func.evalIntermediate(d,interVals);
-                for(int t=0;t<interVals.size();t++){
-                    intermediateValues[i][t] = interVals.get(t).floatValue();
-                }
-                double prediction = 0;
-                for(int j=0;j<lassoWeights.length;j++){
-                    prediction += intermediateValues[i][j]*lassoWeights[j];
-                }
-                prediction += lassoIntercept;
+                double prediction = model.predict(inputValuesAux[i]);
                 if (round) prediction = Math.round(prediction);
                 if(prediction<minTarget) prediction = minTarget;
                 if(prediction>maxTarget) prediction = maxTarget;
-                d.clear();
-                interVals.clear();
                 printWriter.println(prediction);
             }
             printWriter.flush();
             printWriter.close();
-            func = null;
             indexIndi++;
         }
     }    
     
     /**
-     * @see Function
+     * @see PrunedModel
      */
     public void evalPop() {
-        double[] targets = data.getTargetValues();
+        double[] targets = data.getTargetValues(target);
         for(Individual ind:models){
-            ArrayList<String> alWeights = ind.getWeights();
-            double[] lassoWeights = new double[alWeights.size()];
-            for(int i=0;i<alWeights.size();i++){
-                lassoWeights[i] = Double.parseDouble(alWeights.get(i));
+            PrunedModel model;
+            try {
+                model = new PrunedModel(ind);
+            } catch (GPException ex) {
+                Logger.getLogger(TestRGPModels.class.getName()).log(Level.SEVERE, null, ex);
+                continue;
             }
-            double lassoIntercept = Double.parseDouble(ind.getLassoIntercept());
             double sqDiff = 0;
             double absDiff = 0;
-            Tree genotype = (Tree) ind.getGenotype();
-            Function func = genotype.generate();
-            List<Double> d;
-            ArrayList<Double> interVals;
             double[][] inputValuesAux = data.getInputValues();
-            float[][] intermediateValues = new float[data.getNumberOfFitnessCases()][genotype.getSize()];
             for (int i = 0; i < data.getNumberOfFitnessCases(); i++) {
-                d = new ArrayList<Double>();
-                for (int j = 0; j < data.getNumberOfFeatures(); j++) {
-                    d.add(j, inputValuesAux[i][j]);
-                }
-                interVals = new ArrayList<Double>();
-                func.evalIntermediate(d,interVals);
-                for(int t=0;t<interVals.size();t++){
-                    intermediateValues[i][t] = interVals.get(t).floatValue();
-                }
-                double prediction = 0;
-                for(int j=0;j<lassoWeights.length;j++){
-                    prediction += intermediateValues[i][j]*lassoWeights[j];
-                }
-                prediction += lassoIntercept;
-                //phenotype_tmp.addNewDataValue(prediction);
+                double prediction = model.predict(inputValuesAux[i]);
                 if (round) prediction = Math.round(prediction);
                 if(prediction<minTarget) prediction = minTarget;
                 if(prediction>maxTarget) prediction = maxTarget;
                 
-                d.clear();
-                interVals.clear();
-                
                 sqDiff += Math.pow(targets[i] - prediction, 2);
                 absDiff += Math.abs(targets[i] - prediction);
-                d.clear();
             }
             sqDiff = sqDiff / data.getNumberOfFitnessCases();
             absDiff= absDiff / data.getNumberOfFitnessCases();
             ind.setScaledMSE(sqDiff);
             ind.setScaledMAE(absDiff);
-            func = null;
         }
     }
     
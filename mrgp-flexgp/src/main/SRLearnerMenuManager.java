@@ -179,33 +179,25 @@ public class SRLearnerMenuManager {
             System.out.println();
             if(new File(popPath).isFile()){
                 System.out.println("TESTING KNEE MODEL:");
-                TestRGPModels tsm = new TestRGPModels(dataPath, popPath,integerTarget);
-                tsm.evalPop();
-                tsm.saveModelsToFile("test"+popPath);
+                testScaledModels(dataPath, popPath, integerTarget);
                 System.out.println();
             }
             popPath = "mostAccurate.txt";
             if(new File(popPath).isFile()){
                 System.out.println("TESTING MOST ACCURATE MODEL: ");
-                TestRGPModels tsm = new TestRGPModels(dataPath, popPath,integerTarget);
-                tsm.evalPop();
-                tsm.saveModelsToFile("test"+popPath);
+                testScaledModels(dataPath, popPath, integerTarget);
                 System.out.println();
             }
             popPath = "leastComplex.txt";
             if(new File(popPath).isFile()){
                 System.out.println("TESTING SIMPLEST MODEL: ");
-                TestRGPModels tsm = new TestRGPModels(dataPath, popPath,integerTarget);
-                tsm.evalPop();
-                tsm.saveModelsToFile("test"+popPath);
+                testScaledModels(dataPath, popPath, integerTarget);
                 System.out.println();
             }
             popPath = "pareto.txt";
             if(new File(popPath).isFile()){
                 System.out.println("TESTING PARETO MODELS: ");
-                TestRGPModels tsm = new TestRGPModels(dataPath, popPath,integerTarget);
-                tsm.evalPop();
-                tsm.saveModelsToFile("test"+popPath);
+                testScaledModels(dataPath, popPath, integerTarget);
                 System.out.println();
             }
             
@@ -215,9 +207,7 @@ public class SRLearnerMenuManager {
                 integerTarget = Boolean.valueOf(args[3]);
                 popPath = args[5];
                 if(args[4].equals("-scaled")){
-                    TestRGPModels tsm = new TestRGPModels(dataPath, popPath,integerTarget);
-                    tsm.evalPop();
-                    tsm.saveModelsToFile("test"+popPath);
+                    testScaledModels(dataPath, popPath, integerTarget);
                 }else{
                     System.err.println("Error: wrong argument. Expected -scaled or -fused flag");
                     printUsage();
@@ -234,6 +224,35 @@ public class SRLearnerMenuManager {
     }
     
     
+    /**
+     * Test the models of a file, and the models of the other targets saved
+     * next to it in multi-target regression, each on its own target column.
+     * The number of targets is the number of these files: the training run
+     * removes the files of the targets it no longer has.
+     * @param dataPath
+     * @param popPath file of the models of the first target
+     * @param integerTarget
+     * @throws IOException
+     * @throws ClassNotFoundException 
+     * @see SymbRegMOO#getTargetModelsPath(String, int)
+     */
+    private void testScaledModels(String dataPath, String popPath, boolean integerTarget) throws IOException, ClassNotFoundException {
+        int numberOfTargets = 1;
+        while (new File(SymbRegMOO.getTargetModelsPath(popPath, numberOfTargets)).isFile()) {
+            numberOfTargets++;
+        }
+        for (int t = 0; t < numberOfTargets; t++) {
+            String path = (t == 0) ? popPath : SymbRegMOO.getTargetModelsPath(popPath, t);
+            if (numberOfTargets > 1) {
+                System.out.println("TARGET " + (t + 1) + ": " + path);
+            }
+            TestRGPModels tsm = new TestRGPModels(dataPath, path, integerTarget, numberOfTargets, t);
+            tsm.evalPop();
+            tsm.saveModelsToFile("test" + path);
+        }
+    }
+    
+    
     //java -jar evogpj.jar -getFinalModel path_to_ips secondsThreshold path_to_fusion_data
     /**
      * parse filter command
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import evogpj.evaluation.java.ColumnKernels;
+import evogpj.evaluation.java.CompiledTree;
+import evogpj.gp.MersenneTwisterFast;
+
+/**
+ * Check the column kernels against the scalar primitives, within the
+ * documented tolerance.
+ */
+public class ColumnKernelsTest {
+
+	private static final int LEN = 1000;
+
+	@Test
+	public void testKernelsMatchScalarPath() {
+		MersenneTwisterFast rand = new MersenneTwisterFast(5);
+		double[] a = new double[LEN + 3];
+		double[] b = new double[LEN];
+		for (int r = 0; r < a.length; r++) {
+			a[r] = (r % 11 == 0) ? 1e-7 : rand.nextDouble() * 20 - 10;
+		}
+		for (int r = 0; r < LEN; r++) {
+			b[r] = (r % 5 == 0) ? -1e-7 : rand.nextDouble() * 20 - 10;
+		}
+		double[] out = new double[LEN];
+		for (int op = CompiledTree.PLUS; op <= CompiledTree.QUART; op++) {
+			boolean binary = op <= CompiledTree.DIVIDE;
+			if (binary) {
+				ColumnKernels.binary(op, a, 3, b, 0, out, LEN);
+			} else {
+				ColumnKernels.unary(op, a, 3, out, LEN);
+			}
+			boolean exact = op != CompiledTree.CUBE && op != CompiledTree.QUART;
+			for (int r = 0; r < LEN; r++) {
+				double expected = CompiledTree.apply(op, a[3 + r], b[r]);
+				double tolerance = exact ? 0 : Math.abs(expected) * ColumnKernels.POW_TOLERANCE;
+				assertEquals(expected, out[r], tolerance);
+			}
+		}
+	}
+}
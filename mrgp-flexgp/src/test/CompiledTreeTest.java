@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.java.CompiledTree;
+import evogpj.evaluation.java.PrunedModel;
+import evogpj.genotype.Tree;
+import evogpj.genotype.TreeGenerator;
+import evogpj.gp.GPException;
+import evogpj.gp.Individual;
+import evogpj.gp.MersenneTwisterFast;
+import evogpj.math.Function;
+
+/**
+ * Check that compiled trees reproduce the values and the order of
+ * {@link Function#evalIntermediate}.
+ */
+public class CompiledTreeTest {
+
+	private static final int NUM_FEATURES = 5;
+
+	@Test
+	public void testIntermediateValuesMatchFunction() throws GPException {
+		MersenneTwisterFast rand = new MersenneTwisterFast(7);
+		List<String> terms = new ArrayList<String>();
+		for (int i = 1; i <= NUM_FEATURES; i++) terms.add("X" + i);
+		TreeGenerator treeGen = new TreeGenerator(rand, Parameters.Defaults.FUNCTIONS, terms);
+		for (int n = 0; n < 200; n++) {
+			Tree t = treeGen.generateTree(6, false);
+			Function func = t.generate();
+			CompiledTree program = CompiledTree.compile(t);
+			assertEquals(t.getSize(), program.getSize());
+			double[] interVals = new double[program.getSize()];
+			for (int r = 0; r < 20; r++) {
+				double[] row = new double[NUM_FEATURES];
+				List<Double> d = new ArrayList<Double>();
+				for (int j = 0; j < NUM_FEATURES; j++) {
+					row[j] = rand.nextDouble() * 6 - 3;
+					d.add(row[j]);
+				}
+				ArrayList<Double> expected = new ArrayList<Double>();
+				double root = func.evalIntermediate(d, expected);
+				// a protected division skips its numerator in evalIntermediate
+				if (expected.size() != program.getSize()) continue;
+				assertEquals(root, program.evalIntermediate(row, interVals), 0);
+				for (int i = 0; i < expected.size(); i++) {
+					assertEquals(expected.get(i), interVals[i], 0);
+				}
+				assertEquals(func.eval(d), program.eval(row, interVals), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testDivideEvaluatesDenominatorFirst() throws GPException {
+		Tree t = TreeGenerator.generateTree("(mydivide (+ X1 X2) (sin X3))");
+		CompiledTree program = CompiledTree.compile(t);
+		assertEquals(CompiledTree.VAR, program.getOpcode(0));
+		assertEquals(2, program.getVarIndex(0));
+		assertEquals(CompiledTree.SIN, program.getOpcode(1));
+		assertEquals(CompiledTree.PLUS, program.getOpcode(4));
+		assertEquals(CompiledTree.DIVIDE, program.getOpcode(5));
+		double[] interVals = new double[program.getSize()];
+		assertEquals(1.0, program.evalIntermediate(new double[] {1, 2, 0}, interVals), 0);
+	}
+
+	@Test
+	public void testSharedSubtreesComputeEveryNode() throws GPException {
+		MersenneTwisterFast rand = new MersenneTwisterFast(13);
+		List<String> terms = new ArrayList<String>();
+		for (int i = 1; i <= 3; i++) terms.add("X" + i);
+		TreeGenerator treeGen = new TreeGenerator(rand, Parameters.Defaults.FUNCTIONS, terms);
+		for (int n = 0; n < 200; n++) {
+			Tree t = treeGen.generateTree(6, false);
+			CompiledTree program = CompiledTree.compile(t);
+			CompiledTree shared = program.shareSubtrees();
+			assertEquals(program.getSize(), shared.getNumNodes());
+			assertTrue(shared.getSize() <= program.getSize());
+			double[] values = new double[program.getSize()];
+			double[] sharedValues = new double[shared.getSize()];
+			double[] row = new double[] {rand.nextDouble() * 6 - 3, rand.nextDouble() * 6 - 3, rand.nextDouble() * 6 - 3};
+			assertEquals(program.evalIntermediate(row, values), shared.evalIntermediate(row, sharedValues), 0);
+			assertEquals(program.eval(row, values), shared.eval(row, sharedValues), 0);
+			program.evalIntermediate(row, values);
+			shared.evalIntermediate(row, sharedValues);
+			for (int node = 0; node < program.getSize(); node++) {
+				assertEquals(values[node], sharedValues[shared.getInstruction(node)], 0);
+			}
+		}
+	}
+
+	@Test
+	public void testSharedWeightsKeepTheModel() throws GPException {
+		Tree t = TreeGenerator.generateTree("(+ (* X1 X2) (sin (* X2 X1)))");
+		CompiledTree shared = CompiledTree.compile(t).shareSubtrees();
+		// X1, X2, (* X1 X2), sin, + ; the second product and its variables are shared
+		assertEquals(8, shared.getNumNodes());
+		assertEquals(5, shared.getSize());
+		double[] instructionWeights = new double[] {1, 2, 3, 4, 5};
+		double[] nodeWeights = shared.getNodeWeights(instructionWeights);
+		assertEquals(shared.getNumNodes(), nodeWeights.length);
+		double[] row = new double[] {0.5, -1.5};
+		double[] sharedValues = new double[shared.getSize()];
+		shared.evalIntermediate(row, sharedValues);
+		double expected = 0;
+		for (int i = 0; i < shared.getSize(); i++) expected += instructionWeights[i] * sharedValues[i];
+		double actual = 0;
+		for (int node = 0; node < nodeWeights.length; node++) actual += nodeWeights[node] * sharedValues[shared.getInstruction(node)];
+		assertEquals(expected, actual, 0);
+	}
+
+	@Test
+	public void testDeadNodesDoNotChangeThePrediction() throws GPException {
+		// nodes: X2 X1 mydivide X3 sin + ; only (sin X3) has a nonzero weight
+		Tree t = TreeGenerator.generateTree("(+ (mydivide X1 X2) (sin X3))");
+		Individual ind = new Individual(t);
+		ind.setWeights(new double[] {0, 0, 0, 0, 2.5, 0});
+		ind.setLassoIntercept("0.25");
+		boolean[] live = ind.getLiveNodes();
+		assertTrue(Arrays.equals(new boolean[] {false, false, false, true, true, false}, live));
+		PrunedModel model = new PrunedModel(ind);
+		assertEquals(6, model.getNumNodes());
+		assertEquals(2, model.getNumLiveNodes());
+		double[] row = new double[] {0.5, -1.5, 2};
+		assertEquals((float) Math.sin(2) * 2.5 + 0.25, model.predict(row), 0);
+	}
+
+	@Test
+	public void testLiveInstructionsComputeTheWeightedSum() throws GPException {
+		MersenneTwisterFast rand = new MersenneTwisterFast(17);
+		List<String> terms = new ArrayList<String>();
+		for (int i = 1; i <= 3; i++) terms.add("X" + i);
+		TreeGenerator treeGen = new TreeGenerator(rand, Parameters.Defaults.FUNCTIONS, terms);
+		for (int n = 0; n < 200; n++) {
+			Tree t = treeGen.generateTree(6, false);
+			CompiledTree program = CompiledTree.compile(t);
+			double[] weights = new double[program.getSize()];
+			for (int i = 0; i < weights.length; i++) {
+				if (rand.nextDouble() < 0.2) weights[i] = rand.nextDouble() - 0.5;
+			}
+			boolean[] live = program.getLiveInstructions(weights);
+			CompiledTree pruned = program.retain(live);
+			double[] values = new double[program.getSize()];
+			double[] prunedValues = new double[pruned.getSize()];
+			double[] row = new double[] {rand.nextDouble() * 6 - 3, rand.nextDouble() * 6 - 3, rand.nextDouble() * 6 - 3};
+			program.evalIntermediate(row, values);
+			if (pruned.getSize() > 0) pruned.evalIntermediate(row, prunedValues);
+			int k = 0;
+			for (int i = 0; i < program.getSize(); i++) {
+				if (weights[i] != 0) assertTrue(live[i]);
+				if (live[i]) assertEquals(values[i], prunedValues[k++], 0);
+			}
+			assertEquals(pruned.getSize(), k);
+		}
+	}
+}
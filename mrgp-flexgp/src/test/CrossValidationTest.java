@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.uci.lasso.LassoFit;
+import edu.uci.lasso.LassoFitGenerator;
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.java.CSVDataJava;
+import evogpj.evaluation.java.SRLARSJava;
+import evogpj.gp.Individual;
+import evogpj.gp.MersenneTwisterFast;
+import evogpj.gp.Population;
+
+/**
+ * k-fold cross-validated fitness: the fits of the folds read their rows from
+ * the node columns of all the training cases.
+ */
+public class CrossValidationTest {
+
+	private static final int NUM_ROWS = 600;
+	private static final int NUM_FEATURES = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testViewFitIsTheFitOfTheRows() throws Exception {
+		MersenneTwisterFast rand = new MersenneTwisterFast(1);
+		int numFeatures = 4;
+		float[][] columns = new float[numFeatures][NUM_ROWS];
+		double[] targets = new double[NUM_ROWS];
+		for (int i = 0; i < NUM_ROWS; i++) {
+			for (int j = 0; j < numFeatures; j++) {
+				columns[j][i] = (float) rand.nextDouble();
+			}
+			targets[i] = 3 * columns[0][i] - columns[2][i] + 0.1 * rand.nextDouble();
+		}
+		int[] rows = new int[NUM_ROWS / 3];
+		double[] rowTargets = new double[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = 3 * i + 1;
+			rowTargets[i] = targets[rows[i]];
+		}
+
+		LassoFitGenerator copied = new LassoFitGenerator();
+		copied.init(numFeatures, rows.length);
+		for (int j = 0; j < numFeatures; j++) {
+			for (int i = 0; i < rows.length; i++) {
+				copied.getFeatureValues(j)[i] = columns[j][rows[i]];
+			}
+		}
+		copied.setTargets(rowTargets);
+		LassoFit copiedFit = copied.fit(-1);
+		int last = copiedFit.numberOfLambdas - 1;
+		double[] copiedWeights = copiedFit.getWeights(last);
+		double copiedIntercept = copiedFit.intercepts[last];
+
+		LassoFitGenerator view = new LassoFitGenerator();
+		view.initView(columns, numFeatures, rows);
+		view.setTargets(rowTargets);
+		LassoFit viewFit = view.fit(-1);
+		assertEquals(copiedFit.numberOfLambdas, viewFit.numberOfLambdas);
+		double[] viewWeights = viewFit.getWeights(last);
+		for (int j = 0; j < numFeatures; j++) {
+			assertEquals(copiedWeights[j], viewWeights[j], 0);
+		}
+		assertEquals(copiedIntercept, viewFit.intercepts[last], 0);
+	}
+
+	private CSVDataJava writeData() throws IOException {
+		return new CSVDataJava(TestData.writeCSV(folder, 9, NUM_ROWS, NUM_FEATURES, new TestData.Target() {
+			public double[] of(double[] x, MersenneTwisterFast rand) {
+				return new double[] { x[0] * x[1] - x[2] + 0.1 * rand.nextDouble() };
+			}
+		}));
+	}
+
+	private double[] crossValidatedFitness(CSVDataJava data, String evalMode) throws Exception {
+		Properties props = new Properties();
+		props.setProperty(Parameters.Names.EVAL_MODE, evalMode);
+		props.setProperty(Parameters.Names.CROSS_VAL_FOLDS, "5");
+		props.setProperty(Parameters.Names.SEED, "17");
+		SRLARSJava fitness = new SRLARSJava(data, 2, false, 1, props);
+		Population pop = TestData.newPopulation(NUM_FEATURES, 4, 20, 4);
+		double[] fitnesses = new double[pop.size()];
+		for (int n = 0; n < fitnesses.length; n++) {
+			Individual ind = pop.get(n);
+			fitness.eval(ind);
+			fitnesses[n] = ind.getFitness();
+			assertEquals(fitnesses[n], ind.getCrossValFitness(), 0);
+			assertTrue(fitnesses[n] > 0);
+		}
+		return fitnesses;
+	}
+
+	@Test
+	public void testFoldsDoNotDependOnTheEvaluationMode() throws Exception {
+		CSVDataJava data = writeData();
+		double[] column = crossValidatedFitness(data, Parameters.Names.EVAL_MODE_COLUMN);
+		double[] row = crossValidatedFitness(data, Parameters.Names.EVAL_MODE_ROW);
+		for (int n = 0; n < column.length; n++) {
+			assertEquals(column[n], row[n], 0);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.java.CSVDataJava;
+import evogpj.evaluation.java.SRLARSJava;
+import evogpj.gp.Individual;
+import evogpj.gp.MersenneTwisterFast;
+
+/**
+ * Check that, once the buffers of the workspace have grown, evaluating an
+ * individual does not allocate memory in proportion to the number of
+ * training cases.
+ */
+public class EvaluationAllocationTest {
+
+	private static final int NUM_ROWS = 20000;
+	private static final int NUM_FEATURES = 5;
+	// the model kept by the individual (its weights, intercept and fitness),
+	// about 700 bytes for these trees, whatever the number of training cases
+	private static final int MAX_BYTES_PER_EVALUATION = 2048;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CSVDataJava writeData() throws IOException {
+		return new CSVDataJava(TestData.writeCSV(folder, 3, NUM_ROWS, NUM_FEATURES, new TestData.Target() {
+			public double[] of(double[] x, MersenneTwisterFast rand) {
+				return new double[] { x[0] * x[1] + Math.sin(x[2]) - x[3] };
+			}
+		}));
+	}
+
+	private void checkSteadyStateAllocation(String evalMode) throws Exception {
+		Properties props = new Properties();
+		props.setProperty(Parameters.Names.EVAL_MODE, evalMode);
+		SRLARSJava fitness = new SRLARSJava(writeData(), 2, false, 1, props);
+		List<Individual> individuals = TestData.newPopulation(NUM_FEATURES, 11, 20, 5);
+		// the workspace grows to the largest tree during the warm-up
+		for (int round = 0; round < 3; round++) {
+			for (Individual ind : individuals) fitness.eval(ind);
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		int evaluations = 0;
+		for (int round = 0; round < 5; round++) {
+			for (Individual ind : individuals) {
+				fitness.eval(ind);
+				evaluations++;
+			}
+		}
+		long bytesPerEvaluation = (threads.getThreadAllocatedBytes(thread) - before) / evaluations;
+		assertTrue(evalMode + " evaluation allocates " + bytesPerEvaluation + " bytes",
+				bytesPerEvaluation < MAX_BYTES_PER_EVALUATION);
+	}
+
+	@Test
+	public void testColumnEvaluationReusesWorkspace() throws Exception {
+		checkSteadyStateAllocation(Parameters.Names.EVAL_MODE_COLUMN);
+	}
+
+	@Test
+	public void testRowEvaluationReusesWorkspace() throws Exception {
+		checkSteadyStateAllocation(Parameters.Names.EVAL_MODE_ROW);
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.java.CSVDataJava;
+import evogpj.evaluation.java.EvaluationAutotuner;
+import evogpj.gp.MersenneTwisterFast;
+import evogpj.gp.Population;
+
+/**
+ * Startup calibration of the evaluation settings, within its time budget.
+ */
+public class EvaluationAutotunerTest {
+
+	private static final int NUM_ROWS = 2000;
+	private static final int NUM_FEATURES = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CSVDataJava writeData() throws IOException {
+		return new CSVDataJava(TestData.writeCSV(folder, 3, NUM_ROWS, NUM_FEATURES, new TestData.Target() {
+			public double[] of(double[] x, MersenneTwisterFast rand) {
+				return new double[] { x[0] * x[1] - x[2] };
+			}
+		}));
+	}
+
+	private Population newSample() {
+		return TestData.newPopulation(NUM_FEATURES, 7, 16, 4);
+	}
+
+	@Test
+	public void testSelectsCandidateSettings() throws Exception {
+		EvaluationAutotuner tuner = new EvaluationAutotuner(writeData(), 2, false, 60000);
+		Properties props = new Properties();
+		props.setProperty(Parameters.Names.POP_SIZE, "100");
+		Properties tuned = tuner.tune(newSample(), props, 3, 2);
+		int threads = Integer.valueOf(tuned.getProperty(Parameters.Names.EXTERNAL_THREADS));
+		assertTrue(threads >= 1 && threads <= 3);
+		// the other properties are kept, and the given ones are not modified
+		assertEquals("100", tuned.getProperty(Parameters.Names.POP_SIZE));
+		assertEquals(1, props.size());
+		assertTrue(tuner.getReport().contains("Autotune: selected"));
+	}
+
+	@Test
+	public void testSubtreeCacheIsKeptAndTilesAreNotTuned() throws Exception {
+		EvaluationAutotuner tuner = new EvaluationAutotuner(writeData(), 2, false, 60000);
+		Properties props = new Properties();
+		props.setProperty(Parameters.Names.SUBTREE_CACHE_MB, "16");
+		Properties tuned = tuner.tune(newSample(), props, 2, 2);
+		assertEquals("16", tuned.getProperty(Parameters.Names.SUBTREE_CACHE_MB));
+		// the tiled evaluation is not used with the cache
+		assertTrue(!tuner.getReport().contains("tile batch 8"));
+		assertTrue(!tuner.getReport().contains("tile batch 32"));
+	}
+
+	@Test
+	public void testNoBudgetKeepsConfiguredSettings() throws Exception {
+		EvaluationAutotuner tuner = new EvaluationAutotuner(writeData(), 2, false, 0);
+		Properties props = new Properties();
+		props.setProperty(Parameters.Names.EVAL_BLOCK_SIZE, "512");
+		Properties tuned = tuner.tune(newSample(), props, 3, 8);
+		assertEquals("3", tuned.getProperty(Parameters.Names.EXTERNAL_THREADS));
+		assertEquals("512", tuned.getProperty(Parameters.Names.EVAL_BLOCK_SIZE));
+		assertTrue(tuner.getReport().contains("out of time"));
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import evogpj.evaluation.java.CompiledTree;
+import evogpj.evaluation.java.EvaluationCostFitness;
+import evogpj.genotype.Tree;
+import evogpj.genotype.TreeGenerator;
+import evogpj.gp.GPException;
+import evogpj.gp.Individual;
+
+/**
+ * Check that the evaluation cost only counts the live nodes of the Lasso
+ * model, weighted by the cost of their function.
+ */
+public class EvaluationCostFitnessTest {
+
+	/**
+	 * @return an individual whose Lasso model only uses the first node with
+	 *         the given opcode
+	 */
+	private Individual model(String tree, int opcode) throws GPException {
+		Tree t = TreeGenerator.generateTree(tree);
+		CompiledTree program = CompiledTree.compile(t);
+		double[] weights = new double[program.getSize()];
+		for (int i = 0; i < weights.length; i++) {
+			if (program.getOpcode(i) == opcode) {
+				weights[i] = 0.5;
+				break;
+			}
+		}
+		Individual ind = new Individual(t);
+		ind.setWeights(weights);
+		ind.setLassoIntercept("0");
+		return ind;
+	}
+
+	private double cost(Individual ind) throws GPException {
+		new EvaluationCostFitness().eval(ind);
+		return ind.getFitness(EvaluationCostFitness.FITNESS_KEY);
+	}
+
+	@Test
+	public void testDeadNodesCostNothing() throws GPException {
+		// only (+ X1 X2) is computed; the sine above it is dead
+		double plus = EvaluationCostFitness.getCost(CompiledTree.PLUS);
+		assertEquals(plus + 1, cost(model("(sin (+ X1 X2))", CompiledTree.PLUS)), 0);
+		double sin = EvaluationCostFitness.getCost(CompiledTree.SIN);
+		assertEquals(sin + plus + 1, cost(model("(sin (+ X1 X2))", CompiledTree.SIN)), 0);
+	}
+
+	@Test
+	public void testTranscendentalFunctionsCostMore() throws GPException {
+		// a larger tree of arithmetic is cheaper than the exponential of a
+		// feature
+		Individual arithmetic = model("(* (+ X1 X2) (- X1 X3))", CompiledTree.MULTIPLY);
+		Individual exp = model("(exp X1)", CompiledTree.EXP);
+		assertTrue(cost(arithmetic) < cost(exp));
+	}
+
+	@Test
+	public void testWithoutWeightsTheWholeTreeCounts() throws GPException {
+		Individual ind = new Individual(TreeGenerator.generateTree("(mylog (mydivide X1 X2))"));
+		double expected = EvaluationCostFitness.getCost(CompiledTree.LOG)
+				+ EvaluationCostFitness.getCost(CompiledTree.DIVIDE) + 1;
+		assertEquals(expected, cost(ind), 0);
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.FitnessFunction;
+import evogpj.evaluation.java.CSVDataJava;
+import evogpj.evaluation.java.LinearScalingScreen;
+import evogpj.evaluation.java.RacingEvaluation;
+import evogpj.evaluation.java.SRLARSJava;
+import evogpj.gp.Individual;
+import evogpj.gp.MersenneTwisterFast;
+import evogpj.gp.Population;
+
+/**
+ * Evaluations stopped at a deadline: the individuals whose evaluation has not
+ * started are skipped.
+ */
+public class EvaluationDeadlineTest {
+
+	private static final int NUM_ROWS = 500;
+	private static final int NUM_FEATURES = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CSVDataJava writeData() throws IOException {
+		return new CSVDataJava(TestData.writeCSV(folder, 3, NUM_ROWS, NUM_FEATURES, new TestData.Target() {
+			public double[] of(double[] x, MersenneTwisterFast rand) {
+				return new double[] { x[0] * x[1] - x[2] };
+			}
+		}));
+	}
+
+	private Population newPopulation(CSVDataJava data) {
+		return TestData.newPopulation(data.getNumberOfFeatures(), 3, 40, 4);
+	}
+
+	private void checkDeadline(String parallelism) throws Exception {
+		CSVDataJava data = writeData();
+		Properties props = new Properties();
+		props.setProperty(Parameters.Names.EVAL_PARALLELISM, parallelism);
+		SRLARSJava fitness = new SRLARSJava(data, 2, false, 2, props);
+		Population pop = newPopulation(data);
+		fitness.setDeadline(System.currentTimeMillis() - 1);
+		assertTrue(fitness.isPastDeadline());
+		fitness.evalPop(pop);
+		for (Individual ind : pop) {
+			assertTrue(ind.getFitnesses().isEmpty());
+		}
+		assertTrue(fitness.getGenerationReport().contains("Deadline: " + pop.size() + " individuals"));
+		fitness.setDeadline(Long.MAX_VALUE);
+		fitness.evalPop(pop);
+		for (Individual ind : pop) {
+			assertEquals(1, ind.getFitnesses().size());
+		}
+		assertTrue(!fitness.getGenerationReport().contains("Deadline"));
+	}
+
+	@Test
+	public void testIndividualJobsAreSkipped() throws Exception {
+		checkDeadline(Parameters.Names.EVAL_PARALLELISM_INDIVIDUALS);
+	}
+
+	@Test
+	public void testRowSplitEvaluationsAreSkipped() throws Exception {
+		checkDeadline(Parameters.Names.EVAL_PARALLELISM_ROWS);
+	}
+
+	/**
+	 * Children evaluated past the deadline, in competition with parents
+	 * evaluated before it
+	 */
+	private Population[] checkDeadlineWithParents(Properties props, boolean screen) throws Exception {
+		CSVDataJava data = writeData();
+		SRLARSJava fitness = new SRLARSJava(data, 2, false, 2, props);
+		LinkedHashMap<String, FitnessFunction> fitnessFunctions = new LinkedHashMap<String, FitnessFunction>();
+		fitnessFunctions.put(SRLARSJava.FITNESS_KEY, fitness);
+		Population parents = newPopulation(data);
+		fitness.evalPop(parents);
+		Population children = newPopulation(data);
+		fitness.setDeadline(System.currentTimeMillis() - 1);
+		Population evaluated;
+		if (screen) {
+			evaluated = new LinearScalingScreen(fitness, props).evalPop(children, parents, fitnessFunctions);
+		} else {
+			evaluated = new RacingEvaluation(fitness, 3, props).evalPop(children, parents, fitnessFunctions);
+		}
+		for (Individual ind : children) {
+			assertTrue(ind.getFitnesses().isEmpty());
+		}
+		return new Population[] { children, evaluated };
+	}
+
+	@Test
+	public void testRaceStopsAtTheDeadline() throws Exception {
+		Properties props = new Properties();
+		props.setProperty(Parameters.Names.RACING_MIN_ROWS, "50");
+		Population[] result = checkDeadlineWithParents(props, false);
+		// the children are returned for the caller to discard
+		assertEquals(result[0].size(), result[1].size());
+	}
+
+	@Test
+	public void testScreenStopsAtTheDeadline() throws Exception {
+		Population[] result = checkDeadlineWithParents(new Properties(), true);
+		assertTrue(result[1].isEmpty());
+	}
+}
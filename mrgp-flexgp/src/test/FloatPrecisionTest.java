@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.java.CSVDataJava;
+import evogpj.evaluation.java.ColumnEvaluator;
+import evogpj.evaluation.java.CompiledTree;
+import evogpj.evaluation.java.FloatColumnEvaluator;
+import evogpj.evaluation.java.SRLARSJava;
+import evogpj.genotype.Tree;
+import evogpj.genotype.TreeGenerator;
+import evogpj.gp.Individual;
+import evogpj.gp.MersenneTwisterFast;
+
+/**
+ * The float32 precision policy: data stored as float columns, and trees
+ * evaluated in float.
+ */
+public class FloatPrecisionTest {
+
+	private static final int NUM_ROWS = 1000;
+	private static final int NUM_FEATURES = 3;
+	// functions whose float and double values stay close on the data
+	private static final List<String> FUNCTIONS = Arrays.asList("+", "-", "*", "sin", "cos", "sqrt", "square");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String writeData() throws IOException {
+		return TestData.writeCSV(folder, 3, NUM_ROWS, NUM_FEATURES, new TestData.Target() {
+			public double[] of(double[] x, MersenneTwisterFast rand) {
+				return new double[] { x[0] * x[1] + Math.sin(x[2]) };
+			}
+		});
+	}
+
+	private List<Tree> newTrees() throws Exception {
+		List<String> terms = new ArrayList<String>();
+		for (int i = 1; i <= NUM_FEATURES; i++) terms.add("X" + i);
+		TreeGenerator treeGen = new TreeGenerator(new MersenneTwisterFast(7), FUNCTIONS, terms);
+		List<Tree> trees = new ArrayList<Tree>();
+		for (int n = 0; n < 30; n++) {
+			trees.add(treeGen.generateTree(5, false));
+		}
+		return trees;
+	}
+
+	@Test
+	public void testDataStoredAsFloatColumns() throws Exception {
+		String csv = writeData();
+		CSVDataJava doubles = new CSVDataJava(csv);
+		CSVDataJava floats = new CSVDataJava(csv, 1, true);
+		assertTrue(floats.isFloat32());
+		assertTrue(!doubles.isFloat32());
+		float[][] columns = floats.getInputColumnsFloat();
+		double[][] rows = floats.getInputValues();
+		for (int j = 0; j < NUM_FEATURES; j++) {
+			assertEquals((float) doubles.getMinFeatures()[j], floats.getMinFeatures()[j], 0);
+			assertEquals((float) doubles.getMaxFeatures()[j], floats.getMaxFeatures()[j], 0);
+			for (int i = 0; i < NUM_ROWS; i++) {
+				assertEquals((float) doubles.getInputValues()[i][j], columns[j][i], 0);
+				assertEquals(columns[j][i], rows[i][j], 0);
+			}
+		}
+		assertTrue(Arrays.equals(doubles.getTargetValues(), floats.getTargetValues()));
+		assertTrue(doubles.getFingerprint() != floats.getFingerprint());
+	}
+
+	@Test
+	public void testFloatEvaluationIsCloseToDouble() throws Exception {
+		CSVDataJava data = new CSVDataJava(writeData(), 1, true);
+		ColumnEvaluator evaluator = new ColumnEvaluator(64);
+		FloatColumnEvaluator floatEvaluator = new FloatColumnEvaluator(64);
+		for (Tree t : newTrees()) {
+			CompiledTree program = CompiledTree.compile(t);
+			float[][] expected = new float[program.getSize()][NUM_ROWS];
+			float[][] actual = new float[program.getSize()][NUM_ROWS];
+			evaluator.evaluate(program, data.getInputColumns(), NUM_ROWS, expected);
+			floatEvaluator.evaluate(program, data.getInputColumnsFloat(), 0, NUM_ROWS, actual);
+			for (int k = 0; k < program.getSize(); k++) {
+				for (int i = 0; i < NUM_ROWS; i++) {
+					assertEquals(expected[k][i], actual[k][i], 1e-4 * (1 + Math.abs(expected[k][i])));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFloatFitnessIsCloseToDouble() throws Exception {
+		String csv = writeData();
+		Properties props = new Properties();
+		SRLARSJava doubleFitness = new SRLARSJava(new CSVDataJava(csv), 2, false, 1, props);
+		props.setProperty(Parameters.Names.PRECISION, Parameters.Names.PRECISION_FLOAT32);
+		SRLARSJava floatFitness = new SRLARSJava(new CSVDataJava(csv, 1, true), 2, false, 1, props);
+		for (Tree t : newTrees()) {
+			Individual doubleInd = new Individual(t);
+			Individual floatInd = new Individual(t);
+			doubleFitness.eval(doubleInd);
+			floatFitness.eval(floatInd);
+			double expected = doubleInd.getFitness();
+			assertEquals(expected, floatInd.getFitness(), 1e-3 * expected);
+		}
+	}
+}
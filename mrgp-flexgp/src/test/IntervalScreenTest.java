@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.java.CompiledTree;
+import evogpj.evaluation.java.IntervalScreen;
+import evogpj.genotype.Tree;
+import evogpj.genotype.TreeGenerator;
+import evogpj.gp.GPException;
+import evogpj.gp.MersenneTwisterFast;
+
+/**
+ * Check the verdicts of {@link IntervalScreen}, and that trees proved
+ * non-finite are non-finite on the training domain.
+ */
+public class IntervalScreenTest {
+
+	// X1 in [100, 200], X2 in [-2, 2], X3 constant
+	private static final double[] MIN = {100, -2, 3};
+	private static final double[] MAX = {200, 2, 3};
+
+	private static int classify(String prefix) throws GPException {
+		return new IntervalScreen(MIN, MAX).classify(CompiledTree.compile(TreeGenerator.generateTree(prefix)));
+	}
+
+	@Test
+	public void testVerdicts() throws GPException {
+		assertEquals(IntervalScreen.NONE, classify("(+ X1 X2)"));
+		assertEquals(IntervalScreen.NONE, classify("(exp X2)"));
+		// exp(exp(100)) overflows
+		assertEquals(IntervalScreen.NON_FINITE, classify("(+ X2 (exp (exp X1)))"));
+		// exp(100) is a double but not a float
+		assertEquals(IntervalScreen.NON_FINITE, classify("(sin (exp X1))"));
+		// overflow for some rows only
+		assertEquals(IntervalScreen.NONE, classify("(exp (exp X2))"));
+		// inf - inf on every row
+		assertEquals(IntervalScreen.NON_FINITE, classify("(- (exp (exp X3)) (exp (exp (exp X3))))"));
+		assertEquals(IntervalScreen.CONSTANT, classify("(* (sin X3) (mylog X3))"));
+		assertEquals(IntervalScreen.NONE, classify("(* (sin X3) (mylog X2))"));
+		// the protected division by a denominator always below the threshold is 1,
+		// finite although X1 / 0 is not
+		assertEquals(IntervalScreen.NONE, classify("(mydivide X1 (mydivide (- X3 X3) X1))"));
+	}
+
+	@Test
+	public void testNonFiniteTreesAreNonFinite() throws GPException {
+		MersenneTwisterFast rand = new MersenneTwisterFast(23);
+		List<String> terms = new ArrayList<String>();
+		for (int i = 1; i <= MIN.length; i++) terms.add("X" + i);
+		TreeGenerator treeGen = new TreeGenerator(rand, Parameters.Defaults.FUNCTIONS, terms);
+		IntervalScreen screen = new IntervalScreen(MIN, MAX);
+		int nonFinite = 0;
+		for (int n = 0; n < 2000; n++) {
+			Tree t = treeGen.generateTree(6, false);
+			CompiledTree program = CompiledTree.compile(t);
+			if (screen.classify(program) != IntervalScreen.NON_FINITE) continue;
+			nonFinite++;
+			double[] values = new double[program.getSize()];
+			boolean[] finiteSomewhere = new boolean[program.getSize()];
+			for (int r = 0; r < 50; r++) {
+				double[] row = new double[MIN.length];
+				for (int j = 0; j < row.length; j++) row[j] = MIN[j] + rand.nextDouble() * (MAX[j] - MIN[j]);
+				program.evalIntermediate(row, values);
+				for (int i = 0; i < values.length; i++) {
+					float v = (float) values[i];
+					if (!Float.isNaN(v) && !Float.isInfinite(v)) finiteSomewhere[i] = true;
+				}
+			}
+			boolean someNodeNeverFinite = false;
+			for (boolean f : finiteSomewhere) someNodeNeverFinite |= !f;
+			assertTrue(t.toPrefixString(), someNodeNeverFinite);
+		}
+		assertTrue(nonFinite > 0);
+	}
+}
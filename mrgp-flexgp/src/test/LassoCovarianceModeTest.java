@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import edu.uci.lasso.LassoFit;
+import edu.uci.lasso.LassoFitGenerator;
+import evogpj.evaluation.java.EvaluationPool;
+import evogpj.gp.MersenneTwisterFast;
+
+/**
+ * Covariance mode of the Lasso fit: the path is run on the correlation matrix
+ * of the features, built in a single pass over the observations.
+ */
+public class LassoCovarianceModeTest {
+
+	// several chunks of the pass over the observations
+	private static final int NUM_ROWS = 20000;
+	private static final int NUM_FEATURES = 6;
+
+	private final float[][] columns = new float[NUM_FEATURES][NUM_ROWS];
+	private final double[] targets = new double[NUM_ROWS];
+	private final double[] otherTargets = new double[NUM_ROWS];
+
+	public LassoCovarianceModeTest() {
+		MersenneTwisterFast rand = new MersenneTwisterFast(2);
+		for (int i = 0; i < NUM_ROWS; i++) {
+			for (int j = 0; j < NUM_FEATURES; j++) {
+				columns[j][i] = (float) rand.nextGaussian();
+			}
+			// correlated features, and features far from 0
+			columns[1][i] = columns[0][i] + 0.1f * columns[1][i];
+			columns[2][i] = 1000 + columns[2][i];
+			targets[i] = 2 * columns[0][i] - columns[2][i] + 0.5 * columns[3][i] + 0.1 * rand.nextGaussian();
+			otherTargets[i] = columns[4][i] - 3 * columns[5][i] + 0.1 * rand.nextGaussian();
+		}
+	}
+
+	private LassoFitGenerator newGenerator(boolean covariance) throws Exception {
+		LassoFitGenerator generator = new LassoFitGenerator();
+		generator.setCovarianceMode(covariance);
+		generator.init(NUM_FEATURES, NUM_ROWS);
+		for (int j = 0; j < NUM_FEATURES; j++) {
+			System.arraycopy(columns[j], 0, generator.getFeatureValues(j), 0, NUM_ROWS);
+		}
+		return generator;
+	}
+
+	private static void assertSameModels(LassoFit expected, LassoFit actual, double tolerance) {
+		int numberOfLambdas = Math.min(expected.numberOfLambdas, actual.numberOfLambdas);
+		for (int k = 1; k < numberOfLambdas; k++) {
+			double[] expectedWeights = expected.getWeights(k);
+			double[] actualWeights = actual.getWeights(k);
+			for (int j = 0; j < NUM_FEATURES; j++) {
+				assertEquals(expectedWeights[j], actualWeights[j], tolerance * (1 + Math.abs(expectedWeights[j])));
+			}
+			assertEquals(expected.intercepts[k], actual.intercepts[k], tolerance * (1 + Math.abs(expected.intercepts[k])));
+		}
+	}
+
+	@Test
+	public void testCovarianceFitIsTheNaiveFit() throws Exception {
+		LassoFitGenerator naive = newGenerator(false);
+		naive.setTargets(targets);
+		LassoFitGenerator covariance = newGenerator(true);
+		covariance.setTargets(targets);
+		assertSameModels(naive.fit(-1), covariance.fit(-1), 1e-3);
+		// a refit reuses the features
+		naive.setTargets(otherTargets);
+		covariance.setTargets(otherTargets);
+		assertSameModels(naive.refit(-1), covariance.refit(-1), 1e-3);
+	}
+
+	@Test
+	public void testCovarianceFitDoesNotDependOnTheThreads() throws Exception {
+		LassoFitGenerator sequential = newGenerator(true);
+		sequential.setTargets(targets);
+		LassoFit expected = sequential.fit(-1);
+		double[] expectedWeights = expected.getWeights(expected.numberOfLambdas - 1);
+		LassoFitGenerator parallel = newGenerator(true);
+		EvaluationPool pool = new EvaluationPool(3);
+		try {
+			parallel.setParallelLoop(pool);
+			parallel.setTargets(targets);
+			LassoFit actual = parallel.fit(-1);
+			assertEquals(expected.numberOfLambdas, actual.numberOfLambdas);
+			double[] actualWeights = actual.getWeights(actual.numberOfLambdas - 1);
+			for (int j = 0; j < NUM_FEATURES; j++) {
+				assertEquals(expectedWeights[j], actualWeights[j], 0);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testCovarianceViewFitIsTheFitOfTheRows() throws Exception {
+		int[] rows = new int[NUM_ROWS / 2];
+		double[] rowTargets = new double[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = 2 * i + 1;
+			rowTargets[i] = targets[rows[i]];
+		}
+		LassoFitGenerator copied = new LassoFitGenerator();
+		copied.setCovarianceMode(true);
+		copied.init(NUM_FEATURES, rows.length);
+		for (int j = 0; j < NUM_FEATURES; j++) {
+			for (int i = 0; i < rows.length; i++) {
+				copied.getFeatureValues(j)[i] = columns[j][rows[i]];
+			}
+		}
+		copied.setTargets(rowTargets);
+		LassoFitGenerator view = new LassoFitGenerator();
+		view.setCovarianceMode(true);
+		view.initView(columns, NUM_FEATURES, rows);
+		view.setTargets(rowTargets);
+		assertSameModels(copied.fit(-1), view.fit(-1), 0);
+	}
+}
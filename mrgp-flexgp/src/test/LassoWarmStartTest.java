@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.uci.lasso.LassoFit;
+import edu.uci.lasso.LassoFitGenerator;
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.java.CSVDataJava;
+import evogpj.evaluation.java.CompiledTree;
+import evogpj.evaluation.java.LassoWarmStart;
+import evogpj.evaluation.java.SRLARSJava;
+import evogpj.genotype.TreeGenerator;
+import evogpj.gp.Individual;
+import evogpj.gp.MersenneTwisterFast;
+import evogpj.gp.Population;
+import evogpj.operator.SubtreeMutate;
+
+/**
+ * Lasso fits warm started from the model of the parent: the path starts a few
+ * lambdas before the lambda of the parent, from its weights on the shared
+ * subtrees, and gives the models of a cold fit.
+ */
+public class LassoWarmStartTest {
+
+	private static final int NUM_ROWS = 2000;
+	private static final int NUM_FEATURES = 6;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final float[][] columns = new float[NUM_FEATURES][NUM_ROWS];
+	private final double[] targets = new double[NUM_ROWS];
+
+	public LassoWarmStartTest() {
+		MersenneTwisterFast rand = new MersenneTwisterFast(5);
+		for (int i = 0; i < NUM_ROWS; i++) {
+			// features of decreasing weights, entering the path one by one
+			double target = 0;
+			for (int j = 0; j < NUM_FEATURES; j++) {
+				columns[j][i] = (float) rand.nextGaussian();
+				target += Math.pow(2, -j) * columns[j][i];
+			}
+			targets[i] = target + rand.nextGaussian();
+		}
+	}
+
+	private LassoFit fit(int numFeatures, double[] warmWeights, double warmLambda) throws Exception {
+		LassoFitGenerator generator = new LassoFitGenerator();
+		generator.init(numFeatures, NUM_ROWS);
+		for (int j = 0; j < numFeatures; j++) {
+			System.arraycopy(columns[j], 0, generator.getFeatureValues(j), 0, NUM_ROWS);
+		}
+		generator.setTargets(targets);
+		if (warmWeights != null) {
+			generator.setWarmStart(warmWeights, warmLambda);
+		}
+		return generator.fit(-1);
+	}
+
+	// the model with the most nonzero weights, as picked by the evaluation
+	private static int pickModel(LassoFit fit) {
+		int picked = 0;
+		for (int k = 0; k < fit.numberOfLambdas; k++) {
+			if (fit.nonZeroWeights[k] > fit.nonZeroWeights[picked]) {
+				picked = k;
+			}
+		}
+		return picked;
+	}
+
+	private static double[][] getAllWeights(LassoFit fit) {
+		double[][] weights = new double[fit.numberOfLambdas][];
+		for (int k = 0; k < fit.numberOfLambdas; k++) {
+			weights[k] = fit.getWeights(k);
+		}
+		return weights;
+	}
+
+	@Test
+	public void testWarmFitIsTheColdFit() throws Exception {
+		// the parent has the features of the child
+		LassoFit cold = fit(NUM_FEATURES, null, 0);
+		double[][] coldWeights = getAllWeights(cold);
+		double[] coldLambdas = Arrays.copyOf(cold.lambdas, cold.numberOfLambdas);
+		int coldModel = pickModel(cold);
+		double[] warmWeights = coldWeights[coldModel];
+
+		LassoFit warm = fit(NUM_FEATURES, warmWeights, coldLambdas[coldModel]);
+		assertTrue(warm.firstLambda > 1);
+		assertTrue(warm.firstLambda < coldModel);
+		assertTrue(!warm.leftWarmStart);
+		assertEquals(NUM_FEATURES, warm.warmFeatures);
+		assertEquals(cold.numberOfLambdas, warm.numberOfLambdas);
+		assertEquals(coldModel, pickModel(warm));
+		for (int k = 0; k < warm.numberOfLambdas; k++) {
+			assertEquals(coldLambdas[k], warm.lambdas[k], 1e-12 * coldLambdas[k]);
+			if (k < warm.firstLambda) {
+				assertEquals(0, warm.nonZeroWeights[k]);
+				continue;
+			}
+			double[] weights = warm.getWeights(k);
+			for (int j = 0; j < NUM_FEATURES; j++) {
+				assertEquals(coldWeights[k][j], weights[j], 1e-3 * (1 + Math.abs(coldWeights[k][j])));
+			}
+		}
+	}
+
+	@Test
+	public void testPathLeavingTheWarmStartStops() throws Exception {
+		// the parent lacks the last feature of the child
+		LassoFit parent = fit(NUM_FEATURES - 1, null, 0);
+		int parentModel = pickModel(parent);
+		double[] warmWeights = Arrays.copyOf(parent.getWeights(parentModel), NUM_FEATURES);
+		double warmLambda = parent.lambdas[parentModel];
+
+		LassoFit cold = fit(NUM_FEATURES, null, 0);
+		double[][] coldWeights = getAllWeights(cold);
+
+		LassoFit warm = fit(NUM_FEATURES, warmWeights, warmLambda);
+		assertTrue(warm.firstLambda > 1);
+		assertTrue(warm.leftWarmStart);
+		assertEquals(NUM_FEATURES - 1, warm.warmFeatures);
+		// the models completed before the last feature entered
+		assertTrue(warm.numberOfLambdas < cold.numberOfLambdas);
+		for (int k = warm.firstLambda; k < warm.numberOfLambdas; k++) {
+			double[] weights = warm.getWeights(k);
+			for (int j = 0; j < NUM_FEATURES; j++) {
+				assertEquals(coldWeights[k][j], weights[j], 1e-3 * (1 + Math.abs(coldWeights[k][j])));
+			}
+		}
+	}
+
+	@Test
+	public void testWeightsOfTheSharedSubtrees() throws Exception {
+		CompiledTree parent = CompiledTree.compile(TreeGenerator.generateTree("(+ X1 (* X2 (sin X3)))"));
+		String[] keys = parent.getSubtreeKeys();
+		List<String> weighted = Arrays.asList("X1", "(sin X3)", "(* X2 (sin X3))");
+		double[] weights = new double[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			weights[i] = weighted.indexOf(keys[i]) + 1;
+		}
+		LassoWarmStart warmStart = new LassoWarmStart(parent, weights, 0.5);
+		assertEquals(0.5, warmStart.getLambda(), 0);
+
+		CompiledTree child = CompiledTree.compile(TreeGenerator.generateTree("(- (* X2 (sin X3)) (+ (sin X3) X1))"));
+		keys = child.getSubtreeKeys();
+		double[] childWeights = warmStart.getWeights(child);
+		boolean sinSeen = false;
+		for (int i = 0; i < keys.length; i++) {
+			double expected = weighted.indexOf(keys[i]) + 1;
+			if (keys[i].equals("(sin X3)")) {
+				// only the first occurrence of a subtree gets its weight
+				expected = sinSeen ? 0 : expected;
+				sinSeen = true;
+			}
+			assertEquals(keys[i], expected, childWeights[i], 0);
+		}
+	}
+
+	private CSVDataJava writeData() throws IOException {
+		return new CSVDataJava(TestData.writeCSV(folder, 3, 500, 3, new TestData.Target() {
+			public double[] of(double[] x, MersenneTwisterFast rand) {
+				return new double[] { x[0] * x[1] - Math.sin(x[2]) };
+			}
+		}));
+	}
+
+	@Test
+	public void testChildrenEvaluatedFromTheModelsOfTheirParents() throws Exception {
+		CSVDataJava data = writeData();
+		Properties props = new Properties();
+		props.setProperty(Parameters.Names.LASSO_WARM_START, "true");
+		SRLARSJava warmFitness = new SRLARSJava(data, 2, false, 1, props);
+		SRLARSJava coldFitness = new SRLARSJava(data, 2, false, 1, new Properties());
+		MersenneTwisterFast rand = new MersenneTwisterFast(7);
+		List<String> terms = Arrays.asList("X1", "X2", "X3");
+		TreeGenerator treeGen = new TreeGenerator(rand, Parameters.Defaults.FUNCTIONS, new ArrayList<String>(terms));
+		Population parents = new Population();
+		for (int n = 0; n < 40; n++) {
+			parents.add(new Individual(treeGen.generateTree(5, false)));
+		}
+		warmFitness.evalPop(parents);
+
+		SubtreeMutate mutate = new SubtreeMutate(rand, new Properties(), treeGen);
+		Population warmChildren = new Population();
+		Population coldChildren = new Population();
+		int warmStarts = 0;
+		for (Individual parent : parents) {
+			if (parent.getLassoWarmStart() != null) {
+				warmStarts++;
+			}
+			Individual child = mutate.mutate(parent);
+			assertSame(parent.getLassoWarmStart(), child.getLassoWarmStart());
+			warmChildren.add(child);
+			coldChildren.add(child.copy());
+		}
+		assertTrue(warmStarts > parents.size() / 2);
+		warmFitness.evalPop(warmChildren);
+		coldFitness.evalPop(coldChildren);
+		String report = warmFitness.getGenerationReport();
+		assertTrue(report.contains("Warm start: ") && !report.contains("Warm start: 0 of"));
+		for (int n = 0; n < warmChildren.size(); n++) {
+			double expected = coldChildren.get(n).getFitness();
+			assertEquals(expected, warmChildren.get(n).getFitness(), 1e-6 * expected);
+		}
+	}
+}
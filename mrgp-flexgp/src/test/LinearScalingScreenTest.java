@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.FitnessFunction;
+import evogpj.evaluation.java.CSVDataJava;
+import evogpj.evaluation.java.LinearScalingScreen;
+import evogpj.evaluation.java.SRLARSJava;
+import evogpj.gp.Individual;
+import evogpj.gp.MersenneTwisterFast;
+import evogpj.gp.Population;
+
+/**
+ * The Lasso fit of the children promoted by the linear scaling screen reuses
+ * the node columns of the screen: it is the fit of a fresh evaluation.
+ */
+public class LinearScalingScreenTest {
+
+	private static final int NUM_ROWS = 500;
+	private static final int NUM_FEATURES = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CSVDataJava writeData() throws IOException {
+		return new CSVDataJava(TestData.writeCSV(folder, 5, NUM_ROWS, NUM_FEATURES, new TestData.Target() {
+			public double[] of(double[] x, MersenneTwisterFast rand) {
+				return new double[] { x[0] * x[1] - Math.sin(x[2]) };
+			}
+		}));
+	}
+
+	private void checkPromotedFit(Properties props) throws Exception {
+		CSVDataJava data = writeData();
+		SRLARSJava fitness = new SRLARSJava(data, 2, false, 2, props);
+		LinkedHashMap<String, FitnessFunction> fitnessFunctions = new LinkedHashMap<String, FitnessFunction>();
+		fitnessFunctions.put(SRLARSJava.FITNESS_KEY, fitness);
+		Population parents = TestData.newPopulation(NUM_FEATURES, 5, 40, 4);
+		fitness.evalPop(parents);
+		Population children = TestData.newPopulation(NUM_FEATURES, 6, 40, 4);
+		Population promoted = new LinearScalingScreen(fitness, props).evalPop(children, parents, fitnessFunctions);
+		assertTrue(!promoted.isEmpty() && promoted.size() < children.size());
+		fitness.evalPop(promoted);
+
+		SRLARSJava fresh = new SRLARSJava(data, 2, false, 2, props);
+		Population copies = new Population();
+		for (Individual ind : promoted) {
+			copies.add(new Individual(ind.getGenotype()));
+		}
+		fresh.evalPop(copies);
+		for (int i = 0; i < promoted.size(); i++) {
+			assertEquals(copies.get(i).getFitness(SRLARSJava.FITNESS_KEY), promoted.get(i).getFitness(SRLARSJava.FITNESS_KEY), 0);
+			assertEquals(copies.get(i).getWeights(), promoted.get(i).getWeights());
+		}
+	}
+
+	@Test
+	public void testPromotedFitReusesTheColumns() throws Exception {
+		checkPromotedFit(new Properties());
+	}
+
+	@Test
+	public void testPromotedTiledFitReusesTheColumns() throws Exception {
+		Properties props = new Properties();
+		props.setProperty(Parameters.Names.EVAL_PARALLELISM, Parameters.Names.EVAL_PARALLELISM_INDIVIDUALS);
+		props.setProperty(Parameters.Names.EVAL_TILE_BATCH, "4");
+		checkPromotedFit(props);
+	}
+
+	@Test
+	public void testPromotedFitWithoutBudget() throws Exception {
+		Properties props = new Properties();
+		props.setProperty(Parameters.Names.LINEAR_SCALING_SCREEN_MB, "0");
+		checkPromotedFit(props);
+	}
+}
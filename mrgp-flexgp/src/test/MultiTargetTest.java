@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.java.CSVDataJava;
+import evogpj.evaluation.java.SRLARSJava;
+import evogpj.gp.Individual;
+import evogpj.gp.MersenneTwisterFast;
+
+/**
+ * Multi-target regression: the last columns of the data are the targets, and
+ * the nodes of a tree are fit to each of them.
+ */
+public class MultiTargetTest {
+
+	private static final int NUM_ROWS = 500;
+	private static final int NUM_FEATURES = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Two targets: y and a copy of y scaled by 10
+	 */
+	private CSVDataJava writeData() throws IOException {
+		return new CSVDataJava(TestData.writeCSV(folder, 5, NUM_ROWS, NUM_FEATURES, new TestData.Target() {
+			public double[] of(double[] x, MersenneTwisterFast rand) {
+				double y = x[0] * x[1] - x[2];
+				return new double[] { y, 10 * y };
+			}
+		}), 2);
+	}
+
+	@Test
+	public void testLastColumnsAreTargets() throws Exception {
+		CSVDataJava data = writeData();
+		assertEquals(NUM_FEATURES, data.getNumberOfFeatures());
+		assertEquals(2, data.getNumberOfTargets());
+		for (int i = 0; i < NUM_ROWS; i++) {
+			assertEquals(10 * data.getTargetValues(0)[i], data.getTargetValues(1)[i], 1e-9);
+		}
+		assertEquals(10 * data.getTargetMax(0), data.getTargetMax(1), 1e-9);
+		assertTrue(Arrays.equals(data.getTargetValues(0), data.getTargetValues()));
+	}
+
+	private void checkScaledTargetGetsScaledModel(String evalMode) throws Exception {
+		Properties props = new Properties();
+		props.setProperty(Parameters.Names.EVAL_MODE, evalMode);
+		SRLARSJava fitness = new SRLARSJava(writeData(), 2, false, 1, props);
+		for (Individual ind : TestData.newPopulation(NUM_FEATURES, 7, 20, 4)) {
+			fitness.eval(ind);
+			assertEquals(2, ind.getNumberOfTargets());
+			double[] w0 = ind.getTargetWeights(0);
+			double[] w1 = ind.getTargetWeights(1);
+			assertEquals(w0.length, w1.length);
+			// the Lasso path is scale invariant up to the float rounding
+			for (int k = 0; k < w0.length; k++) {
+				assertEquals(10 * w0[k], w1[k], 1e-3 * (1 + Math.abs(w1[k])));
+			}
+			assertEquals(10 * Double.parseDouble(ind.getTargetIntercept(0)),
+					Double.parseDouble(ind.getTargetIntercept(1)), 1e-3);
+		}
+	}
+
+	@Test
+	public void testColumnEvaluationFitsEachTarget() throws Exception {
+		checkScaledTargetGetsScaledModel(Parameters.Names.EVAL_MODE_COLUMN);
+	}
+
+	@Test
+	public void testRowEvaluationFitsEachTarget() throws Exception {
+		checkScaledTargetGetsScaledModel(Parameters.Names.EVAL_MODE_ROW);
+	}
+}
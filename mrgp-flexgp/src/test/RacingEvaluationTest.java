@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.FitnessFunction;
+import evogpj.evaluation.java.CSVDataJava;
+import evogpj.evaluation.java.RacingEvaluation;
+import evogpj.evaluation.java.SRLARSJava;
+import evogpj.genotype.TreeGenerator;
+import evogpj.gp.Individual;
+import evogpj.gp.MersenneTwisterFast;
+import evogpj.gp.Population;
+
+/**
+ * The children dropped by the race keep a pessimistic fitness and are flagged
+ * as subsample fits; the survivors are fit on all the training cases.
+ */
+public class RacingEvaluationTest {
+
+	private static final int NUM_ROWS = 2000;
+	private static final int NUM_FEATURES = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CSVDataJava writeData() throws IOException {
+		return new CSVDataJava(TestData.writeCSV(folder, 9, NUM_ROWS, NUM_FEATURES, new TestData.Target() {
+			public double[] of(double[] x, MersenneTwisterFast rand) {
+				return new double[] { x[0] * x[1] - Math.sin(x[2]) + 0.1 * rand.nextGaussian() };
+			}
+		}));
+	}
+
+	@Test
+	public void testDroppedChildrenAreFlagged() throws Exception {
+		CSVDataJava data = writeData();
+		Properties props = new Properties();
+		props.setProperty(Parameters.Names.RACING_MIN_ROWS, "50");
+		SRLARSJava fitness = new SRLARSJava(data, 2, false, 2, props);
+		LinkedHashMap<String, FitnessFunction> fitnessFunctions = new LinkedHashMap<String, FitnessFunction>();
+		fitnessFunctions.put(SRLARSJava.FITNESS_KEY, fitness);
+		// parents with the model of the data: the random children cannot
+		// survive the truncation
+		Population parents = new Population();
+		for (int n = 0; n < 20; n++) {
+			parents.add(new Individual(TreeGenerator.generateTree("(- (* X1 X2) (sin X3))")));
+		}
+		fitness.evalPop(parents);
+		Population children = TestData.newPopulation(NUM_FEATURES, 10, 40, 5);
+		Population survivors = new RacingEvaluation(fitness, 3, props).evalPop(children, parents, fitnessFunctions);
+		assertTrue(survivors.size() < children.size());
+
+		IdentityHashMap<Individual, Boolean> survived = new IdentityHashMap<Individual, Boolean>();
+		for (Individual ind : survivors) {
+			survived.put(ind, Boolean.TRUE);
+		}
+		Population dropped = new Population();
+		Population copies = new Population();
+		for (Individual ind : children) {
+			assertEquals(!survived.containsKey(ind), ind.isSubsampleFit());
+			if (ind.isSubsampleFit()) {
+				dropped.add(ind);
+				copies.add(new Individual(ind.getGenotype()));
+			}
+		}
+		// the subsample fit is optimistic: the pessimistic value of a dropped
+		// child is mostly below its fitness on all the training cases
+		fitness.evalPop(copies);
+		int pessimistic = 0;
+		for (int i = 0; i < dropped.size(); i++) {
+			assertTrue(!copies.get(i).isSubsampleFit());
+			if (dropped.get(i).getFitness() <= copies.get(i).getFitness()) pessimistic++;
+		}
+		assertTrue(pessimistic + " of " + dropped.size(), 2 * pessimistic >= dropped.size());
+
+		// a new fit clears the flag
+		fitness.evalPop(dropped);
+		for (Individual ind : dropped) {
+			assertTrue(!ind.isSubsampleFit());
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.LinkedHashMap;
+
+import org.junit.Test;
+
+import evogpj.evaluation.FitnessFunction;
+import evogpj.evaluation.java.SemanticDedup;
+import evogpj.evaluation.java.SubtreeComplexityFitness;
+import evogpj.genotype.TreeGenerator;
+import evogpj.gp.Individual;
+import evogpj.gp.Population;
+
+/**
+ * Check which children the semantic deduplication considers duplicates.
+ */
+public class SemanticDedupTest {
+
+	private static final String ERROR = "error";
+
+	private final LinkedHashMap<String, FitnessFunction> fitnessFunctions = new LinkedHashMap<String, FitnessFunction>();
+
+	public SemanticDedupTest() {
+		fitnessFunctions.put(ERROR, new FitnessFunction() {
+			@Override
+			public void evalPop(Population pop) {
+			}
+
+			@Override
+			public Boolean isMaximizingFunction() {
+				return true;
+			}
+		});
+		fitnessFunctions.put(SubtreeComplexityFitness.FITNESS_KEY, new SubtreeComplexityFitness());
+	}
+
+	private Individual individual(Long hash, double fitness, double complexity) {
+		Individual ind = new Individual(TreeGenerator.generateTree("(+ X1 X2)"));
+		ind.setFitness(ERROR, fitness);
+		ind.setFitness(SubtreeComplexityFitness.FITNESS_KEY, complexity);
+		ind.setPredictionHash(hash);
+		return ind;
+	}
+
+	@Test
+	public void testDuplicatesOfBetterOrEqualIndividualsAreRemoved() {
+		Population members = new Population();
+		members.add(individual(1L, 0.5, 10));
+		Population children = new Population();
+		Individual larger = individual(1L, 0.5, 12);
+		Individual smaller = individual(1L, 0.5, 8);
+		Individual unknown = individual(null, 0.5, 12);
+		Individual first = individual(2L, 0.4, 5);
+		Individual second = individual(2L, 0.4, 5);
+		children.add(larger);
+		children.add(smaller);
+		children.add(unknown);
+		children.add(first);
+		children.add(second);
+
+		SemanticDedup dedup = new SemanticDedup(true);
+		Population unique = dedup.filter(members, new Population(), children, fitnessFunctions);
+		assertEquals(3, unique.size());
+		assertSame(smaller, unique.get(0));
+		assertSame(unknown, unique.get(1));
+		assertSame(first, unique.get(2));
+
+		// the duplicates are only counted in report mode
+		SemanticDedup report = new SemanticDedup(false);
+		assertEquals(children.size(), report.filter(members, new Population(), children, fitnessFunctions).size());
+	}
+
+	@Test
+	public void testKeptChildrenAreCompared() {
+		Population kept = new Population();
+		kept.add(individual(3L, 0.5, 10));
+		Population fresh = new Population();
+		fresh.add(individual(3L, 0.5, 10));
+		SemanticDedup dedup = new SemanticDedup(true);
+		assertEquals(0, dedup.filter(new Population(), kept, fresh, fitnessFunctions).size());
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.rules.TemporaryFolder;
+
+import evogpj.algorithm.Parameters;
+import evogpj.genotype.TreeGenerator;
+import evogpj.gp.Individual;
+import evogpj.gp.MersenneTwisterFast;
+import evogpj.gp.Population;
+
+/**
+ * Data files of the tests: random features uniform in [-2, 2), and target
+ * columns computed from them; and random populations over their features.
+ */
+public class TestData {
+
+	/**
+	 * Target columns of a row of the data
+	 */
+	public interface Target {
+		/**
+		 * @param x features of the row
+		 * @param rand generator of the features, for a noise
+		 * @return the value of each target column
+		 */
+		double[] of(double[] x, MersenneTwisterFast rand);
+	}
+
+	/**
+	 * Write a CSV file "data.csv" in the folder, the features first and then
+	 * the targets
+	 * @return the path of the file
+	 */
+	public static String writeCSV(TemporaryFolder folder, long seed, int numRows, int numFeatures, Target target)
+			throws IOException {
+		MersenneTwisterFast rand = new MersenneTwisterFast(seed);
+		File csv = folder.newFile("data.csv");
+		FileWriter w = new FileWriter(csv);
+		try {
+			for (int i = 0; i < numRows; i++) {
+				double[] x = new double[numFeatures];
+				StringBuilder sb = new StringBuilder();
+				for (int j = 0; j < numFeatures; j++) {
+					x[j] = rand.nextDouble() * 4 - 2;
+					sb.append(x[j]).append(',');
+				}
+				double[] y = target.of(x, rand);
+				for (int t = 0; t < y.length; t++) {
+					sb.append(y[t]).append((t == y.length - 1) ? '\n' : ',');
+				}
+				w.write(sb.toString());
+			}
+		} finally {
+			w.close();
+		}
+		return csv.getPath();
+	}
+
+	/**
+	 * Random individuals over the features X1..Xn, with the default function
+	 * set
+	 * @param seed seed of the tree generator
+	 * @param size number of individuals
+	 * @param depth maximum depth of the trees
+	 */
+	public static Population newPopulation(int numFeatures, long seed, int size, int depth) {
+		List<String> terms = new ArrayList<String>();
+		for (int i = 1; i <= numFeatures; i++) terms.add("X" + i);
+		TreeGenerator treeGen = new TreeGenerator(new MersenneTwisterFast(seed), Parameters.Defaults.FUNCTIONS, terms);
+		Population pop = new Population();
+		for (int n = 0; n < size; n++) {
+			pop.add(new Individual(treeGen.generateTree(depth, false)));
+		}
+		return pop;
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.java.ColumnEvaluator;
+import evogpj.evaluation.java.CompiledTree;
+import evogpj.evaluation.java.FloatColumnEvaluator;
+import evogpj.evaluation.java.TiledEvaluator;
+import evogpj.genotype.TreeGenerator;
+import evogpj.gp.MersenneTwisterFast;
+
+/**
+ * The tiled evaluation of a batch of trees gives the node values of the
+ * evaluation of the trees one at a time.
+ */
+public class TiledEvaluatorTest {
+
+	private static final int NUM_ROWS = 2000;
+	private static final int NUM_FEATURES = 5;
+	private static final int NUM_TREES = 6;
+	private static final int BLOCK_SIZE = 64;
+	// several tiles, the last one partial and not a multiple of the blocks
+	private static final int TILE_ROWS = 3 * BLOCK_SIZE;
+
+	private final double[][] columns = new double[NUM_FEATURES][NUM_ROWS];
+	private final float[][] floatColumns = new float[NUM_FEATURES][NUM_ROWS];
+	private final CompiledTree[] programs = new CompiledTree[NUM_TREES];
+
+	public TiledEvaluatorTest() throws Exception {
+		MersenneTwisterFast rand = new MersenneTwisterFast(5);
+		for (int j = 0; j < NUM_FEATURES; j++) {
+			for (int r = 0; r < NUM_ROWS; r++) {
+				columns[j][r] = rand.nextDouble() * 4 - 2;
+				floatColumns[j][r] = (float) columns[j][r];
+			}
+		}
+		List<String> terms = new ArrayList<String>();
+		for (int i = 1; i <= NUM_FEATURES; i++) terms.add("X" + i);
+		TreeGenerator treeGen = new TreeGenerator(rand, Parameters.Defaults.FUNCTIONS, terms);
+		for (int b = 0; b < NUM_TREES; b++) {
+			programs[b] = CompiledTree.compile(treeGen.generateTree(4, true));
+		}
+	}
+
+	private static float[][][] newDest(CompiledTree[] programs, int numRows) {
+		float[][][] dest = new float[programs.length][][];
+		for (int b = 0; b < programs.length; b++) {
+			dest[b] = new float[programs[b].getSize()][numRows];
+		}
+		return dest;
+	}
+
+	private void assertSameValues(float[][][] expected, float[][][] actual) {
+		for (int b = 0; b < NUM_TREES; b++) {
+			for (int i = 0; i < programs[b].getSize(); i++) {
+				assertArrayEquals(expected[b][i], actual[b][i], 0);
+			}
+		}
+	}
+
+	@Test
+	public void testTiledIsOneTreeAtATime() throws Exception {
+		ColumnEvaluator evaluator = new ColumnEvaluator(BLOCK_SIZE);
+		float[][][] expected = newDest(programs, NUM_ROWS);
+		for (int b = 0; b < NUM_TREES; b++) {
+			evaluator.evaluate(programs[b], columns, 0, NUM_ROWS, expected[b]);
+		}
+		float[][][] tiled = newDest(programs, NUM_ROWS);
+		new TiledEvaluator(TILE_ROWS).evaluate(programs, null, evaluator, columns, 0, NUM_ROWS, tiled);
+		assertSameValues(expected, tiled);
+	}
+
+	@Test
+	public void testFloatTiledIsOneTreeAtATime() throws Exception {
+		FloatColumnEvaluator evaluator = new FloatColumnEvaluator(BLOCK_SIZE);
+		float[][][] expected = newDest(programs, NUM_ROWS);
+		for (int b = 0; b < NUM_TREES; b++) {
+			evaluator.evaluate(programs[b], floatColumns, 0, NUM_ROWS, expected[b]);
+		}
+		float[][][] tiled = newDest(programs, NUM_ROWS);
+		new TiledEvaluator(TILE_ROWS).evaluate(programs, evaluator, floatColumns, 0, NUM_ROWS, tiled);
+		assertSameValues(expected, tiled);
+	}
+}
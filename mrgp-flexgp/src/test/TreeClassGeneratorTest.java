@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.java.ColumnEvaluator;
+import evogpj.evaluation.java.CompiledTree;
+import evogpj.evaluation.java.GeneratedTree;
+import evogpj.evaluation.java.TreeClassCache;
+import evogpj.evaluation.java.TreeClassGenerator;
+import evogpj.genotype.Tree;
+import evogpj.genotype.TreeGenerator;
+import evogpj.gp.GPException;
+import evogpj.gp.MersenneTwisterFast;
+
+/**
+ * Check that the classes generated for trees compute the same node values as
+ * the column evaluator.
+ */
+public class TreeClassGeneratorTest {
+
+	private static final int NUM_FEATURES = 4;
+	private static final int NUM_ROWS = 50;
+
+	@Test
+	public void testGeneratedClassMatchesInterpreter() throws GPException {
+		MersenneTwisterFast rand = new MersenneTwisterFast(11);
+		List<String> terms = new ArrayList<String>();
+		for (int i = 1; i <= NUM_FEATURES; i++) terms.add("X" + i);
+		TreeGenerator treeGen = new TreeGenerator(rand, Parameters.Defaults.FUNCTIONS, terms);
+		double[][] columns = new double[NUM_FEATURES][NUM_ROWS];
+		for (int j = 0; j < NUM_FEATURES; j++) {
+			for (int r = 0; r < NUM_ROWS; r++) {
+				// include exact zeros to exercise the protected operators
+				columns[j][r] = (r % 7 == 0) ? 0 : rand.nextDouble() * 6 - 3;
+			}
+		}
+		ColumnEvaluator evaluator = new ColumnEvaluator(16);
+		for (int n = 0; n < 100; n++) {
+			Tree t = treeGen.generateTree(7, false);
+			CompiledTree program = CompiledTree.compile(t);
+			float[][] expected = new float[program.getSize()][NUM_ROWS];
+			float[][] actual = new float[program.getSize()][NUM_ROWS];
+			evaluator.evaluate(program, columns, NUM_ROWS, expected);
+			GeneratedTree generated = TreeClassGenerator.generate(program);
+			assertNotNull(generated);
+			generated.evalIntermediate(columns, 0, NUM_ROWS, actual);
+			for (int i = 0; i < program.getSize(); i++) {
+				assertArrayEquals(expected[i], actual[i], 0);
+			}
+		}
+	}
+
+	@Test
+	public void testCacheThresholds() throws GPException {
+		TreeClassCache cache = new TreeClassCache(10, 3, 5);
+		Tree small = TreeGenerator.generateTree("(sin X1)");
+		Tree large = TreeGenerator.generateTree("(+ (* X1 X2) (- X3 X4))");
+		Tree medium = TreeGenerator.generateTree("(mydivide X1 X2)");
+		assertNull(cache.get(small, CompiledTree.compile(small)));
+		assertNull(cache.get(large, CompiledTree.compile(large)));
+		GeneratedTree generated = cache.get(medium, CompiledTree.compile(medium));
+		assertNotNull(generated);
+		Tree copy = TreeGenerator.generateTree("(mydivide X1 X2)");
+		assertSame(generated, cache.get(copy, CompiledTree.compile(copy)));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals("Generated classes: 1 hits, 1 classes generated (50.0% hit rate), 1 classes kept", cache.getReport());
+		assertEquals(0, cache.getHits());
+	}
+}
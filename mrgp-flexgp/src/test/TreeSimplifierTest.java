@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2011-2014 Evolutionary Design and Optimization Group
+ *
+ * Licensed under the MIT License.
+ *
+ * See the "LICENSE" file for a copy of the license.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import evogpj.algorithm.Parameters;
+import evogpj.evaluation.java.CompiledTree;
+import evogpj.evaluation.java.TreeSimplifier;
+import evogpj.genotype.Tree;
+import evogpj.genotype.TreeGenerator;
+import evogpj.gp.GPException;
+import evogpj.gp.Individual;
+import evogpj.gp.MersenneTwisterFast;
+import evogpj.gp.Population;
+
+/**
+ * Check the rewrites of {@link TreeSimplifier} and that simplified trees
+ * compute the same values.
+ */
+public class TreeSimplifierTest {
+
+	private static String simplify(String prefix) {
+		return simplify(prefix, false);
+	}
+
+	private static String simplify(String prefix, boolean powers) {
+		Population pop = new Population();
+		pop.add(new Individual(TreeGenerator.generateTree(prefix)));
+		new TreeSimplifier(powers).simplify(pop);
+		return ((Tree) pop.get(0).getGenotype()).toPrefixString();
+	}
+
+	@Test
+	public void testIdentities() {
+		assertEquals("X2", simplify("(+ X2 (- X1 X1))"));
+		assertEquals("X2", simplify("(* (mydivide (sin X1) (sin X1)) X2)"));
+		assertEquals("X3", simplify("(mydivide X3 (cos (- X1 X1)))"));
+		assertEquals("(mydivide X1 X2)", simplify("(mydivide X1 X2)"));
+		assertEquals("(+ X1 (* X2 (sin X3)))", simplify("(+ (- X1 (* X2 (- X3 X3))) (* X2 (sin X3)))"));
+	}
+
+	@Test
+	public void testPowersOnlyMergedOnRequest() {
+		// the inner power is a Lasso column of its own
+		assertEquals("(sqrt (quart X1))", simplify("(sqrt (quart X1))"));
+		assertEquals("(square (square X1))", simplify("(square (square X1))"));
+		assertEquals("(quart (sqrt X1))", simplify("(quart (sqrt X1))"));
+		assertEquals("(square X1)", simplify("(sqrt (quart X1))", true));
+		assertEquals("(quart X1)", simplify("(square (square X1))", true));
+		assertEquals("(square X1)", simplify("(quart (sqrt X1))", true));
+	}
+
+	@Test
+	public void testConstantsKeptWhenNotAbsorbed() {
+		// cos(0) = 1 cannot be added without a constant terminal
+		assertEquals("(+ X2 (cos (- X1 X1)))", simplify("(+ X2 (cos (- X1 X1)))"));
+		assertEquals("(- X1 X1)", simplify("(- X1 X1)"));
+	}
+
+	@Test
+	public void testSimplifiedTreesComputeTheSameValues() throws GPException {
+		MersenneTwisterFast rand = new MersenneTwisterFast(17);
+		List<String> terms = new ArrayList<String>();
+		terms.add("X1");
+		terms.add("X2");
+		TreeGenerator treeGen = new TreeGenerator(rand, Parameters.Defaults.FUNCTIONS, terms);
+		for (int n = 0; n < 500; n++) {
+			Tree t = treeGen.generateTree(5, false);
+			CompiledTree original = CompiledTree.compile(t);
+			Population pop = new Population();
+			pop.add(new Individual(t));
+			new TreeSimplifier(true).simplify(pop);
+			CompiledTree simplified = CompiledTree.compile(t);
+			double[] values = new double[original.getSize()];
+			for (int r = 0; r < 20; r++) {
+				double[] row = new double[] {rand.nextDouble() * 4 - 2, rand.nextDouble() * 4 - 2};
+				double expected = original.eval(row, values);
+				if (Double.isNaN(expected) || Double.isInfinite(expected)) continue;
+				assertEquals(t.toPrefixString(), expected, simplified.eval(row, values), 1e-9 * Math.max(1, Math.abs(expected)));
+			}
+		}
+	}
+}